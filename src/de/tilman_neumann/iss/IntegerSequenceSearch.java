@@ -124,6 +124,8 @@ public class IntegerSequenceSearch {
 
     	// initialize search machine
 		OeisLookupEngine searchEngine = new OeisLookupEngineInMemory();
+//		OeisLookupEngine searchEngine = new OeisLookupEngineInMemory(true); // database values off-heap
+//		OeisLookupEngine searchEngine = new OeisLookupEngineInMemory(false, Integer.MAX_VALUE, false, 100000); // with transform cache
 //		OeisSearchEngine searchEngine = new OeisSearchEngineWithDB();
 		searchEngine.init();
 
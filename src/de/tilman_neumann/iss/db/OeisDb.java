@@ -15,20 +15,16 @@ package de.tilman_neumann.iss.db;
 
 import java.io.File;
 import java.io.IOException;
-import java.math.BigInteger;
 import java.sql.SQLException;
 import java.util.List;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.LineIterator;
 import org.apache.log4j.Logger;
 
 import de.tilman_neumann.db.Db;
 import de.tilman_neumann.db.Dbms;
 import de.tilman_neumann.db.meta.DbMeta;
 import de.tilman_neumann.iss.sequence.OEISSequence;
-import de.tilman_neumann.iss.sequence.SequenceValues_UnsignedIndexListImpl;
-import de.tilman_neumann.jml.base.BigIntList;
+import de.tilman_neumann.iss.sequence.OeisDataFileParser;
 import de.tilman_neumann.util.ConfigUtil;
 
 public class OeisDb extends Db {
@@ -63,43 +59,24 @@ public class OeisDb extends Db {
 	 */
 	public void loadNewEntriesFromDatafile(String datafileName) throws SQLException {
     	// read OEIS data:
-    	LineIterator lineItr = null;
+		List<OEISSequence> entries;
         try {
-        	lineItr = FileUtils.lineIterator(new File(datafileName));
+        	entries = new OeisDataFileParser().parse(new File(datafileName));
         } catch (IOException e) {
             LOG.error(e, e);
             return;
         }
-        if (lineItr==null) {
-        	LOG.error("OEIS data file " + datafileName + " not found or contains no data");
+        if (entries.size()==0) {
+        	LOG.error("OEIS data file " + datafileName + " contains no data");
         	return;
         }
-    	while (lineItr.hasNext()) {
-			//LOG.debug("there are more lines");
-    		OEISSequence entry = null;
+    	for (OEISSequence entry : entries) {
     		try {
-				String line = lineItr.nextLine();
-				//LOG.debug("current line = " + line);
-				String name = line.substring(0, line.indexOf(','));
-		        String valuesStr = line.substring(line.indexOf(',')+1);
-		        //LOG.debug("valuesStr = " + valuesStr);
-		        List<BigInteger> values = BigIntList.valueOf(valuesStr); // trims before parsing
-		        //LOG.debug("values = " + values);
-				entry = new OEISSequence(name, new SequenceValues_UnsignedIndexListImpl(values));
-				//LOG.debug("current sequence = " + entry.nameAndValuesString());
+				/*Boolean inserted =*/ new InsertSequenceTransaction(this, entry).execute();
 	    	} catch (Exception e) {
-	    		LOG.error("error reading sequence: " + e.getMessage(), e);
+	    		LOG.error("error inserting sequence " + entry.getName() + ": " + e.getMessage(), e);
 	    	}
-	    	if (entry != null) {
-	    		// reading sequence was successful
-	    		try {
-					/*Boolean inserted =*/ new InsertSequenceTransaction(this, entry).execute();
-		    	} catch (Exception e) {
-		    		LOG.error("error inserting sequence " + entry.getName() + ": " + e.getMessage(), e);
-		    	}
-	    	}
-	    	
-    	} // end(while)
+    	}
 	}
 	
 	// Test ====================================================================
@@ -0,0 +1,181 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.main;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.util.IntSetSignature;
+import de.tilman_neumann.util.SortedIntMultiset;
+
+/**
+ * An immutable, read-optimized table of reference sequences, built after they have been loaded.
+ * 
+ * Sequences are identified by int ids. The data needed by the prefilters of the lookups is stored column-wise
+ * in contiguous arrays: The names, the numbers of values, the value signatures and the sorted distinct unsigned
+ * value indices with their multiplicities. Thus lookups scanning many reference sequences read memory sequentially,
+ * and only the sequences passing the prefilters need to be accessed as OEISSequence objects.
+ * The values themselves are not copied, because the full comparisons read them from the sequences.
+ * 
+ * @author Tilman Neumann
+ */
+public class ColumnarSequenceStore {
+
+	private static final Logger LOG = Logger.getLogger(ColumnarSequenceStore.class);
+	
+	/** sequence id -> sequence, for full comparisons and match reports */
+	private final OEISSequence[] sequences;
+	/** sequence id -> name */
+	private final String[] names;
+	/** sequence id -> number of values */
+	private final int[] numberOfValues;
+	/** the signature of sequence id is at positions [id*IntSetSignature.WORDS, (id+1)*IntSetSignature.WORDS) */
+	private final long[] signatures;
+	/** the distinct values of sequence id are at positions [distinctValueOffsets[id], distinctValueOffsets[id+1]) of the multiset columns */
+	private final int[] distinctValueOffsets;
+	/** sorted distinct unsigned value indices of all sequences */
+	private final int[] distinctValueIndices;
+	/** multiplicities of the distinct unsigned value indices */
+	private final int[] multiplicities;
+	
+	/**
+	 * Builds the table of the sequences in the given store, with ids in the iteration order of the store.
+	 * @param sequenceStore
+	 */
+	public ColumnarSequenceStore(SequenceStore sequenceStore) {
+		this(toArray(sequenceStore));
+	}
+	
+	/**
+	 * Builds the table of the sequences of the given inverted index, with the same ids.
+	 * Thus candidate ids found by the index can be used directly. Sequences removed from the index are contained, too.
+	 * @param valueIndex
+	 */
+	public ColumnarSequenceStore(InvertedValueIndex valueIndex) {
+		this(toArray(valueIndex));
+	}
+	
+	private ColumnarSequenceStore(OEISSequence[] sequences) {
+		int count = sequences.length;
+		this.sequences = sequences;
+		names = new String[count];
+		numberOfValues = new int[count];
+		distinctValueOffsets = new int[count+1];
+		signatures = new long[count * IntSetSignature.WORDS];
+		
+		// 1. names, sizes, offsets and signatures
+		long totalNumberOfValues = 0;
+		for (int id=0; id<count; id++) {
+			OEISSequence seq = sequences[id];
+			names[id] = seq.getName();
+			numberOfValues[id] = seq.size();
+			totalNumberOfValues += numberOfValues[id];
+			distinctValueOffsets[id+1] = distinctValueOffsets[id] + seq.getUnsignedValueIndexMultiset().size();
+			seq.getUnsignedValueIndexSignature().copyTo(signatures, id * IntSetSignature.WORDS);
+		}
+		
+		// 2. multisets
+		distinctValueIndices = new int[distinctValueOffsets[count]];
+		multiplicities = new int[distinctValueOffsets[count]];
+		for (int id=0; id<count; id++) {
+			OEISSequence seq = sequences[id];
+			SortedIntMultiset multiset = seq.getUnsignedValueIndexMultiset();
+			int distinctValueOffset = distinctValueOffsets[id];
+			for (int i=0; i<multiset.size(); i++) {
+				distinctValueIndices[distinctValueOffset + i] = multiset.getValue(i);
+				multiplicities[distinctValueOffset + i] = multiset.getMultiplicity(i);
+			}
+		}
+		LOG.debug("columnar sequence store: " + count + " sequences, " + totalNumberOfValues + " values, " + distinctValueIndices.length + " distinct values");
+	}
+	
+	private static OEISSequence[] toArray(SequenceStore sequenceStore) {
+		OEISSequence[] array = new OEISSequence[sequenceStore.size()];
+		int i = 0;
+		for (OEISSequence seq : sequenceStore) {
+			// the store may have grown concurrently
+			if (i == array.length) break;
+			array[i++] = seq;
+		}
+		return i < array.length ? Arrays.copyOf(array, i) : array;
+	}
+	
+	private static OEISSequence[] toArray(InvertedValueIndex valueIndex) {
+		int idCount = valueIndex.getIdCount();
+		OEISSequence[] array = new OEISSequence[idCount];
+		for (int id=0; id<idCount; id++) {
+			array[id] = valueIndex.getSequence(id);
+		}
+		return array;
+	}
+	
+	/**
+	 * @return the number of sequence ids
+	 */
+	public int size() {
+		return sequences.length;
+	}
+	
+	/**
+	 * @param id
+	 * @return the sequence with the given id
+	 */
+	public OEISSequence getSequence(int id) {
+		return sequences[id];
+	}
+	
+	/**
+	 * @param id
+	 * @return the name of the sequence with the given id
+	 */
+	public String getName(int id) {
+		return names[id];
+	}
+	
+	/**
+	 * @param id
+	 * @return the number of values of the sequence with the given id
+	 */
+	public int getNumberOfValues(int id) {
+		return numberOfValues[id];
+	}
+	
+	/**
+	 * Signature check: Cheaply rejects most sequences that can not share enough values with a lookup sequence.
+	 * 
+	 * @param id
+	 * @param lookupValueIndices unsigned value indices of the lookup sequence
+	 * @param minCount
+	 * @return false if the sequence with the given id can not share minCount unsigned values with the lookup sequence,
+	 * counted with their multiplicities in the lookup sequence
+	 */
+	public boolean mayShareValues(int id, SortedIntMultiset lookupValueIndices, int minCount) {
+		return IntSetSignature.mayShareElements(signatures, id * IntSetSignature.WORDS, lookupValueIndices, minCount);
+	}
+	
+	/**
+	 * Exact prefilter of the match finders: Checks if the total count of the intersection of the unsigned value indices
+	 * of the sequence with the given id and the lookup sequence is at least <code>minCount</code>.
+	 * 
+	 * @param id
+	 * @param lookupValueIndices unsigned value indices of the lookup sequence
+	 * @param minCount
+	 * @return true if the intersection has at least minCount elements
+	 */
+	public boolean sharesValues(int id, SortedIntMultiset lookupValueIndices, int minCount) {
+		return SortedIntMultiset.intersectionTotalCountReaches(distinctValueIndices, multiplicities, distinctValueOffsets[id], distinctValueOffsets[id+1], getNumberOfValues(id), lookupValueIndices, minCount);
+	}
+}
@@ -13,60 +13,57 @@
  */
 package de.tilman_neumann.iss.main;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 import org.apache.log4j.Logger;
 
 import de.tilman_neumann.iss.sequence.OEISSequence;
 import de.tilman_neumann.iss.transform.Transform;
+import de.tilman_neumann.iss.transform.TransformCache;
 import de.tilman_neumann.iss.transform.Transformation;
 import de.tilman_neumann.iss.transform.TransformationException;
 
 /**
- * Expansion of sequence transforms, unthreaded or threaded.
+ * Expansion of sequence transforms, as a task of the WorkerPool.
 
  * @author Tilman Neumann
  */
-public class ExpandThread implements Runnable {
+public class ExpandThread implements Callable<List<OEISSequence>> {
 	
 	private static final Logger LOG = Logger.getLogger(ExpandThread.class);
 
-	private final ExpandThreadController listener;
-
-	private int maxNumberOfValues;
+	private final int maxNumberOfValues;
 
-	private OEISSequence inputSeq;
+	private final OEISSequence inputSeq;
 
 	/**
 	 * Full constructor for threaded transform computations.
-	 * @param transformations
 	 * @param maxNumberOfValues
-	 * @param allowSimilarResults
-	 * @param listener
+	 * @param inputSeq the transform to expand
 	 */
-	public ExpandThread(int maxNumberOfValues, ExpandThreadController listener) {
+	public ExpandThread(int maxNumberOfValues, OEISSequence inputSeq) {
+		if (inputSeq == null) throw new NullPointerException("input sequence");
 		this.maxNumberOfValues = maxNumberOfValues;
-		this.listener = listener;
-	}
-
-	/**
-	 * Set the sequence to transform.
-	 * Must be called before invoking the run() method.
-	 * @param inputSeq
-	 */
-	public void setInputSeq(OEISSequence inputSeq) {
 		this.inputSeq = inputSeq;
 	}
 	
 	/**
-	 * Expands transforms of the input sequence in a new thread.
+	 * Expands the input transform and its duplicates.
+	 * If there is a default TransformCache, the expanded transforms are stored there.
+	 * @return the expanded transforms
 	 */
-	public void run() {
-		if (inputSeq == null) throw new NullPointerException("input sequence");
+	public List<OEISSequence> call() {
 		//LOG.info("input seq = " + inputSeq.nameAndValuesString());
+		List<OEISSequence> newTransforms = new ArrayList<OEISSequence>();
+		TransformCache transformCache = TransformCache.getDefault();
 		
 		Transform oldTransform = (Transform) inputSeq;
 		try {
 			Transform newTransform = oldTransform.expand(maxNumberOfValues);
-			this.listener.addPartialResult(newTransform);
+			if (transformCache != null) transformCache.put(newTransform);
+			newTransforms.add(newTransform);
 		} catch (TransformationException e1) {
 			Transformation transformation = oldTransform.getTransformation();
 			LOG.info("Could not compute " + transformation.getName() + " transform of sequence " + inputSeq.getName());
@@ -77,13 +74,14 @@ public class ExpandThread implements Runnable {
 			Transform dupTransform = (Transform) duplicate;
 			try {
 				Transform newDupTransform = dupTransform.expand(maxNumberOfValues);
-				this.listener.addPartialResult(newDupTransform);
+				if (transformCache != null) transformCache.put(newDupTransform);
+				newTransforms.add(newDupTransform);
 			} catch (TransformationException e) {
 				Transformation dupTransformation = dupTransform.getTransformation();
 				LOG.info("Could not compute " + dupTransformation.getName() + " transform of sequence " + dupTransform.getName());
 			}
 		}
 		// TODO: Still too fine-grained ?
-		this.listener.notifyFinish(this); // wake up control thread
+		return newTransforms;
 	}
 }
@@ -0,0 +1,260 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.util.SortedIntMultiset;
+
+/**
+ * An inverted index from unsigned value indices (of the global ValuesStore)
+ * to the sequences containing that value.
+ *
+ * The index allows a lookup sequence to be compared only with those database
+ * sequences that share enough values with it, instead of with the whole database.
+ * Sequences are identified internally by int ids; removed sequences keep their id
+ * such that they can be restored cheaply when they are added again.
+ *
+ * Reading methods are not synchronized; add() and remove() must not be called
+ * while lookups are running.
+ *
+ * @author Tilman Neumann
+ */
+public class InvertedValueIndex {
+
+	private static final Logger LOG = Logger.getLogger(InvertedValueIndex.class);
+
+	/** sequence id -> sequence */
+	private OEISSequence[] sequences;
+	/** ids of sequences that have been removed */
+	private BitSet removedIds = new BitSet();
+	/** number of sequence ids in use */
+	private int idCount;
+	/** sequence name -> sequence id */
+	private HashMap<String, Integer> name2id;
+	/** unsigned value index -> ids of the sequences containing that value */
+	private int[][] postings;
+	/** number of valid entries in each postings array */
+	private int[] postingSizes;
+	/** reusable score buffer of each thread doing candidate searches */
+	private final ThreadLocal<int[]> scoreBuffers = new ThreadLocal<int[]>();
+
+	/**
+	 * Creates an empty index that is filled by add().
+	 */
+	public InvertedValueIndex() {
+		sequences = new OEISSequence[16];
+		name2id = new HashMap<String, Integer>();
+		postings = new int[0][];
+		postingSizes = new int[0];
+	}
+
+	/**
+	 * Builds the inverted index of all sequences in the given store.
+	 * @param sequenceStore
+	 */
+	public InvertedValueIndex(SequenceStore sequenceStore) {
+		int numberOfSequences = sequenceStore.size();
+		sequences = new OEISSequence[numberOfSequences];
+		name2id = new HashMap<String, Integer>(numberOfSequences);
+
+		// 1. assign ids and count postings per value
+		int maxValueIndex = -1;
+		for (OEISSequence seq : sequenceStore) {
+			sequences[idCount] = seq;
+			name2id.put(seq.getName(), Integer.valueOf(idCount));
+			idCount++;
+			SortedIntMultiset valueIndices = seq.getUnsignedValueIndexMultiset();
+			int distinctCount = valueIndices.size();
+			if (distinctCount>0) maxValueIndex = Math.max(maxValueIndex, valueIndices.getValue(distinctCount-1));
+		}
+		postingSizes = new int[maxValueIndex+1];
+		for (int id=0; id<idCount; id++) {
+			SortedIntMultiset valueIndices = sequences[id].getUnsignedValueIndexMultiset();
+			for (int i=0; i<valueIndices.size(); i++) {
+				postingSizes[valueIndices.getValue(i)]++;
+			}
+		}
+
+		// 2. fill postings with exact sizes
+		postings = new int[maxValueIndex+1][];
+		for (int valueIndex=0; valueIndex<=maxValueIndex; valueIndex++) {
+			postings[valueIndex] = new int[postingSizes[valueIndex]];
+			postingSizes[valueIndex] = 0;
+		}
+		long totalPostings = 0;
+		for (int id=0; id<idCount; id++) {
+			SortedIntMultiset valueIndices = sequences[id].getUnsignedValueIndexMultiset();
+			for (int i=0; i<valueIndices.size(); i++) {
+				int valueIndex = valueIndices.getValue(i);
+				postings[valueIndex][postingSizes[valueIndex]++] = id;
+			}
+			totalPostings += valueIndices.size();
+		}
+		LOG.info("inverted value index: " + idCount + " sequences, " + postings.length + " values, " + totalPostings + " postings");
+	}
+
+	/**
+	 * Adds a sequence to the index. A sequence that had been removed before is restored.
+	 * @param seq
+	 */
+	public synchronized void add(OEISSequence seq) {
+		Integer storedId = name2id.get(seq.getName());
+		if (storedId != null) {
+			int id = storedId.intValue();
+			if (sequences[id] == seq) {
+				// the same sequence object had been removed before -> restore it
+				removedIds.clear(id);
+				return;
+			}
+			// name is known but values may have changed: discard the old id
+			removedIds.set(id);
+		}
+
+		if (idCount == sequences.length) {
+			sequences = Arrays.copyOf(sequences, Math.max(16, 2*idCount));
+		}
+		int id = idCount++;
+		sequences[id] = seq;
+		name2id.put(seq.getName(), Integer.valueOf(id));
+		SortedIntMultiset valueIndices = seq.getUnsignedValueIndexMultiset();
+		for (int i=0; i<valueIndices.size(); i++) {
+			addPosting(valueIndices.getValue(i), id);
+		}
+	}
+
+	/**
+	 * Removes the sequence with the given name from the candidate lists.
+	 * @param seqName
+	 */
+	public synchronized void remove(String seqName) {
+		Integer id = name2id.get(seqName);
+		if (id != null) {
+			removedIds.set(id.intValue());
+		}
+	}
+
+	private void addPosting(int valueIndex, int id) {
+		if (valueIndex >= postings.length) {
+			int newLength = Math.max(valueIndex+1, postings.length + (postings.length>>1));
+			postings = Arrays.copyOf(postings, newLength);
+			postingSizes = Arrays.copyOf(postingSizes, newLength);
+		}
+		int[] valuePostings = postings[valueIndex];
+		int size = postingSizes[valueIndex];
+		if (valuePostings == null) {
+			valuePostings = postings[valueIndex] = new int[2];
+		} else if (size == valuePostings.length) {
+			valuePostings = postings[valueIndex] = Arrays.copyOf(valuePostings, Math.max(2, 2*size));
+		}
+		valuePostings[size] = id;
+		postingSizes[valueIndex] = size+1;
+	}
+
+	/**
+	 * @return the number of sequence ids in use
+	 */
+	public int getIdCount() {
+		return idCount;
+	}
+
+	/**
+	 * @param id sequence id in [0, getIdCount())
+	 * @return the sequence with the given id; may be a removed sequence
+	 */
+	public OEISSequence getSequence(int id) {
+		return sequences[id];
+	}
+
+	/**
+	 * Returns all indexed sequences that may share at least <code>minNumberOfMatches</code>
+	 * unsigned values with the lookup sequence.
+	 *
+	 * @param lookupSeq
+	 * @param minNumberOfMatches
+	 * @return candidate sequences, ordered by id
+	 * @see #getCandidateIds(OEISSequence, int)
+	 */
+	public List<OEISSequence> getCandidates(OEISSequence lookupSeq, int minNumberOfMatches) {
+		BitSet candidateIds = getCandidateIds(lookupSeq, minNumberOfMatches);
+		List<OEISSequence> candidates = new ArrayList<OEISSequence>(candidateIds.cardinality());
+		for (int id = candidateIds.nextSetBit(0); id >= 0; id = candidateIds.nextSetBit(id+1)) {
+			candidates.add(sequences[id]);
+		}
+		return candidates;
+	}
+
+	/**
+	 * Returns the ids of all indexed sequences that may share at least <code>minNumberOfMatches</code>
+	 * unsigned values with the lookup sequence.
+	 *
+	 * The score of a candidate is the sum of the multiplicities of the shared values in the lookup sequence,
+	 * which is an upper bound of the total count of the multiset intersection of the value indices of both sequences.
+	 * Thus no sequence is missed that could pass the prefilter of the match finders.
+	 *
+	 * @param lookupSeq
+	 * @param minNumberOfMatches
+	 * @return ids of the candidate sequences
+	 */
+	public BitSet getCandidateIds(OEISSequence lookupSeq, int minNumberOfMatches) {
+		SortedIntMultiset lookupValueIndices = lookupSeq.getUnsignedValueIndexMultiset();
+		// postings and sizes may be replaced by add(), so use consistent local copies
+		int[][] postings = this.postings;
+		int[] postingSizes = this.postingSizes;
+		int ids = idCount;
+		// scores is zero-initialized and will be zero again when we are finished
+		int[] scores = scoreBuffers.get();
+		if (scores == null || scores.length < ids) {
+			scores = new int[ids];
+			scoreBuffers.set(scores);
+		}
+
+		int[] touchedIds = new int[64];
+		int touchedCount = 0;
+		for (int i=0; i<lookupValueIndices.size(); i++) {
+			int valueIndex = lookupValueIndices.getValue(i);
+			int multiplicity = lookupValueIndices.getMultiplicity(i);
+			if (valueIndex >= postings.length) continue; // value unknown in database
+			int[] valuePostings = postings[valueIndex];
+			if (valuePostings == null) continue;
+			int size = postingSizes[valueIndex];
+			for (int j=0; j<size; j++) {
+				int id = valuePostings[j];
+				if (id >= ids) continue;
+				if (scores[id] == 0) {
+					if (touchedCount == touchedIds.length) touchedIds = Arrays.copyOf(touchedIds, 2*touchedCount);
+					touchedIds[touchedCount++] = id;
+				}
+				scores[id] += multiplicity;
+			}
+		}
+
+		BitSet candidateIds = new BitSet(ids);
+		for (int k=0; k<touchedCount; k++) {
+			int id = touchedIds[k];
+			if (scores[id] >= minNumberOfMatches && !removedIds.get(id)) {
+				candidateIds.set(id);
+			}
+			scores[id] = 0;
+		}
+		return candidateIds;
+	}
+}
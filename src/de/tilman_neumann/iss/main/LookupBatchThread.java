@@ -0,0 +1,129 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.main;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.log4j.Logger;
+
+import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.iss.sequenceComparator.SequenceMatchFinderLinear;
+import de.tilman_neumann.iss.sequenceComparison.SequenceMatchCondition;
+import de.tilman_neumann.iss.sequenceComparison.SequenceMatchConditionArithmeticStepFunction;
+import de.tilman_neumann.iss.sequenceMatch.SequenceMatchLinear;
+import de.tilman_neumann.iss.sequenceMatch.SequenceMatchCollector;
+import de.tilman_neumann.util.SortedIntMultiset;
+
+/**
+ * OEIS lookup of a whole batch of lookup sequences in a slice of the reference sequences.
+ * 
+ * In contrast to LookupThread, the loops are nested such that each reference sequence
+ * is compared with all lookup sequences before the next reference sequence is visited.
+ * Thus the reference data stays in the processor cache, and each task reads its slice
+ * of the database only once per round, no matter how many lookup sequences there are.
+ * 
+ * @author Tilman Neumann
+ */
+public class LookupBatchThread implements Callable<SequenceMatchCollector> {
+	
+	private static final Logger LOG = Logger.getLogger(LookupBatchThread.class);
+
+	private final OEISSequence[] lookupSeqs;
+	private final ColumnarSequenceStore refSequences;
+	private final BitSet[] candidateIds;
+	private final BitSet refIds;
+	private final List<Map<String, SequenceMatchLinear>> previousMatches;
+	private final int startId;
+	private final int endId;
+	private final int minNumberOfMatches;
+	private final SequenceMatchCondition matchCondition;
+	private final SequenceMatchFinderLinear matchFinder;
+	private final SequenceMatchCollector summary;
+
+	/**
+	 * Full constructor.
+	 * @param lookupSeqs the sequences to lookup
+	 * @param refSequences reference sequences
+	 * @param candidateIds for each lookup sequence the ids of the reference sequences it shall be compared with,
+	 * or null to compare each lookup sequence with all reference sequences
+	 * @param refIds ids of the reference sequences to visit
+	 * @param startId first reference sequence id of the slice (inclusive)
+	 * @param endId last reference sequence id of the slice (exclusive)
+	 * @param previousMatches for each lookup sequence the matches of the previous round by reference sequence name,
+	 * or null in the first round
+	 * @param minNumberOfMatches
+	 * @param summary empty collector for the matches of this task
+	 */
+	public LookupBatchThread(OEISSequence[] lookupSeqs, ColumnarSequenceStore refSequences, BitSet[] candidateIds, BitSet refIds, int startId, int endId,
+			List<Map<String, SequenceMatchLinear>> previousMatches, int minNumberOfMatches, SequenceMatchCollector summary) {
+		this.lookupSeqs = lookupSeqs;
+		this.refSequences = refSequences;
+		this.candidateIds = candidateIds;
+		this.refIds = refIds;
+		this.startId = startId;
+		this.endId = endId;
+		this.previousMatches = previousMatches;
+		this.minNumberOfMatches = minNumberOfMatches;
+		this.matchCondition = new SequenceMatchConditionArithmeticStepFunction(minNumberOfMatches);
+		this.matchFinder = new SequenceMatchFinderLinear(matchCondition);
+		this.summary = summary;
+	}
+
+	/**
+	 * Compares all lookup sequences with the reference sequences of the slice.
+	 * @return the matches found
+	 */
+	public SequenceMatchCollector call() {
+		final int lookupCount = lookupSeqs.length;
+		final SortedIntMultiset[] lookupValueIndices = new SortedIntMultiset[lookupCount];
+		final int[] lookupSizes = new int[lookupCount];
+		for (int j=0; j<lookupCount; j++) {
+			lookupValueIndices[j] = lookupSeqs[j].getUnsignedValueIndexMultiset();
+			lookupSizes[j] = lookupSeqs[j].size();
+		}
+		
+		// the prefilters work on the columns of the reference sequences; the OEISSequence objects are only
+		// accessed for the pairs that pass them
+		for (int id = refIds.nextSetBit(startId); id >= 0 && id < endId; id = refIds.nextSetBit(id+1)) {
+			final int oeisSize = refSequences.getNumberOfValues(id);
+			if (oeisSize < minNumberOfMatches) continue;
+			for (int j=0; j<lookupCount; j++) {
+				if (candidateIds != null && !candidateIds[j].get(id)) continue;
+				// the signature check rejects most sequences that can not share enough values with the lookup sequence
+				int requiredNumberOfMatches = matchCondition.getRequiredNumberOfMatches(lookupSizes[j], oeisSize);
+				if (refSequences.mayShareValues(id, lookupValueIndices[j], requiredNumberOfMatches)) {
+					try {
+						// if the pair matched in the previous round, then only the new values need to be checked
+						SequenceMatchLinear previousMatch = previousMatches != null ? previousMatches.get(j).get(refSequences.getName(id)) : null;
+						if (previousMatch != null) {
+							matchFinder.compareExpansion(lookupSeqs[j], refSequences.getSequence(id), previousMatch);
+						} else if (refSequences.sharesValues(id, lookupValueIndices[j], requiredNumberOfMatches)) {
+							// the same intersection check is the first step of compare()
+							matchFinder.compare(lookupSeqs[j], refSequences.getSequence(id));
+						}
+					} catch (final SequenceMatchLinear match) {
+						// print match matrix etc.
+						LOG.info(match.toString() + "\n");
+						// remember for summary printing
+						summary.add(match);
+					}
+				}
+			}
+		}
+		return summary;
+	}
+}
@@ -14,10 +14,21 @@
 package de.tilman_neumann.iss.main;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
 
 import org.apache.log4j.Logger;
 
 import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.iss.sequenceComparator.SimpleSequenceFinder;
+import de.tilman_neumann.iss.sequenceMatch.SequenceMatchArithmetic;
+import de.tilman_neumann.iss.sequenceMatch.SequenceMatchCollector;
+import de.tilman_neumann.iss.sequenceMatch.SequenceMatchLinear;
 import de.tilman_neumann.iss.sequenceMatch.SequenceMatchList;
 import de.tilman_neumann.iss.transform.AbsTransformation;
 import de.tilman_neumann.iss.transform.BinomialTransformation;
@@ -53,9 +64,11 @@ public class LookupCentral implements Serializable {
 
 	private static final long serialVersionUID = 351884168551291343L;
 
-	@SuppressWarnings("unused")
 	private static final Logger LOG = Logger.getLogger(LookupCentral.class);
 	
+	/** number of database slices per worker in batched lookups; more slices balance the load better */
+	private static final int SLICES_PER_WORKER = 4;
+	
 	static Transformation[] simpleTransformations = new Transformation[]{
 		new IdTransformation(), // truncates the source sequence
 		new ShiftLeftTransformation(1),
@@ -115,12 +128,26 @@ public class LookupCentral implements Serializable {
 	};
 	
 	private final int minNumberOfMatches;
+	private final int maxNumberOfResults;
+	private final boolean dropMatchMatrices;
 	
 	/**
-	 * Standard constructor.
+	 * Standard constructor, lookups report all matches.
 	 */
 	public LookupCentral(int minNumberOfMatches) {
+		this(minNumberOfMatches, Integer.MAX_VALUE, false);
+	}
+	
+	/**
+	 * Full constructor.
+	 * @param minNumberOfMatches
+	 * @param maxNumberOfResults maximum number of matches a lookup reports; the best ones are kept
+	 * @param dropMatchMatrices if true, then the match matrices of the reported matches are released after they have been printed
+	 */
+	public LookupCentral(int minNumberOfMatches, int maxNumberOfResults, boolean dropMatchMatrices) {
 		this.minNumberOfMatches = minNumberOfMatches;
+		this.maxNumberOfResults = maxNumberOfResults;
+		this.dropMatchMatrices = dropMatchMatrices;
 	}
 
 	/**
@@ -149,38 +176,42 @@ public class LookupCentral implements Serializable {
 			
 			// now compute complex transforms of simple transforms,
 			// and add only sequences that are substantially different:
-			TransformThreadController threadPool = new TransformThreadController(complexTransformations, maxNumberOfValues, minNumberOfMatches, false);
-			int i = 1;
+			List<ForkJoinTask<List<OEISSequence>>> transformTasks = new ArrayList<ForkJoinTask<List<OEISSequence>>>();
 			for (final OEISSequence simpleTransform : simpleTransforms) {
-				//LOG.info("start lookup of sequence " + i + " ...");
 				//LOG.info("simpleTransform = " + simpleTransform.nameAndValuesString());
-				TransformThread transformer2 = threadPool.get(); // waits until there is a free thread!
-				transformer2.setInputSeq(simpleTransform);
-				Thread thread = new Thread(threadPool, transformer2, "TransformThread-"+i);
-				thread.start(); // invokes Runnable.run()
-				i++;
+				transformTasks.add(WorkerPool.submit(new TransformThread(complexTransformations, maxNumberOfValues, false, simpleTransform)));
 			}
-			// waits for last threads to finish
-			return threadPool.getResult();
+			return collectSequences(transformTasks);
 		default:
 			throw new IllegalStateException("lookupMode " + lookupMode + " still needs to be implemented.");
 		}
 	}
 	
 	public LookupSequenceStore expandLookupSequences(SequenceStore oldLookupSequences, int maxNumberOfValues) {
-		ExpandThreadController threadPool = new ExpandThreadController(maxNumberOfValues, minNumberOfMatches, false);
-		int i = 1;
+		List<ForkJoinTask<List<OEISSequence>>> expandTasks = new ArrayList<ForkJoinTask<List<OEISSequence>>>();
 		for (final OEISSequence oldLookupSequence : oldLookupSequences) {
-			//LOG.info("start lookup of sequence " + i + " ...");
-			//LOG.info("oldLookupSequence = " + simpleTransform.nameAndValuesString());
-			ExpandThread transformer = threadPool.get(); // waits until there is a free thread!
-			transformer.setInputSeq(oldLookupSequence);
-			Thread thread = new Thread(threadPool, transformer, "ExpandThread-"+i);
-			thread.start(); // invokes Runnable.run()
-			i++;
+			//LOG.info("oldLookupSequence = " + oldLookupSequence.nameAndValuesString());
+			expandTasks.add(WorkerPool.submit(new ExpandThread(maxNumberOfValues, oldLookupSequence)));
+		}
+		return collectSequences(expandTasks);
+	}
+	
+	/**
+	 * Waits for the given tasks and adds their results to a new lookup sequence store, in the order of the tasks.
+	 * This is done by the control thread only, so the duplicate filtering of the store does not depend on the
+	 * order in which the tasks finish, and the workers do not have to wait for each other.
+	 * 
+	 * @param tasks
+	 * @return lookup sequences without near duplicates
+	 */
+	private LookupSequenceStore collectSequences(List<ForkJoinTask<List<OEISSequence>>> tasks) {
+		LookupSequenceStore totalResult = new LookupSequenceStore(minNumberOfMatches, false, true);
+		for (ForkJoinTask<List<OEISSequence>> task : tasks) {
+			for (OEISSequence seq : task.join()) {
+				totalResult.add(seq);
+			}
 		}
-		// waits for last threads to finish
-		return threadPool.getResult();
+		return totalResult;
 	}
 	
 	/**
@@ -189,20 +220,183 @@ public class LookupCentral implements Serializable {
 	 * @return match report
 	 */
 	public SequenceMatchList lookup(LookupSequenceStore lookupSequences, SequenceStore oeisSequences) {
-		// _this_ should not be the thread controller because then all
-		// member variables would be synchronized, or not?
-		LookupThreadController threadPool = new LookupThreadController(oeisSequences, minNumberOfMatches);
-		
-		int i = 1;
+		return lookup(lookupSequences, oeisSequences, null);
+	}
+	
+	/**
+	 * lookup of the given set of sequences.
+	 * @param lookupSequences
+	 * @param oeisSequences reference sequences
+	 * @param oeisValueIndex inverted value index of oeisSequences, or null to compare with all reference sequences
+	 * @return match report
+	 */
+	public SequenceMatchList lookup(LookupSequenceStore lookupSequences, SequenceStore oeisSequences, InvertedValueIndex oeisValueIndex) {
+		ColumnarSequenceStore refSequences = (oeisValueIndex != null) ? new ColumnarSequenceStore(oeisValueIndex) : new ColumnarSequenceStore(oeisSequences);
+		SequenceMatchCollector totalResult = new SequenceMatchCollector(maxNumberOfResults, dropMatchMatrices);
+		List<ForkJoinTask<SequenceMatchCollector>> lookupTasks = new ArrayList<ForkJoinTask<SequenceMatchCollector>>();
 		for (final OEISSequence lookupSeq : lookupSequences) {
-			//LOG.info("start lookup of sequence " + i + " ...");
-			LookupThread lookupRunnable = threadPool.get(); // waits until there is a free thread!
-			lookupRunnable.setLookupSeq(lookupSeq);
-			Thread lookupThread = new Thread(threadPool, lookupRunnable, "LookupThread-"+i);
-			lookupThread.start(); // invokes lookupRunnable.run()
-			i++;
+			lookupTasks.add(WorkerPool.submit(new LookupThread(refSequences, oeisValueIndex, minNumberOfMatches, lookupSeq, totalResult.newCollector())));
+		}
+		// merge partial results in task order
+		for (ForkJoinTask<SequenceMatchCollector> task : lookupTasks) {
+			totalResult.addAll(task.join());
+		}
+		return totalResult.toSequenceMatchList();
+	}
+	
+	/**
+	 * Batched lookup of the given set of sequences: The reference sequences are partitioned into slices,
+	 * and each slice is compared with all lookup sequences by one task. Thus the database is read
+	 * once per round and not once per lookup sequence.
+	 * 
+	 * @param lookupSequences
+	 * @param oeisSequences reference sequences
+	 * @param oeisValueIndex inverted value index of oeisSequences, or null to compare with all reference sequences
+	 * @return match report
+	 */
+	public SequenceMatchList lookupBatched(SequenceStore lookupSequences, SequenceStore oeisSequences, InvertedValueIndex oeisValueIndex) {
+		ColumnarSequenceStore refSequences = (oeisValueIndex != null) ? new ColumnarSequenceStore(oeisValueIndex) : new ColumnarSequenceStore(oeisSequences);
+		return lookupBatched(lookupSequences, refSequences, oeisValueIndex, null);
+	}
+	
+	/**
+	 * Batched lookup of the given set of sequences, where the matches of the previous lookup round are known.
+	 * Then only the (lookup, reference) pairs that matched in the previous round are compared, and the hypotheses
+	 * of these matches are carried forward, such that they only need to be checked for the values the lookup
+	 * sequences got by expansion.
+	 * 
+	 * @param lookupSequences
+	 * @param refSequences reference sequences; if oeisValueIndex is not null, then they must have the ids of the index
+	 * @param oeisValueIndex inverted value index of the reference sequences, or null to compare with all reference sequences
+	 * @param previousMatches map from lookup sequence names to reference sequence names to the matches of the previous round;
+	 * null in the first round, where all pairs are compared
+	 * @return match report
+	 */
+	public SequenceMatchList lookupBatched(SequenceStore lookupSequences, ColumnarSequenceStore refSequences, final InvertedValueIndex oeisValueIndex, Map<String, Map<String, SequenceMatchLinear>> previousMatches) {
+		final OEISSequence[] lookupSeqs = toArray(lookupSequences);
+		// each task collects its matches locally; the bounded collectors are merged at the end
+		SequenceMatchCollector totalResult = new SequenceMatchCollector(maxNumberOfResults, dropMatchMatrices);
+		
+		// check first if the lookup sequences are simple sequences.
+		// simple sequences can be considered a generic extension of the database,
+		// thus this is the right place to look for them.
+		SimpleSequenceFinder simpleSequenceFinder = new SimpleSequenceFinder(minNumberOfMatches);
+		for (OEISSequence lookupSeq : lookupSeqs) {
+			try {
+				simpleSequenceFinder.testForSimpleSequence(lookupSeq);
+			} catch (SequenceMatchArithmetic sse) {
+				LOG.info("found potential simple sequence " + lookupSeq.getName() + ": " + sse.toString());
+				totalResult.add(sse);
+			}
+		}
+		
+		// determine which reference sequences need to be visited
+		final int refSequenceCount = refSequences.size();
+		BitSet[] candidateIds;
+		BitSet refIds;
+		if (oeisValueIndex != null) {
+			// only sequences sharing enough values with a lookup sequence can match
+			List<ForkJoinTask<BitSet>> candidateTasks = new ArrayList<ForkJoinTask<BitSet>>(lookupSeqs.length);
+			for (final OEISSequence lookupSeq : lookupSeqs) {
+				candidateTasks.add(WorkerPool.submit(new Callable<BitSet>() {
+					public BitSet call() {
+						return oeisValueIndex.getCandidateIds(lookupSeq, minNumberOfMatches);
+					}
+				}));
+			}
+			candidateIds = new BitSet[lookupSeqs.length];
+			refIds = new BitSet(refSequenceCount);
+			for (int j=0; j<lookupSeqs.length; j++) {
+				candidateIds[j] = candidateTasks.get(j).join();
+				// sequences added to the index after the reference sequences had been built are not visited
+				candidateIds[j].clear(refSequenceCount, Math.max(refSequenceCount, candidateIds[j].length()));
+				refIds.or(candidateIds[j]);
+			}
+		} else {
+			candidateIds = null;
+			refIds = new BitSet(refSequenceCount);
+			refIds.set(0, refSequenceCount);
+		}
+		
+		// in refinement rounds, each lookup sequence is only compared with the reference sequences
+		// that it or one of its duplicates matched in the previous round
+		List<Map<String, SequenceMatchLinear>> previousMatchesList = null;
+		if (previousMatches != null) {
+			Map<String, Integer> refIdsByName = new HashMap<String, Integer>();
+			for (int id=0; id<refSequenceCount; id++) {
+				refIdsByName.put(refSequences.getName(id), id);
+			}
+			previousMatchesList = new ArrayList<Map<String, SequenceMatchLinear>>(lookupSeqs.length);
+			BitSet[] pairIds = new BitSet[lookupSeqs.length];
+			BitSet pairRefIds = new BitSet(refSequenceCount);
+			for (int j=0; j<lookupSeqs.length; j++) {
+				OEISSequence lookupSeq = lookupSeqs[j];
+				// the own matches of the lookup sequence take precedence over those of its duplicates
+				Map<String, SequenceMatchLinear> lookupSeqMatches = new HashMap<String, SequenceMatchLinear>();
+				addPreviousMatches(lookupSeqMatches, previousMatches.get(lookupSeq.getName()));
+				for (OEISSequence duplicate : lookupSeq.getDuplicates()) {
+					addPreviousMatches(lookupSeqMatches, previousMatches.get(duplicate.getName()));
+				}
+				previousMatchesList.add(lookupSeqMatches);
+				
+				BitSet ids = new BitSet(refSequenceCount);
+				for (String refName : lookupSeqMatches.keySet()) {
+					Integer id = refIdsByName.get(refName);
+					if (id != null) ids.set(id.intValue());
+				}
+				if (candidateIds != null) ids.and(candidateIds[j]);
+				pairIds[j] = ids;
+				pairRefIds.or(ids);
+			}
+			candidateIds = pairIds;
+			refIds = pairRefIds;
+		}
+		
+		// cut reference ids into slices with about the same number of sequences to visit
+		int refCount = refIds.cardinality();
+		int sliceCount = Math.max(1, Math.min(refCount, SLICES_PER_WORKER * WorkerPool.getParallelism()));
+		List<ForkJoinTask<SequenceMatchCollector>> lookupTasks = new ArrayList<ForkJoinTask<SequenceMatchCollector>>(sliceCount);
+		int startId = 0;
+		int visited = 0;
+		for (int slice=1; slice<=sliceCount; slice++) {
+			int endId;
+			if (slice == sliceCount) {
+				endId = refSequenceCount;
+			} else {
+				// the end of this slice is the id after the last id it contains
+				int sliceEnd = (int) ((long)refCount * slice / sliceCount);
+				int id = startId-1;
+				for (; visited < sliceEnd; visited++) {
+					id = refIds.nextSetBit(id+1);
+				}
+				endId = id+1;
+			}
+			lookupTasks.add(WorkerPool.submit(new LookupBatchThread(lookupSeqs, refSequences, candidateIds, refIds, startId, endId, previousMatchesList, minNumberOfMatches, totalResult.newCollector())));
+			startId = endId;
+		}
+		
+		// merge partial results in task order
+		for (ForkJoinTask<SequenceMatchCollector> task : lookupTasks) {
+			totalResult.addAll(task.join());
+		}
+		return totalResult.toSequenceMatchList();
+	}
+	
+	private static void addPreviousMatches(Map<String, SequenceMatchLinear> lookupSeqMatches, Map<String, SequenceMatchLinear> newMatches) {
+		if (newMatches == null) return;
+		for (Map.Entry<String, SequenceMatchLinear> entry : newMatches.entrySet()) {
+			if (!lookupSeqMatches.containsKey(entry.getKey())) {
+				lookupSeqMatches.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+	
+	private static OEISSequence[] toArray(SequenceStore sequences) {
+		OEISSequence[] array = new OEISSequence[sequences.size()];
+		int i = 0;
+		for (OEISSequence seq : sequences) {
+			array[i++] = seq;
 		}
-		// waits for last threads to finish
-		return threadPool.getResult();
+		return array;
 	}
 }
@@ -13,6 +13,7 @@
  */
 package de.tilman_neumann.iss.main;
 
+import java.util.BitSet;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -27,6 +28,11 @@ import de.tilman_neumann.iss.transform.Transform;
 
 /**
  * A map of distinct sequences to their names with fast lookup by exact values.
+ * 
+ * If similar results are not allowed, then near duplicates are filtered when sequences are added.
+ * An inverted index of unsigned values, which is invariant to shifts and signs like the duplicate condition,
+ * restricts the comparisons of a new sequence to the stored sequences that share enough values with it.
+ * 
  * @author Tilman Neumann
  */
 public class LookupSequenceStore extends SequenceStore {
@@ -37,6 +43,9 @@ public class LookupSequenceStore extends SequenceStore {
 	
 	private final SequenceMatchFinderBaseImpl duplicateFinder;
 	private boolean allowSimilarResults;
+	private int minNumberOfMatches;
+	/** candidate index for the duplicate search; null if similar results are allowed */
+	private InvertedValueIndex duplicateCandidateIndex;
 	
 	/**
 	 * Constructor for an empty sequence set with default initial load capacity 16.
@@ -59,6 +68,8 @@ public class LookupSequenceStore extends SequenceStore {
 //		duplicateFinder = new SequenceDuplicateFinder3(duplicateCondition); // FIXME program hangs
 		duplicateFinder = new SequenceDuplicateFinder4(duplicateCondition);
 		this.allowSimilarResults = allowSimilarResults;
+		this.minNumberOfMatches = minNumberOfMatches;
+		if (!allowSimilarResults) duplicateCandidateIndex = new InvertedValueIndex();
 	}
 
 	/**
@@ -66,64 +77,74 @@ public class LookupSequenceStore extends SequenceStore {
 	 * Simple sequences and near duplicates of already contained sequences are
 	 * filtered if <code>allowSimilarResults = false</code>.
 	 * 
+	 * Sequences are added by one thread only, e.g. the control thread collecting the results of the worker tasks,
+	 * so the duplicate search does not need a lock.
+	 * 
 	 * @param seq sequence to add
 	 * @return true if added, false if not new
 	 */
 	public boolean add(OEISSequence seq) {
 		if (!allowSimilarResults) {
 			// check for almost exact matches (except sign and start values).
-			// this is synchronized because other threads may add new sequences
-			// while we are running here over the list of currently available
-			// lookup sequences; we could avoid synchronization if the search for
-			// duplicates would be done in a separate step...
-			synchronized (syncObject) {
-				for (final OEISSequence storedSequence : this) {
-					try {
-						this.duplicateFinder.compare(storedSequence, seq);
-					} catch (final SequenceMatchLinear match) {
-						// keep duplicate for comparisons with more values
-						if (storedSequence instanceof Transform && seq instanceof Transform) {
-							// keep the one with the lower complexity as representative
-							String storedName = storedSequence.getName();
-							String seqName = seq.getName();
-							Transform storedTransform = (Transform) storedSequence;
-							Transform newTransform = (Transform) seq;
-							int storedComplexity = storedTransform.getComplexityScore();
-							int newComplexity = newTransform.getComplexityScore();
-							//LOG.debug("Stored seq. " + storedName + " has complexity " + storedComplexity);
-							//LOG.debug("New seq. " + seqName + " has complexity " + newComplexity);
-							if (storedComplexity > newComplexity) {
-								// replace current representative with new sequence
-								// (already synchronized)
-								super.remove(storedName);
-								Set<OEISSequence> storedDuplicates = storedSequence.removeDuplicates();
-								seq.addDuplicates(storedDuplicates);
-								seq.addDuplicate(storedSequence);
-								super.add(seq);
-								LOG.info("replaced sequence " + storedName + " with sequence " + seqName);
-								return true; //added
-							}
-						}
-						
-						// keep current representative
-						storedSequence.addDuplicate(seq);
-						LOG.info("ignored duplicate of " + storedSequence.getName() + " (match count = " + match.getMatchCount() + "): " + seq.nameAndValuesString());
-						Set<OEISSequence> duplicateDuplicates = seq.removeDuplicates();
-						int numberOfDuplicateDuplicates = duplicateDuplicates.size();
-						if (numberOfDuplicateDuplicates > 0) {
-							//LOG.debug("duplicate sequence " + seq.getName() + " had " + numberOfDuplicateDuplicates + " duplicates, too!");
-							storedSequence.addDuplicates(duplicateDuplicates);
+			// A duplicate shares at least minNumberOfMatches unsigned values with the new sequence,
+			// so the other stored sequences need not be compared.
+			BitSet candidateIds = duplicateCandidateIndex.getCandidateIds(seq, minNumberOfMatches);
+			for (int id = candidateIds.nextSetBit(0); id >= 0; id = candidateIds.nextSetBit(id+1)) {
+				final OEISSequence storedSequence = duplicateCandidateIndex.getSequence(id);
+				// representatives replaced by an exact duplicate in SequenceStore.add() are not removed from the index
+				if (super.get(storedSequence.getName()) != storedSequence) continue;
+				try {
+					this.duplicateFinder.compare(storedSequence, seq);
+				} catch (final SequenceMatchLinear match) {
+					// keep duplicate for comparisons with more values
+					if (storedSequence instanceof Transform && seq instanceof Transform) {
+						// keep the one with the lower complexity as representative
+						String storedName = storedSequence.getName();
+						String seqName = seq.getName();
+						Transform storedTransform = (Transform) storedSequence;
+						Transform newTransform = (Transform) seq;
+						int storedComplexity = storedTransform.getComplexityScore();
+						int newComplexity = newTransform.getComplexityScore();
+						//LOG.debug("Stored seq. " + storedName + " has complexity " + storedComplexity);
+						//LOG.debug("New seq. " + seqName + " has complexity " + newComplexity);
+						if (storedComplexity > newComplexity) {
+							// replace current representative with new sequence
+							this.remove(storedName);
+							Set<OEISSequence> storedDuplicates = storedSequence.removeDuplicates();
+							seq.addDuplicates(storedDuplicates);
+							seq.addDuplicate(storedSequence);
+							if (super.add(seq)) duplicateCandidateIndex.add(seq);
+							LOG.info("replaced sequence " + storedName + " with sequence " + seqName);
+							return true; //added
 						}
-						return false;
 					}
+					
+					// keep current representative
+					storedSequence.addDuplicate(seq);
+					LOG.info("ignored duplicate of " + storedSequence.getName() + " (match count = " + match.getMatchCount() + "): " + seq.nameAndValuesString());
+					Set<OEISSequence> duplicateDuplicates = seq.removeDuplicates();
+					int numberOfDuplicateDuplicates = duplicateDuplicates.size();
+					if (numberOfDuplicateDuplicates > 0) {
+						//LOG.debug("duplicate sequence " + seq.getName() + " had " + numberOfDuplicateDuplicates + " duplicates, too!");
+						storedSequence.addDuplicates(duplicateDuplicates);
+					}
+					return false;
 				}
 			}
 		}
 		boolean added = super.add(seq);
 		if (added) {
+			if (duplicateCandidateIndex != null) duplicateCandidateIndex.add(seq);
 			if (verbose) LOG.info("added " + seq.nameAndValuesString());
 			return true;
 		}
 		return false;
 	}
+	
+	@Override
+	public OEISSequence remove(String seqName) {
+		OEISSequence seq = super.remove(seqName);
+		if (seq != null && duplicateCandidateIndex != null) duplicateCandidateIndex.remove(seqName);
+		return seq;
+	}
 }
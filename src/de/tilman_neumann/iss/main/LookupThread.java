@@ -13,6 +13,9 @@
  */
 package de.tilman_neumann.iss.main;
 
+import java.util.BitSet;
+import java.util.concurrent.Callable;
+
 import org.apache.log4j.Logger;
 
 import de.tilman_neumann.iss.sequence.OEISSequence;
@@ -22,55 +25,58 @@ import de.tilman_neumann.iss.sequenceComparison.SequenceMatchCondition;
 import de.tilman_neumann.iss.sequenceComparison.SequenceMatchConditionArithmeticStepFunction;
 import de.tilman_neumann.iss.sequenceMatch.SequenceMatchArithmetic;
 import de.tilman_neumann.iss.sequenceMatch.SequenceMatchLinear;
-import de.tilman_neumann.iss.sequenceMatch.SequenceMatchList;
+import de.tilman_neumann.iss.sequenceMatch.SequenceMatchCollector;
+import de.tilman_neumann.util.SortedIntMultiset;
 
 /**
  * OEIS lookup for a single number sequence and some transforms of it.
  * 
- * Parallelization is implemented such that one thread compares
- * one lookup sequence with the whole database. This requires quite a lot
- * of threads. To avoid re-instantiating all required member variables
- * in each thread, this class is not really a Thread but a Runnable 
- * that does the instantiations; these objects are reused by always new threads.
+ * Parallelization is implemented such that one task compares
+ * one lookup sequence with the whole database. The tasks are run
+ * by the WorkerPool, which returns their results as futures.
 
  * @author Tilman Neumann
  */
-public class LookupThread implements Runnable {
+public class LookupThread implements Callable<SequenceMatchCollector> {
 	
 	private static final Logger LOG = Logger.getLogger(LookupThread.class);
 
-	private final SequenceStore oeisSequences;
+	private final ColumnarSequenceStore oeisSequences;
+	private final InvertedValueIndex oeisValueIndex;
 	private final int minNumberOfMatches;
+	private final SequenceMatchCondition matchCondition;
 	private final SimpleSequenceFinder simpleSequenceFinder;
 	private final SequenceMatchFinderLinear matchFinder;
-	private final LookupThreadController listener;
 
-	private OEISSequence lookupSeq;
+	private final OEISSequence lookupSeq;
+	private final SequenceMatchCollector summary;
 
-	public LookupThread(SequenceStore oeisSequences, int minNumberOfMatches, LookupThreadController listener) {
+	/**
+	 * Full constructor.
+	 * @param oeisSequences reference sequences
+	 * @param oeisValueIndex inverted value index of oeisSequences with the same ids, may be null
+	 * @param minNumberOfMatches
+	 * @param lookupSeq the sequence to lookup
+	 * @param summary empty collector for the matches of this task
+	 */
+	public LookupThread(ColumnarSequenceStore oeisSequences, InvertedValueIndex oeisValueIndex, int minNumberOfMatches, OEISSequence lookupSeq, SequenceMatchCollector summary) {
 		this.oeisSequences = oeisSequences;
+		this.oeisValueIndex = oeisValueIndex;
 		this.minNumberOfMatches = minNumberOfMatches;
 		this.simpleSequenceFinder = new SimpleSequenceFinder(minNumberOfMatches);
 		//SequenceMatchCondition matchCondition = new SequenceMatchConditionAsymmetric(minNumberOfMatches);           // 5:21.6 with dup4, 1:1cond (61 matches)
 		//SequenceMatchCondition matchCondition = new SequenceMatchConditionSymmetric(minNumberOfMatches);            // 5:20.5 with dup4, 1:1cond (61 matches)
-		SequenceMatchCondition matchCondition = new SequenceMatchConditionArithmeticStepFunction(minNumberOfMatches); // 5:09.2 with dup4, 1:1cond (51 matches)
+		this.matchCondition = new SequenceMatchConditionArithmeticStepFunction(minNumberOfMatches); // 5:09.2 with dup4, 1:1cond (51 matches)
 		this.matchFinder = new SequenceMatchFinderLinear(matchCondition);
-		this.listener = listener;
-	}
-
-	/**
-	 * Set sequence to lookup before starting a new thread.
-	 * @param lookupSeq
-	 */
-	public void setLookupSeq(OEISSequence lookupSeq) {
 		this.lookupSeq = lookupSeq;
+		this.summary = summary;
 	}
 	
 	/**
-	 * OEIS lookup of the sequence set via {@link setLookupSeq}.
+	 * OEIS lookup of the sequence given in the constructor.
+	 * @return the matches found
 	 */
-	public void run() {
-		SequenceMatchList summary = new SequenceMatchList();
+	public SequenceMatchCollector call() {
 		// check first if the lookup sequence is a simple sequence.
 		// simple sequences can be considered a generic extension of the database,
 		// thus this is the right place to look for them.
@@ -81,11 +87,19 @@ public class LookupThread implements Runnable {
 			summary.add(sse);
 		}
 		
-		for (final OEISSequence oeisSequence : oeisSequences) {
+		final SortedIntMultiset lookupValueIndices = lookupSeq.getUnsignedValueIndexMultiset();
+		final int lookupSize = lookupSeq.size();
+		final BitSet candidateIds = getCandidateIds();
+		for (int id = candidateIds.nextSetBit(0); id >= 0 && id < oeisSequences.size(); id = candidateIds.nextSetBit(id+1)) {
 			//LOG.info(lookupSeq.nameAndValuesString());
-			if (oeisSequence.size() >= minNumberOfMatches) {
+			final int oeisSize = oeisSequences.getNumberOfValues(id);
+			if (oeisSize < minNumberOfMatches) continue;
+			// the signature check rejects most sequences that can not share enough values with the lookup sequence;
+			// the intersection check is the first step of the match finder, done on the columns of the reference sequences
+			int requiredNumberOfMatches = matchCondition.getRequiredNumberOfMatches(lookupSize, oeisSize);
+			if (oeisSequences.mayShareValues(id, lookupValueIndices, requiredNumberOfMatches) && oeisSequences.sharesValues(id, lookupValueIndices, requiredNumberOfMatches)) {
 				try {
-					matchFinder.compare(lookupSeq, oeisSequence);
+					matchFinder.compare(lookupSeq, oeisSequences.getSequence(id));
 				} catch (final SequenceMatchLinear match) {
 					// print match matrix etc.
 					LOG.info(match.toString() + "\n");
@@ -94,6 +108,19 @@ public class LookupThread implements Runnable {
 				}
 			}
 		}
-		this.listener.addPartialResult(this, summary); // wake up control thread
+		return summary;
+	}
+	
+	/**
+	 * @return the ids of the reference sequences that need to be compared with the lookup sequence
+	 */
+	private BitSet getCandidateIds() {
+		if (oeisValueIndex == null) {
+			BitSet allIds = new BitSet(oeisSequences.size());
+			allIds.set(0, oeisSequences.size());
+			return allIds;
+		}
+		// only sequences sharing enough values with the lookup sequence can match
+		return oeisValueIndex.getCandidateIds(lookupSeq, minNumberOfMatches);
 	}
 }
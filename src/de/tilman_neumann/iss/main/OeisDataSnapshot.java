@@ -0,0 +1,258 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.main;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.iss.sequence.SequenceValues;
+import de.tilman_neumann.iss.sequence.SequenceValues_MappedImpl;
+import de.tilman_neumann.iss.sequence.SequenceValues_UnsignedIndexListImpl;
+import de.tilman_neumann.iss.sequence.ValuesStore;
+
+/**
+ * Binary snapshot of the loaded OEIS database, allowing to skip parsing the OEIS data file on later starts.
+ *
+ * The snapshot contains the ValuesStore (unsigned values as length-prefixed magnitude bytes plus their frequencies)
+ * and all sequences (names, hashcodes, unsigned value indices and sign bitsets). Each sequence is followed by its
+ * exact duplicates. The length and modification time of the OEIS data file are stored in the header;
+ * if the data file has changed, the snapshot is not used.
+ *
+ * A snapshot can only be restored into an empty ValuesStore, because the stored indices must stay valid,
+ * or into a ValuesStore that contains exactly the values of the snapshot, e.g. right after it has been written.
+ *
+ * The snapshot file is memory-mapped for fast reading. By default its contents are copied to the heap:
+ * The values go into the ValuesStore, the sequences become SequenceValues_UnsignedIndexListImpl objects.
+ * Thus the snapshot is a file-backed persistence of the database that saves start time, but no memory.
+ * The sequences can be restored off-heap, too: Then they are SequenceValues_MappedImpl views of the memory-mapped
+ * snapshot file, and the mapping stays alive as long as the sequences are referenced.
+ *
+ * @author Tilman Neumann
+ */
+public class OeisDataSnapshot {
+
+	private static final Logger LOG = Logger.getLogger(OeisDataSnapshot.class);
+
+	private static final int MAGIC = 0x4953534e; // "ISSN"
+	private static final int VERSION = 1;
+
+	/**
+	 * Writes the sequences and the global ValuesStore to a snapshot file.
+	 *
+	 * @param sequences the sequences loaded from the OEIS data file
+	 * @param snapshotFile
+	 * @param dataFile the OEIS data file the sequences have been loaded from
+	 * @throws IOException
+	 */
+	public static void write(SequenceStore sequences, File snapshotFile, File dataFile) throws IOException {
+		ValuesStore valuesStore = ValuesStore.get();
+		// write to temporary file first, so that an interrupted write never leaves a broken snapshot
+		File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1<<16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(dataFile.length());
+			out.writeLong(dataFile.lastModified());
+
+			// values table
+			int numberOfValues = valuesStore.size();
+			out.writeInt(numberOfValues);
+			for (int i=0; i<numberOfValues; i++) {
+				byte[] magnitude = valuesStore.getValue(i).toByteArray();
+				out.writeInt(valuesStore.getFrequency(i));
+				out.writeInt(magnitude.length);
+				out.write(magnitude);
+			}
+
+			// sequences, each one followed by its duplicates
+			out.writeInt(sequences.size());
+			for (OEISSequence seq : sequences) {
+				writeSequence(out, seq);
+				Set<OEISSequence> duplicates = seq.getDuplicates();
+				out.writeInt(duplicates.size());
+				for (OEISSequence duplicate : duplicates) {
+					writeSequence(out, duplicate);
+				}
+			}
+		} finally {
+			out.close();
+		}
+		if (snapshotFile.exists() && !snapshotFile.delete()) {
+			throw new IOException("could not delete old snapshot " + snapshotFile);
+		}
+		if (!tmpFile.renameTo(snapshotFile)) {
+			throw new IOException("could not rename " + tmpFile + " to " + snapshotFile);
+		}
+	}
+
+	private static void writeSequence(DataOutputStream out, OEISSequence seq) throws IOException {
+		byte[] name = seq.getName().getBytes(StandardCharsets.UTF_8);
+		out.writeInt(name.length);
+		out.write(name);
+		SequenceValues values = seq.getAbstractValues();
+		out.writeInt(values.hashCode());
+		int size = values.size();
+		out.writeInt(size);
+		for (int unsignedValueIndex : values.getUnsignedValueIndices()) {
+			out.writeInt(unsignedValueIndex);
+		}
+		byte[] negSignBits = new byte[(size+7)>>3];
+		for (int i=0; i<size; i++) {
+			if (values.isNegative(i)) negSignBits[i>>3] |= 1<<(i&7);
+		}
+		out.write(negSignBits);
+	}
+
+	/**
+	 * Reads a snapshot file into a new SequenceStore and the global ValuesStore.
+	 *
+	 * @param snapshotFile
+	 * @param dataFile the OEIS data file the snapshot should have been created from
+	 * @return sequence store, or null if the snapshot does not exist, is outdated or can not be read.
+	 */
+	public static SequenceStore read(File snapshotFile, File dataFile) {
+		return read(snapshotFile, dataFile, false);
+	}
+
+	/**
+	 * Reads a snapshot file into a new SequenceStore and the global ValuesStore.
+	 *
+	 * @param snapshotFile
+	 * @param dataFile the OEIS data file the snapshot should have been created from
+	 * @param offHeap if true, then the sequence values are kept in the memory-mapped snapshot file;
+	 * otherwise they are copied to the heap and the mapping is no longer referenced after reading
+	 * @return sequence store, or null if the snapshot does not exist, is outdated or can not be read.
+	 */
+	public static SequenceStore read(File snapshotFile, File dataFile, boolean offHeap) {
+		if (!snapshotFile.exists()) return null;
+
+		try (RandomAccessFile raf = new RandomAccessFile(snapshotFile, "r"); FileChannel channel = raf.getChannel()) {
+			long fileSize = channel.size();
+			if (fileSize > Integer.MAX_VALUE) {
+				LOG.warn("snapshot " + snapshotFile + " is too big to be mapped");
+				return null;
+			}
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+			if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+				LOG.info("snapshot " + snapshotFile + " has an unknown format");
+				return null;
+			}
+			if (buf.getLong() != dataFile.length() || buf.getLong() != dataFile.lastModified()) {
+				LOG.info("snapshot " + snapshotFile + " is outdated");
+				return null;
+			}
+
+			// read values table completely before touching the ValuesStore,
+			// so that a broken snapshot leaves no partial state behind
+			int numberOfValues = buf.getInt();
+			BigInteger[] values = new BigInteger[numberOfValues];
+			int[] frequencies = new int[numberOfValues];
+			for (int i=0; i<numberOfValues; i++) {
+				frequencies[i] = buf.getInt();
+				byte[] magnitude = new byte[buf.getInt()];
+				buf.get(magnitude);
+				values[i] = new BigInteger(magnitude);
+			}
+
+			int numberOfSequences = buf.getInt();
+			OEISSequence[] sequences = new OEISSequence[numberOfSequences];
+			for (int s=0; s<numberOfSequences; s++) {
+				OEISSequence seq = readSequence(buf, numberOfValues, offHeap);
+				int numberOfDuplicates = buf.getInt();
+				for (int d=0; d<numberOfDuplicates; d++) {
+					seq.addDuplicate(readSequence(buf, numberOfValues, offHeap));
+				}
+				sequences[s] = seq;
+			}
+			if (buf.hasRemaining()) throw new IOException("unexpected data at end of file");
+
+			// now fill the global values store and the sequence store
+			ValuesStore valuesStore = ValuesStore.get();
+			if (valuesStore.size() > 0) {
+				if (!containsExactly(valuesStore, values)) {
+					LOG.warn("ValuesStore does not match, can not use snapshot " + snapshotFile);
+					return null;
+				}
+			} else {
+				for (int i=0; i<numberOfValues; i++) {
+					int index = valuesStore.addValue(values[i], frequencies[i]);
+					if (index != i) throw new IllegalStateException("value " + values[i] + " got index " + index + " instead of " + i);
+				}
+			}
+			SequenceStore sequenceStore = new SequenceStore(numberOfSequences, false);
+			for (OEISSequence seq : sequences) {
+				sequenceStore.add(seq);
+			}
+			return sequenceStore;
+		} catch (Exception e) {
+			// IOException or BufferUnderflowException etc. from a broken snapshot
+			LOG.warn("could not read snapshot " + snapshotFile + ": " + e, e);
+			return null;
+		}
+	}
+
+	private static boolean containsExactly(ValuesStore valuesStore, BigInteger[] values) {
+		if (valuesStore.size() != values.length) return false;
+		for (int i=0; i<values.length; i++) {
+			if (!valuesStore.getValue(i).equals(values[i])) return false;
+		}
+		return true;
+	}
+
+	private static OEISSequence readSequence(ByteBuffer buf, int numberOfValues, boolean offHeap) throws IOException {
+		byte[] nameBytes = new byte[buf.getInt()];
+		buf.get(nameBytes);
+		String name = new String(nameBytes, StandardCharsets.UTF_8);
+		int hashcode = buf.getInt();
+		int size = buf.getInt();
+		if (offHeap) {
+			// check the indices, then keep them in the mapped buffer
+			int offset = buf.position();
+			for (int i=0; i<size; i++) {
+				int unsignedValueIndex = buf.getInt();
+				if (unsignedValueIndex<0 || unsignedValueIndex>=numberOfValues) throw new IOException("sequence " + name + " has invalid value index " + unsignedValueIndex);
+			}
+			buf.position(buf.position() + ((size+7)>>3));
+			return new OEISSequence(name, new SequenceValues_MappedImpl(buf, offset, size, hashcode));
+		}
+		int[] unsignedValueIndices = new int[size];
+		for (int i=0; i<size; i++) {
+			int unsignedValueIndex = buf.getInt();
+			if (unsignedValueIndex<0 || unsignedValueIndex>=numberOfValues) throw new IOException("sequence " + name + " has invalid value index " + unsignedValueIndex);
+			unsignedValueIndices[i] = unsignedValueIndex;
+		}
+		byte[] negSignBits = new byte[(size+7)>>3];
+		buf.get(negSignBits);
+		boolean[] negSigns = new boolean[size];
+		for (int i=0; i<size; i++) {
+			negSigns[i] = (negSignBits[i>>3] & (1<<(i&7))) != 0;
+		}
+		SequenceValues values = new SequenceValues_UnsignedIndexListImpl(unsignedValueIndices, negSigns, hashcode);
+		return new OEISSequence(name, values);
+	}
+}
@@ -15,90 +15,209 @@ package de.tilman_neumann.iss.main;
 
 import java.io.File;
 import java.io.IOException;
-import java.math.BigInteger;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.LineIterator;
 import org.apache.log4j.Logger;
 
 import de.tilman_neumann.iss.sequence.OEISSequence;
-import de.tilman_neumann.iss.sequence.SequenceValues_UnsignedIndexListImpl;
+import de.tilman_neumann.iss.sequence.OeisDataFileParser;
 import de.tilman_neumann.iss.sequence.ValuesStore;
 import de.tilman_neumann.iss.sequenceMatch.SequenceMatch;
+import de.tilman_neumann.iss.sequenceMatch.SequenceMatchCollector;
 import de.tilman_neumann.iss.sequenceMatch.SequenceMatchLinear;
 import de.tilman_neumann.iss.sequenceMatch.SequenceMatchList;
-import de.tilman_neumann.jml.base.BigIntList;
+import de.tilman_neumann.iss.transform.TransformCache;
 import de.tilman_neumann.util.TimeUtil;
 
 public class OeisLookupEngineInMemory extends OeisLookupEngine {
 	
 	private static final Logger LOG = Logger.getLogger(OeisLookupEngineInMemory.class);
 
+	// if true, then the reference sequences and big values are kept outside of the Java heap
+	private final boolean offHeap;
+	// maximum number of matches reported per lookup round and in the total summary
+	private final int maxNumberOfResults;
+	// if true, then match matrices are released after the matches have been printed
+	private final boolean dropMatchMatrices;
+	// maximum number of entries of the disk cache of lookup sequence transforms, or 0 if there is no cache
+	private final int transformCacheSize;
 	private SequenceStore oeisSequences;
+	private InvertedValueIndex oeisValueIndex;
+	// read-only columnar copy of the database with the ids of oeisValueIndex
+	private volatile ColumnarSequenceStore oeisColumns;
+	// precomputed transforms of database sequences by the names of the transformed sequences, or null
+	private Map<String, List<OEISSequence>> refTransforms;
 	
 	/**
-	 * Read OEIS data file.
+	 * Default constructor, keeps the whole database on the Java heap.
+	 */
+	public OeisLookupEngineInMemory() {
+		this(false);
+	}
+	
+	/**
+	 * Full constructor.
+	 * @param offHeap if true, then the values of the database sequences are kept in the memory-mapped snapshot file
+	 * and the big values of the ValuesStore in a direct buffer. This reduces heap size and garbage collection pauses,
+	 * at the cost of some computations on demand for the sequences passing the prefilters of a lookup.
+	 */
+	public OeisLookupEngineInMemory(boolean offHeap) {
+		this(offHeap, Integer.MAX_VALUE, false);
+	}
+	
+	/**
+	 * Full constructor.
+	 * @param offHeap if true, then the database values are kept outside of the Java heap, see {@link #OeisLookupEngineInMemory(boolean)}
+	 * @param maxNumberOfResults maximum number of matches kept per lookup round and in the total summary; the best ones are kept.
+	 * This bounds the memory of lookups of noisy sequences with many trivial matches, but only the kept matches
+	 * of a round are refined in the next round.
+	 * @param dropMatchMatrices if true, then the match matrices are released after the matches have been printed
+	 */
+	public OeisLookupEngineInMemory(boolean offHeap, int maxNumberOfResults, boolean dropMatchMatrices) {
+		this(offHeap, maxNumberOfResults, dropMatchMatrices, 0);
+	}
+	
+	/**
+	 * Full constructor.
+	 * @param offHeap if true, then the database values are kept outside of the Java heap, see {@link #OeisLookupEngineInMemory(boolean)}
+	 * @param maxNumberOfResults maximum number of matches kept per lookup round and in the total summary
+	 * @param dropMatchMatrices if true, then the match matrices are released after the matches have been printed
+	 * @param transformCacheSize if positive, then the transforms of lookup sequences are cached in a directory next to
+	 * the data file, and at most that many entries are kept when the data is loaded. The cache directory must be deleted
+	 * whenever the implementation of a transformation changes, see {@link TransformCache}.
+	 */
+	public OeisLookupEngineInMemory(boolean offHeap, int maxNumberOfResults, boolean dropMatchMatrices, int transformCacheSize) {
+		this.offHeap = offHeap;
+		this.maxNumberOfResults = maxNumberOfResults;
+		this.dropMatchMatrices = dropMatchMatrices;
+		this.transformCacheSize = transformCacheSize;
+	}
+	
+	/**
+	 * Read OEIS data from a binary snapshot if available and up to date, otherwise from the OEIS data file.
+	 * In the latter case a new snapshot is written for the next start; in off-heap mode, the parsed sequences
+	 * are then replaced by views of the new snapshot.
+	 * If OeisTransformStore has been run, the precomputed transforms of the database sequences are searched, too.
+	 * If the transform cache is switched on, transforms of lookup sequences are cached in a directory next to the data file.
 	 */
 	public void loadData(String oeisDataFileName) {
-    	// read OEIS data:
-    	LineIterator lineItr = null;
+		File dataFile = new File(oeisDataFileName);
+		File snapshotFile = new File(oeisDataFileName + ".snapshot");
+		long loadStart = System.currentTimeMillis();
+		if (offHeap) ValuesStore.get().storeBigValuesOffHeap();
+		oeisSequences = OeisDataSnapshot.read(snapshotFile, dataFile, offHeap);
+		if (oeisSequences != null) {
+			LOG.info("read " + oeisSequences.size() + " OEIS sequences from snapshot " + snapshotFile + " in " + TimeUtil.timeDiffStr(loadStart, System.currentTimeMillis()));
+		} else {
+			boolean complete = loadDataFile(oeisDataFileName);
+			if (oeisSequences == null) return;
+			if (complete) {
+				long snapshotStart = System.currentTimeMillis();
+				try {
+					OeisDataSnapshot.write(oeisSequences, snapshotFile, dataFile);
+					LOG.info("wrote snapshot " + snapshotFile + " in " + TimeUtil.timeDiffStr(snapshotStart, System.currentTimeMillis()));
+					if (offHeap) {
+						SequenceStore mappedSequences = OeisDataSnapshot.read(snapshotFile, dataFile, true);
+						if (mappedSequences != null) {
+							oeisSequences = mappedSequences;
+							LOG.info("replaced parsed sequences by off-heap views of snapshot " + snapshotFile);
+						}
+					}
+				} catch (IOException e) {
+					LOG.warn("could not write snapshot " + snapshotFile + ": " + e, e);
+				}
+			}
+		}
+		
+		// add precomputed transforms of the database sequences to the reference sequences, if available
+		File transformStoreFile = new File(oeisDataFileName + ".transformed");
+		long transformStoreStart = System.currentTimeMillis();
+		refTransforms = OeisTransformStore.read(transformStoreFile, dataFile, offHeap);
+		if (refTransforms != null) {
+			int count = 0, countAdded = 0;
+			for (List<OEISSequence> inputTransforms : refTransforms.values()) {
+				for (OEISSequence refTransform : inputTransforms) {
+					count++;
+					if (oeisSequences.add(refTransform)) countAdded++;
+				}
+			}
+			LOG.info("added " + countAdded + " of " + count + " reference transforms from " + transformStoreFile + " in " + TimeUtil.timeDiffStr(transformStoreStart, System.currentTimeMillis()));
+			LOG.info("the reference sequences are enlarged by the transforms; delete " + transformStoreFile + " to search the OEIS sequences only");
+		}
+		
+        ValuesStore valuesStore = ValuesStore.get();
+        valuesStore.finishStatisticCollection();
+        LOG.info("number of distinct values: " + valuesStore.size());
+        LOG.info("total value frequency: " + valuesStore.getTotalFrequency());
+        double entropy = valuesStore.getEntropy();
+        LOG.info("average value information: " + entropy + " nats");
+        LOG.info("average value likelihood: " + Math.exp(-entropy));        
+        
+        // build inverted index for candidate pruning in lookups against the whole database
+        long indexStart = System.currentTimeMillis();
+        oeisValueIndex = new InvertedValueIndex(oeisSequences);
+        LOG.info("built inverted value index in " + TimeUtil.timeDiffStr(indexStart, System.currentTimeMillis()));
+        
+        // build the columnar copy of the database for the lookups
+        getOeisColumns();
+        
+        if (transformCacheSize > 0) {
+        	TransformCache transformCache = new TransformCache(new File(oeisDataFileName + ".transforms"), transformCacheSize);
+        	transformCache.cleanUp();
+        	TransformCache.setDefault(transformCache);
+        } else {
+        	TransformCache.setDefault(null);
+        }
+	}
+	
+	/**
+	 * Parse OEIS data file.
+	 * @return true if the data file has been read completely
+	 */
+	private boolean loadDataFile(String oeisDataFileName) {
+        LOG.info("load OEIS sequences from file " + oeisDataFileName + " ...");
+        // sequences in the complete database use SequenceValues_UnsignedIndexListImpl:
+        // fastest, higher memory consumption than SequenceValues_IndexListImpl
+        List<OEISSequence> sequences;
         try {
-        	lineItr = FileUtils.lineIterator(new File(oeisDataFileName));
+        	sequences = new OeisDataFileParser().parse(new File(oeisDataFileName));
         } catch (IOException e) {
             LOG.error(e, e);
-            return;
-        }
-        if (lineItr==null) {
-        	LOG.error("OEIS data file " + oeisDataFileName + " not found or contains no data");
-        	return;
+            return false;
+        } catch (OutOfMemoryError err) {
+        	LOG.error("error loading OEIS data: " + err.getMessage());
+        	return false;
         }
         
-        LOG.info("load OEIS sequences from file " + oeisDataFileName + " ...");
-        oeisSequences = new SequenceStore(false);
+        // add sequences in file order, so that the choice of representatives of exact duplicates is deterministic
+        oeisSequences = new SequenceStore(sequences.size(), false);
         int countIgnored = 0;
-        try {
-        	int lineNumber = 0;
-        	while (lineItr.hasNext()) {
-        		String line = lineItr.nextLine().trim();
-        		lineNumber++;
-        		if (line.startsWith("#")) continue; // comment
-        		try {
-    				String name = line.substring(0, line.indexOf(','));
-    		        String valuesStr = line.substring(line.indexOf(',')+1);
-    		        //LOG.debug("valuesStr = " + valuesStr);
-    		        List<BigInteger> values = BigIntList.valueOf(valuesStr); // trims before parsing
-    		        //LOG.debug("values = " + values);
-//        			Sequence entry = new Sequence(name, new SequenceBigIntListImpl(values)); // hard memory consumption (>750MB)
-        			// sequences in the complete database use a ValuesStore to save memory
-//        			Sequence entry = new Sequence(name, new SequenceIndexListImpl(values)); // same results, but much slower lookup (21:21 instead 2:17)
-        			OEISSequence entry = new OEISSequence(name, new SequenceValues_UnsignedIndexListImpl(values)); // fastest, higher memory consumption
-        			boolean added = oeisSequences.add(entry);
-    				if (!added) {
-    					countIgnored++;
-    				}
-        		} catch (Exception ex) {
-        			LOG.warn("Ignore broken line #" + lineNumber + ": " + line);
-        			LOG.warn("Reason: " + ex);
-                }
-	        }
-        } catch (OutOfMemoryError err) {
-        	LOG.error("error loading OEIS data: " + err.getMessage());
+        for (OEISSequence entry : sequences) {
+        	boolean added = oeisSequences.add(entry);
+        	if (!added) {
+        		countIgnored++;
+        	}
         }
         LOG.info("read " + oeisSequences.size() + " OEIS sequences, ignored " + countIgnored + " exact duplicates");
-        ValuesStore valuesStore = ValuesStore.get();
-        valuesStore.finishStatisticCollection();
-        LOG.info("number of distinct values: " + valuesStore.size());
-        LOG.info("total value frequency: " + valuesStore.getTotalFrequency());
-        double entropy = valuesStore.getEntropy();
-        LOG.info("average value information: " + entropy + " nats");
-        LOG.info("average value likelihood: " + Math.exp(-entropy));        
+        return true;
 	}
 	
 	public boolean addSequence(OEISSequence seq) {
 		//String name = seq.getName();
 		//LOG.debug("before add of sequence " + name + ": name2seq=" + oeisSequences.name2seq.size() + ", seq2name=" + oeisSequences.seq2name.size());
 		boolean ret = this.oeisSequences.add(seq);
+		if (ret && oeisValueIndex!=null) oeisValueIndex.add(seq);
+		// precomputed transforms follow the sequence they have been computed from
+		if (ret && refTransforms!=null) {
+			List<OEISSequence> inputTransforms = refTransforms.get(seq.getName());
+			if (inputTransforms != null) {
+				for (OEISSequence refTransform : inputTransforms) {
+					if (oeisSequences.add(refTransform) && oeisValueIndex!=null) oeisValueIndex.add(refTransform);
+				}
+			}
+		}
 		//LOG.debug("after add of sequence " + name + ": name2seq=" + oeisSequences.name2seq.size() + ", seq2name=" + oeisSequences.seq2name.size());
 		return ret;
 	}
@@ -106,6 +225,15 @@ public class OeisLookupEngineInMemory extends OeisLookupEngine {
 	public OEISSequence removeSequence(String name) {
 		//LOG.debug("before remove of sequence " + name + ": name2seq=" + oeisSequences.name2seq.size() + ", seq2name=" + oeisSequences.seq2name.size());
 		OEISSequence ret = oeisSequences.remove(name);
+		if (ret!=null && oeisValueIndex!=null) oeisValueIndex.remove(name);
+		if (ret!=null && refTransforms!=null) {
+			List<OEISSequence> inputTransforms = refTransforms.get(name);
+			if (inputTransforms != null) {
+				for (OEISSequence refTransform : inputTransforms) {
+					if (oeisSequences.remove(refTransform.getName())!=null && oeisValueIndex!=null) oeisValueIndex.remove(refTransform.getName());
+				}
+			}
+		}
 		//LOG.debug("after remove of sequence " + name + ": name2seq=" + oeisSequences.name2seq.size() + ", seq2name=" + oeisSequences.seq2name.size());
 		return ret;
 	}
@@ -132,11 +260,16 @@ public class OeisLookupEngineInMemory extends OeisLookupEngine {
 		
 		int round = 1;
 		long startTime = System.currentTimeMillis();
-		LookupCentral lookupCentral = new LookupCentral(minNumberOfMatches);
+		LookupCentral lookupCentral = new LookupCentral(minNumberOfMatches, maxNumberOfResults, dropMatchMatrices);
 		LookupSequenceStore lookupSequences = lookupCentral.prepareLookupSequences(lookupSeq, lookupMode, numberOfValues);
 		SequenceStore refSequences = oeisSequences;
-		SequenceMatchList totalMatches = new SequenceMatchList();
+		// the inverted index covers the whole database only, i.e. it is used in the first round
+		InvertedValueIndex refValueIndex = oeisValueIndex;
+		ColumnarSequenceStore refColumns = getOeisColumns();
+		SequenceMatchCollector totalMatches = new SequenceMatchCollector(maxNumberOfResults, dropMatchMatrices);
 		SequenceMatchList roundMatches = null;
+		// lookup sequence name -> reference sequence name -> match of the last round
+		Map<String, Map<String, SequenceMatchLinear>> previousMatches = null;
 		
 		while (true) {
 			
@@ -146,7 +279,7 @@ public class OeisLookupEngineInMemory extends OeisLookupEngine {
 			LOG.debug("Round " + round + ": Prepared " + lookupSequences.size() + " lookupSequences in " + prepTimeStr);
 
 			// run lookup process:
-			roundMatches = lookupCentral.lookup(lookupSequences, refSequences);
+			roundMatches = lookupCentral.lookupBatched(lookupSequences, refColumns, refValueIndex, previousMatches);
 			// matches contain database matches and simple sequences
 			long lookupEndTime = System.currentTimeMillis();
 			totalLookupTime += lookupEndTime - prepEndTime;
@@ -171,6 +304,8 @@ public class OeisLookupEngineInMemory extends OeisLookupEngine {
 			// filter sequences for next round
 			SequenceStore nextLookupSequences = new SequenceStore(false);
 			refSequences = new SequenceStore(false);
+			refValueIndex = null;
+			previousMatches = new HashMap<String, Map<String, SequenceMatchLinear>>();
 			for (SequenceMatch match : roundMatches) {
 				// caution: a sequence may have several matches...
 				OEISSequence lookupSequence = match.getLookupSequence();
@@ -180,6 +315,13 @@ public class OeisLookupEngineInMemory extends OeisLookupEngine {
 						nextLookupSequences.add(lookupSequence);
 						OEISSequence refSequence = linearMatch.getRefSequence();
 						refSequences.add(refSequence);
+						// keep the match hypothesis, so that the next round only needs to check the new values
+						// and only compares the (lookup, ref) pairs that matched in this round.
+						// duplicates of the lookup sequence get their own entries, because expansion may separate them.
+						addPreviousMatch(previousMatches, lookupSequence.getName(), refSequence.getName(), linearMatch);
+						for (OEISSequence duplicate : lookupSequence.getDuplicates()) {
+							addPreviousMatch(previousMatches, duplicate.getName(), refSequence.getName(), linearMatch);
+						}
 					} else {
 						// no refinement possible
 						// add match to total result
@@ -191,23 +333,51 @@ public class OeisLookupEngineInMemory extends OeisLookupEngine {
 				}
 			}
 			LOG.debug("collected " + nextLookupSequences.size() + " lookup sequences and " + refSequences.size() + " database sequences for next round...");
+			refColumns = new ColumnarSequenceStore(refSequences);
 			
 			// otherwise there are more values, so we can expand transforms.
 			numberOfValues = Math.min(numberOfValues+10, maxNumberOfLookupValues);
 			// expand transforms
 			round++;
 			startTime = System.currentTimeMillis();
-			lookupCentral = new LookupCentral(minNumberOfMatches);
+			lookupCentral = new LookupCentral(minNumberOfMatches, maxNumberOfResults, dropMatchMatrices);
 			lookupSequences = lookupCentral.expandLookupSequences(nextLookupSequences, numberOfValues);
-			// TODO: Only check the hypotheses that were found by previous round
 		}
 		
 		// print total summary
-		totalMatches.addAll(roundMatches);
-		LOG.info("Total match summary:\n" + totalMatches);
+		for (SequenceMatch match : roundMatches) {
+			totalMatches.add(match);
+		}
+		LOG.info("Total match summary:\n" + totalMatches.toSequenceMatchList());
 		LOG.info("Total number of matches = " + totalMatches.size());
 		LOG.info("Total time = " + TimeUtil.timeStr(totalPrepTime+totalLookupTime));
 		LOG.info("            (" + TimeUtil.timeStr(totalPrepTime) + " for transforms,");
 		LOG.info("             " + TimeUtil.timeStr(totalLookupTime) + " for lookup)\n");
 	}
+
+	/**
+	 * Removed sequences keep their id in the inverted index, and are restored with that id when they are added again,
+	 * e.g. after a lookup sequence has been removed from the database for the lookup. Only new ids require to rebuild the columns.
+	 * 
+	 * @return the columnar copy of the database
+	 */
+	private ColumnarSequenceStore getOeisColumns() {
+		ColumnarSequenceStore columns = oeisColumns;
+		if (columns == null || columns.size() != oeisValueIndex.getIdCount()) {
+			long columnsStart = System.currentTimeMillis();
+			columns = new ColumnarSequenceStore(oeisValueIndex);
+			LOG.info("built columnar sequence store in " + TimeUtil.timeDiffStr(columnsStart, System.currentTimeMillis()));
+			oeisColumns = columns;
+		}
+		return columns;
+	}
+
+	private static void addPreviousMatch(Map<String, Map<String, SequenceMatchLinear>> previousMatches, String lookupSeqName, String refSeqName, SequenceMatchLinear match) {
+		Map<String, SequenceMatchLinear> lookupSequenceMatches = previousMatches.get(lookupSeqName);
+		if (lookupSequenceMatches == null) {
+			lookupSequenceMatches = new HashMap<String, SequenceMatchLinear>();
+			previousMatches.put(lookupSeqName, lookupSequenceMatches);
+		}
+		lookupSequenceMatches.put(refSeqName, match);
+	}
 }
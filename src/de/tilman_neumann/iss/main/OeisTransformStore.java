@@ -0,0 +1,329 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.main;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+
+import org.apache.log4j.Logger;
+
+import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.iss.sequence.OeisDataFileParser;
+import de.tilman_neumann.iss.sequence.SequenceValues;
+import de.tilman_neumann.iss.sequence.SequenceValues_MappedImpl;
+import de.tilman_neumann.iss.sequence.SequenceValues_UnsignedIndexListImpl;
+import de.tilman_neumann.iss.sequence.ValuesStore;
+import de.tilman_neumann.iss.transform.ConvolutionTransformation;
+import de.tilman_neumann.iss.transform.ConvolutionTransformationType;
+import de.tilman_neumann.iss.transform.Transform;
+import de.tilman_neumann.iss.transform.Transformation;
+import de.tilman_neumann.util.ConfigUtil;
+import de.tilman_neumann.util.TimeUtil;
+
+/**
+ * Offline store of transforms of all OEIS sequences.
+ * 
+ * The lookup engine only transforms the lookup sequence, so a relation lookup = t(ref) can only be found
+ * if the lookup side has a transformation that inverts t. The batch mode of this class computes some transformations
+ * of every database sequence once and writes them to a file next to the OEIS data file. If that file exists and is
+ * up to date, the lookup engine maps it at start and adds the transforms to the reference sequences, such that
+ * they are searched together with the raw database.
+ * 
+ * The file format follows OeisDataSnapshot: A header with the length and modification time of the OEIS data file,
+ * followed by the transforms with their names, the names of the transformed sequences and signed values. The values are stored as length-prefixed
+ * two's complement bytes, because transforms have many values that do not occur in the database.
+ * 
+ * Reading a store registers the values of the transforms in the ValuesStore. By default the transforms are then kept
+ * on the heap like parsed sequences. Off-heap, their value indices and sign bits are packed into one direct buffer
+ * that the transforms are SequenceValues_MappedImpl views of, like the sequences of an off-heap OeisDataSnapshot.
+ * 
+ * @author Tilman Neumann
+ */
+public class OeisTransformStore {
+
+	private static final Logger LOG = Logger.getLogger(OeisTransformStore.class);
+
+	private static final int MAGIC = 0x49535358; // "ISSX"
+	private static final int VERSION = 1;
+	
+	/** maximum number of transform tasks per worker that are submitted but not written yet */
+	private static final int TASKS_PER_WORKER = 64;
+
+	/**
+	 * Transformations applied to the reference sequences.
+	 * They have no inverse in LookupCentral.complexTransformations, so they add relations that could not be found otherwise.
+	 * Each of them adds as many sequences to the reference database as it has already.
+	 */
+	private static final ConvolutionTransformationType[] DEFAULT_CONVOLUTION_TYPES = new ConvolutionTransformationType[] {
+		ConvolutionTransformationType.STANDARD,
+		ConvolutionTransformationType.EXP
+	};
+	
+	/**
+	 * Computes the given transformations of all sequences and writes them to a transform store file.
+	 * 
+	 * @param sequences the sequences loaded from the OEIS data file
+	 * @param transformations
+	 * @param storeFile
+	 * @param dataFile the OEIS data file the sequences have been loaded from
+	 * @return the number of transforms written
+	 * @throws IOException
+	 */
+	public static int write(SequenceStore sequences, Transformation[] transformations, File storeFile, File dataFile) throws IOException {
+		// write to temporary file first, so that an interrupted write never leaves a broken store
+		File tmpFile = new File(storeFile.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1<<16));
+		int count = 0;
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(dataFile.length());
+			out.writeLong(dataFile.lastModified());
+			
+			// compute the transforms on the worker pool, but only a limited number of tasks ahead of the writer,
+			// so that the transforms of the whole database are never held in memory at the same time
+			int maxPendingTasks = TASKS_PER_WORKER * WorkerPool.getParallelism();
+			ArrayDeque<ForkJoinTask<List<OEISSequence>>> pendingTasks = new ArrayDeque<ForkJoinTask<List<OEISSequence>>>(maxPendingTasks);
+			for (OEISSequence seq : sequences) {
+				if (pendingTasks.size() == maxPendingTasks) {
+					count += writeTransforms(out, pendingTasks.poll().join());
+				}
+				pendingTasks.add(WorkerPool.submit(new TransformThread(transformations, Integer.MAX_VALUE, true, seq)));
+			}
+			while (!pendingTasks.isEmpty()) {
+				count += writeTransforms(out, pendingTasks.poll().join());
+			}
+		} finally {
+			out.close();
+		}
+		if (storeFile.exists() && !storeFile.delete()) {
+			throw new IOException("could not delete old transform store " + storeFile);
+		}
+		if (!tmpFile.renameTo(storeFile)) {
+			throw new IOException("could not rename " + tmpFile + " to " + storeFile);
+		}
+		return count;
+	}
+	
+	private static int writeTransforms(DataOutputStream out, List<OEISSequence> transforms) throws IOException {
+		for (OEISSequence transform : transforms) {
+			writeString(out, transform.getName());
+			writeString(out, ((Transform) transform).getInputSequence().getName());
+			List<BigInteger> values = transform.getValues();
+			out.writeInt(values.size());
+			for (BigInteger value : values) {
+				byte[] valueBytes = value.toByteArray();
+				out.writeInt(valueBytes.length);
+				out.write(valueBytes);
+			}
+		}
+		return transforms.size();
+	}
+	
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static String readString(ByteBuffer buf) {
+		byte[] bytes = new byte[buf.getInt()];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Reads a transform store file. The values of the transforms are registered in the global ValuesStore.
+	 * 
+	 * @param storeFile
+	 * @param dataFile the OEIS data file the store should have been created from
+	 * @return map from the names of the transformed database sequences to their transforms, in the order of the store file;
+	 * null if the store does not exist, is outdated or can not be read.
+	 */
+	public static Map<String, List<OEISSequence>> read(File storeFile, File dataFile) {
+		return read(storeFile, dataFile, false);
+	}
+	
+	/**
+	 * Reads a transform store file. The values of the transforms are registered in the global ValuesStore.
+	 * 
+	 * @param storeFile
+	 * @param dataFile the OEIS data file the store should have been created from
+	 * @param offHeap if true, then the value indices and signs of the transforms are kept in a direct buffer
+	 * @return map from the names of the transformed database sequences to their transforms, in the order of the store file;
+	 * null if the store does not exist, is outdated or can not be read.
+	 */
+	public static Map<String, List<OEISSequence>> read(File storeFile, File dataFile, boolean offHeap) {
+		if (!storeFile.exists()) return null;
+		
+		try (RandomAccessFile raf = new RandomAccessFile(storeFile, "r"); FileChannel channel = raf.getChannel()) {
+			long fileSize = channel.size();
+			if (fileSize > Integer.MAX_VALUE) {
+				LOG.warn("transform store " + storeFile + " is too big to be mapped");
+				return null;
+			}
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+			if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+				LOG.info("transform store " + storeFile + " has an unknown format");
+				return null;
+			}
+			if (buf.getLong() != dataFile.length() || buf.getLong() != dataFile.lastModified()) {
+				LOG.info("transform store " + storeFile + " is outdated");
+				return null;
+			}
+			
+			// read all values before touching the ValuesStore, so that a broken store leaves no values behind
+			List<String> names = new ArrayList<String>();
+			List<String> inputNames = new ArrayList<String>();
+			List<List<BigInteger>> valueLists = new ArrayList<List<BigInteger>>();
+			while (buf.hasRemaining()) {
+				names.add(readString(buf));
+				inputNames.add(readString(buf));
+				int size = buf.getInt();
+				List<BigInteger> values = new ArrayList<BigInteger>(size);
+				for (int i=0; i<size; i++) {
+					byte[] valueBytes = new byte[buf.getInt()];
+					buf.get(valueBytes);
+					values.add(new BigInteger(valueBytes));
+				}
+				valueLists.add(values);
+			}
+			
+			ByteBuffer valueBuffer = null;
+			if (offHeap) {
+				long bufferSize = 0;
+				for (List<BigInteger> values : valueLists) {
+					bufferSize += (values.size()<<2) + ((values.size()+7)>>3);
+				}
+				if (bufferSize <= Integer.MAX_VALUE) {
+					valueBuffer = ByteBuffer.allocateDirect((int) bufferSize);
+				} else {
+					LOG.warn("transforms of " + storeFile + " need " + bufferSize + " bytes, they are kept on the heap");
+				}
+			}
+			
+			Map<String, List<OEISSequence>> transforms = new LinkedHashMap<String, List<OEISSequence>>();
+			for (int i=0; i<names.size(); i++) {
+				List<OEISSequence> inputTransforms = transforms.get(inputNames.get(i));
+				if (inputTransforms == null) {
+					inputTransforms = new ArrayList<OEISSequence>(DEFAULT_CONVOLUTION_TYPES.length);
+					transforms.put(inputNames.get(i), inputTransforms);
+				}
+				List<BigInteger> values = valueLists.set(i, null); // release the BigIntegers early
+				SequenceValues sequenceValues = valueBuffer != null ? putValues(valueBuffer, values) : new SequenceValues_UnsignedIndexListImpl(values);
+				inputTransforms.add(new OEISSequence(names.get(i), sequenceValues));
+			}
+			return transforms;
+		} catch (Exception e) {
+			// IOException or BufferUnderflowException etc. from a broken store
+			LOG.warn("could not read transform store " + storeFile + ": " + e, e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Registers the unsigned values in the ValuesStore and appends their indices and sign bits to the buffer,
+	 * in the layout of SequenceValues_MappedImpl.
+	 * @param buffer
+	 * @param values
+	 * @return view of the appended values
+	 */
+	private static SequenceValues_MappedImpl putValues(ByteBuffer buffer, List<BigInteger> values) {
+		int size = values.size();
+		List<BigInteger> unsignedValues = new ArrayList<BigInteger>(size);
+		byte[] negSignBits = new byte[(size+7)>>3];
+		for (int i=0; i<size; i++) {
+			BigInteger value = values.get(i);
+			unsignedValues.add(value.abs());
+			if (value.signum() < 0) negSignBits[i>>3] |= 1<<(i&7);
+		}
+		int offset = buffer.position();
+		for (int unsignedValueIndex : ValuesStore.get().addAll(unsignedValues)) {
+			buffer.putInt(unsignedValueIndex);
+		}
+		buffer.put(negSignBits);
+		return new SequenceValues_MappedImpl(buffer, offset, size, values.hashCode());
+	}
+	
+	/**
+	 * Batch mode: Computes the reference transformations of all sequences of the OEIS data file in the project root
+	 * and writes them to a transform store next to it.
+	 * Note that every transformation adds as many sequences to the reference database of the lookups as it has already.
+	 * @param args the names of the ConvolutionTransformationTypes to apply, e.g. "STANDARD EXP"; if there are none,
+	 * then the standard and exponential convolutions are applied
+	 */
+	public static void main(String[] args) {
+		ConfigUtil.initProject();
+		ConvolutionTransformationType[] types = DEFAULT_CONVOLUTION_TYPES;
+		if (args.length > 0) {
+			types = new ConvolutionTransformationType[args.length];
+			for (int i=0; i<args.length; i++) {
+				try {
+					types[i] = ConvolutionTransformationType.valueOf(args[i].toUpperCase());
+				} catch (IllegalArgumentException e) {
+					LOG.error("unknown convolution type " + args[i] + ", possible values are " + Arrays.toString(ConvolutionTransformationType.values()));
+					return;
+				}
+			}
+		}
+		Transformation[] transformations = new Transformation[types.length];
+		for (int i=0; i<types.length; i++) {
+			transformations[i] = new ConvolutionTransformation(types[i]);
+		}
+		
+		String oeisDataFileName = ConfigUtil.PROJECT_ROOT + ConfigUtil.FILE_SEPARATOR + "stripped.txt";
+		File dataFile = new File(oeisDataFileName);
+		long start = System.currentTimeMillis();
+		SequenceStore sequences = OeisDataSnapshot.read(new File(oeisDataFileName + ".snapshot"), dataFile);
+		if (sequences == null) {
+			List<OEISSequence> parsedSequences;
+			try {
+				parsedSequences = new OeisDataFileParser().parse(dataFile);
+			} catch (IOException e) {
+				LOG.error("could not read OEIS data file " + dataFile + ": " + e, e);
+				return;
+			}
+			sequences = new SequenceStore(parsedSequences.size(), false);
+			for (OEISSequence seq : parsedSequences) {
+				sequences.add(seq);
+			}
+		}
+		LOG.info("read " + sequences.size() + " OEIS sequences in " + TimeUtil.timeDiffStr(start, System.currentTimeMillis()));
+		
+		File storeFile = new File(oeisDataFileName + ".transformed");
+		long writeStart = System.currentTimeMillis();
+		try {
+			int count = write(sequences, transformations, storeFile, dataFile);
+			LOG.info("wrote " + count + " transforms to " + storeFile + " in " + TimeUtil.timeDiffStr(writeStart, System.currentTimeMillis()));
+		} catch (IOException e) {
+			LOG.error("could not write transform store " + storeFile + ": " + e, e);
+		}
+	}
+}
@@ -14,10 +14,12 @@
 package de.tilman_neumann.iss.main;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 
@@ -28,6 +30,11 @@ import de.tilman_neumann.iss.transform.Transform;
 /**
  * A collection of sequences with fast lookup by (exact) values and by name.
  * 
+ * Lookups do not block. Modifications are synchronized per instance, so independent stores never contend.
+ * Iteration runs over an array of the sequences in insertion order. It is weakly consistent like the iterators
+ * of the concurrent collections: it never throws a ConcurrentModificationException, but may or may not reflect
+ * modifications made after the iterator has been created.
+ * 
  * @author Tilman Neumann
  */
 public class SequenceStore implements Iterable<OEISSequence>, Serializable {
@@ -37,16 +44,21 @@ public class SequenceStore implements Iterable<OEISSequence>, Serializable {
 	private static final Logger LOG = Logger.getLogger(SequenceStore.class);
 	
 	// basic data structure ----------------------------------------------
-	// Note that if we wanted both fast lookup from names and fast iteration,
-	// then we would need indices; but then add and remove were expensive
-	// because we had to adjust all indices on that operations...
+	// Lookup by values and names uses concurrent maps. Fast iteration uses an array
+	// of the sequences in insertion order, where removed sequences leave an empty slot
+	// until the array is compacted; so add and remove need not adjust other indices.
+	// All modifications are synchronized on this.
 
 	// this must be a map for fast lookup from values
-	private HashMap<SequenceValues, String> values2name;
-	// map for fast lookup from names; with sub-optimal iteration speed.
-	private Map<String, OEISSequence> name2seq;
-	// used to synchronize add()
-	protected static Object syncObject = new Object();
+	private final ConcurrentHashMap<SequenceValues, String> values2name;
+	// map for fast lookup from names
+	private final ConcurrentHashMap<String, OEISSequence> name2seq;
+	// sequences in insertion order; null entries are removed sequences
+	private volatile OEISSequence[] slots;
+	// number of used slots, including those of removed sequences
+	private volatile int slotCount;
+	// slot of each contained sequence; accessed in synchronized code only
+	private final HashMap<String, Integer> name2slot;
 	// -------------------------------------------------------------------
 
 	protected boolean verbose = false;
@@ -62,8 +74,10 @@ public class SequenceStore implements Iterable<OEISSequence>, Serializable {
 	 * Constructor for an empty sequence set with specified initial load capacity.
 	 */
 	public SequenceStore(int capacity, boolean verbose) {
-		values2name = new HashMap<SequenceValues, String>(capacity);
-		name2seq = new HashMap<String, OEISSequence>(capacity);
+		values2name = new ConcurrentHashMap<SequenceValues, String>(capacity);
+		name2seq = new ConcurrentHashMap<String, OEISSequence>(capacity);
+		slots = new OEISSequence[capacity];
+		name2slot = new HashMap<String, Integer>(capacity);
 		this.verbose = verbose;
 	}
 	
@@ -81,38 +95,38 @@ public class SequenceStore implements Iterable<OEISSequence>, Serializable {
 		if (name2seq.containsKey(seqName)) return false;
 		
 		SequenceValues values = seq.getAbstractValues();
-		String storedName = values2name.get(values);
-		if (storedName == null) {
-			// values are not known so far
-			synchronized (syncObject) {
-				// check again to exclude that another thread has added the sequence
-				// while the current thread was waiting
-				storedName = values2name.get(values);
-				if (storedName == null) {
-					name2seq.put(seqName, seq);
-					values2name.put(values, seqName);
-					//LOG.debug("added sequence " + seq.nameAndValuesString());
-					return true; //added
-				}
+		OEISSequence storedSequence;
+		synchronized (this) {
+			// check again to exclude that another thread has added the sequence
+			// while the current thread was waiting
+			if (name2seq.containsKey(seqName)) return false;
+			String storedName = values2name.get(values);
+			if (storedName == null) {
+				// values are not known so far
+				addSlot(seq);
+				name2seq.put(seqName, seq);
+				values2name.put(values, seqName);
+				//LOG.debug("added sequence " + seq.nameAndValuesString());
+				return true; //added
 			}
-		}
-		
-		// There is already a sequence with exactly the same values.
-		// Keep duplicate for new comparisons when more values are available
-		OEISSequence storedSequence = get(storedName);
-		if (storedSequence instanceof Transform && seq instanceof Transform) {
-			// keep the one with the lower complexity as representative
-			Transform storedTransform = (Transform) storedSequence;
-			Transform newTransform = (Transform) seq;
-			int storedComplexity = storedTransform.getComplexityScore();
-			int newComplexity = newTransform.getComplexityScore();
-			//LOG.debug("Stored seq. " + storedName + " has complexity " + storedComplexity);
-			//LOG.debug("New seq. " + seq.getName() + " has complexity " + newComplexity);
-			if (storedComplexity > newComplexity) {
-				// replace current representative with new sequence
-				synchronized(syncObject) {
+			
+			// There is already a sequence with exactly the same values.
+			// Keep duplicate for new comparisons when more values are available
+			storedSequence = name2seq.get(storedName);
+			if (storedSequence instanceof Transform && seq instanceof Transform) {
+				// keep the one with the lower complexity as representative
+				Transform storedTransform = (Transform) storedSequence;
+				Transform newTransform = (Transform) seq;
+				int storedComplexity = storedTransform.getComplexityScore();
+				int newComplexity = newTransform.getComplexityScore();
+				//LOG.debug("Stored seq. " + storedName + " has complexity " + storedComplexity);
+				//LOG.debug("New seq. " + seq.getName() + " has complexity " + newComplexity);
+				if (storedComplexity > newComplexity) {
+					// replace current representative with new sequence at the same position
+					Integer slot = name2slot.remove(storedName);
+					slots[slot.intValue()] = seq;
+					name2slot.put(seqName, slot);
 					name2seq.remove(storedName);
-					values2name.remove(storedSequence.getAbstractValues());
 					Set<OEISSequence> storedDuplicates = storedSequence.removeDuplicates();
 					seq.addDuplicates(storedDuplicates);
 					seq.addDuplicate(storedSequence);
@@ -122,18 +136,38 @@ public class SequenceStore implements Iterable<OEISSequence>, Serializable {
 					return true; //added
 				}
 			}
+			
+			// keep current representative; the duplicate sets are modified under the lock, too,
+			// otherwise a concurrent replacement of the representative could lose the new duplicate
+			Set<OEISSequence> duplicateDuplicates = seq.removeDuplicates();
+			storedSequence.addDuplicates(duplicateDuplicates);
+			storedSequence.addDuplicate(seq);
 		}
 
-		// keep current representative
-		Set<OEISSequence> duplicateDuplicates = seq.removeDuplicates();
-		storedSequence.addDuplicates(duplicateDuplicates);
-		storedSequence.addDuplicate(seq);
-		if (verbose) LOG.info("ignored sequence " + seq.getName() + " which is an exact duplicate of sequence " + storedName);
+		if (verbose) LOG.info("ignored sequence " + seq.getName() + " which is an exact duplicate of sequence " + storedSequence.getName());
 		//LOG.debug("\t sequence " + seq.nameAndValuesString());
-		//LOG.debug("\t sequence " + name2seq.get(storedName).nameAndValuesString());
+		//LOG.debug("\t sequence " + storedSequence.nameAndValuesString());
 		return false;
 	}
 	
+	/**
+	 * Appends a new sequence to the iteration order. Requires synchronization.
+	 * @param seq
+	 */
+	private void addSlot(OEISSequence seq) {
+		OEISSequence[] slots = this.slots;
+		int count = slotCount;
+		if (count == slots.length) {
+			// iterators created before still run over the old array and do not see the sequences added from now on;
+			// otherwise iterators share the array and may see the slots written here and in remove()
+			slots = Arrays.copyOf(slots, Math.max(16, count + (count>>1)));
+			this.slots = slots;
+		}
+		slots[count] = seq;
+		name2slot.put(seq.getName(), Integer.valueOf(count));
+		slotCount = count+1;
+	}
+	
 	public void add(SequenceStore sequences) {
 		if (sequences!=null) {
 			for (OEISSequence seq : sequences) {
@@ -152,25 +186,47 @@ public class SequenceStore implements Iterable<OEISSequence>, Serializable {
 	 * @return the sequence that has been removed, or null if it was not contained.
 	 */
 	public OEISSequence remove(String seqName) {
-		OEISSequence seq = name2seq.get(seqName);
-		if (seq!=null) {
-			// there is a sequence to remove.
-			// also multiple attempts to remove do not matter, we synchronize
-			// because it could be confusing if several threads receive
-			// the sequence as a return value although only one of the 
-			// threads actually removed it...
-			synchronized (syncObject) {
-				// check again if sequence is still contained
-				seq = name2seq.get(seqName);
-				if (seq!=null) {
-					values2name.remove(seq.getAbstractValues());
-					name2seq.remove(seqName);
-					return seq;
-				}
+		if (!name2seq.containsKey(seqName)) {
+			//LOG.debug("sequence " + seqName + " has not been found...");
+			return null;
+		}
+		
+		// there is a sequence to remove.
+		// also multiple attempts to remove do not matter, we synchronize
+		// because it could be confusing if several threads receive
+		// the sequence as a return value although only one of the 
+		// threads actually removed it...
+		synchronized (this) {
+			OEISSequence seq = name2seq.remove(seqName);
+			if (seq!=null) {
+				values2name.remove(seq.getAbstractValues());
+				slots[name2slot.remove(seqName).intValue()] = null;
+				// compact the slots when more than half of them are empty
+				int count = slotCount;
+				if (count >= 16 && 2*name2seq.size() < count) compactSlots();
 			}
+			return seq;
 		}
-		//LOG.debug("sequence " + seqName + " has not been found...");
-		return seq;
+	}
+	
+	/**
+	 * Removes the empty slots of removed sequences from the iteration order. Requires synchronization.
+	 */
+	private void compactSlots() {
+		OEISSequence[] oldSlots = slots;
+		int oldCount = slotCount;
+		OEISSequence[] newSlots = new OEISSequence[Math.max(16, oldCount >> 1)];
+		int newCount = 0;
+		for (int i=0; i<oldCount; i++) {
+			OEISSequence seq = oldSlots[i];
+			if (seq != null) {
+				newSlots[newCount] = seq;
+				name2slot.put(seq.getName(), Integer.valueOf(newCount));
+				newCount++;
+			}
+		}
+		slots = newSlots;
+		slotCount = newCount;
 	}
 	
 	public int size() {
@@ -178,9 +234,54 @@ public class SequenceStore implements Iterable<OEISSequence>, Serializable {
 	}
 
 	/**
-	 * @return An iterator over all sequences in this.
+	 * @return An iterator over all sequences in this, in insertion order.
 	 */
 	public Iterator<OEISSequence> iterator() {
-		return name2seq.values().iterator();
+		// Read slotCount first: A concurrent compaction publishes the new array before the new count, so if the count
+		// is the new one, then the array is the new one, too. Otherwise the old count is at least the number of used slots
+		// of the new array. Sequences contained when the iterator is created never move to a slot behind that count.
+		int slotCount = this.slotCount;
+		OEISSequence[] slots = this.slots;
+		return new SlotIterator(slots, Math.min(slotCount, slots.length));
+	}
+	
+	/**
+	 * Iterator over a snapshot of the slots array, skipping the empty slots of removed sequences.
+	 */
+	private static class SlotIterator implements Iterator<OEISSequence> {
+		private final OEISSequence[] slots;
+		private final int slotCount;
+		private int slot = 0;
+		private OEISSequence nextSeq;
+		
+		SlotIterator(OEISSequence[] slots, int slotCount) {
+			this.slots = slots;
+			this.slotCount = slotCount;
+			advance();
+		}
+		
+		private void advance() {
+			while (slot < slotCount) {
+				OEISSequence seq = slots[slot++];
+				if (seq != null) {
+					nextSeq = seq;
+					return;
+				}
+			}
+			nextSeq = null;
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return nextSeq != null;
+		}
+
+		@Override
+		public OEISSequence next() {
+			if (nextSeq == null) throw new NoSuchElementException();
+			OEISSequence seq = nextSeq;
+			advance();
+			return seq;
+		}
 	}
 }
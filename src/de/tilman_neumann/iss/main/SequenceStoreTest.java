@@ -0,0 +1,136 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.main;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.iss.sequence.SequenceValues_BigIntListImpl;
+import de.tilman_neumann.iss.transform.ConvolutionTransformation;
+import de.tilman_neumann.iss.transform.ConvolutionTransformationType;
+import de.tilman_neumann.iss.transform.Transform;
+import de.tilman_neumann.util.ConfigUtil;
+
+/**
+ * Test of concurrent additions of exact duplicates to a SequenceStore:
+ * Every duplicate must end up attached to the final representative.
+ * 
+ * @author Tilman Neumann
+ */
+public class SequenceStoreTest {
+	private static final Logger LOG = Logger.getLogger(SequenceStoreTest.class);
+
+	private static final int THREADS = 4;
+	private static final int SEQUENCES_PER_THREAD = 100;
+	private static final int ROUNDS = 20;
+	
+	private List<BigInteger> values;
+	
+	@Before
+	public void setup() {
+		ConfigUtil.initProject();
+		values = new ArrayList<BigInteger>();
+		for (int i=1; i<=20; i++) {
+			values.add(BigInteger.valueOf(i*i + 7));
+		}
+	}
+
+	@Test
+	public void testConcurrentDuplicates() throws Exception {
+		for (int round=0; round<ROUNDS; round++) {
+			List<OEISSequence> sequences = new ArrayList<OEISSequence>();
+			for (int i=0; i<THREADS*SEQUENCES_PER_THREAD; i++) {
+				sequences.add(new OEISSequence("S" + i, new SequenceValues_BigIntListImpl(values)));
+			}
+			checkConcurrentAdds(sequences);
+		}
+	}
+
+	/**
+	 * Transforms with a lower complexity replace the representative, moving its duplicates to the new one.
+	 */
+	@Test
+	public void testConcurrentRepresentativeReplacements() throws Exception {
+		Random rng = new Random(43);
+		ConvolutionTransformationType[] types = ConvolutionTransformationType.values();
+		OEISSequence inputSeq = new OEISSequence("input", new SequenceValues_BigIntListImpl(values));
+		for (int round=0; round<ROUNDS; round++) {
+			List<OEISSequence> sequences = new ArrayList<OEISSequence>();
+			for (int i=0; i<THREADS*SEQUENCES_PER_THREAD; i++) {
+				ConvolutionTransformation transformation = new ConvolutionTransformation(types[rng.nextInt(types.length)]);
+				sequences.add(new Transform("T" + i, new SequenceValues_BigIntListImpl(values), transformation, inputSeq, values.size()));
+			}
+			checkConcurrentAdds(sequences);
+		}
+	}
+	
+	private void checkConcurrentAdds(final List<OEISSequence> sequences) throws Exception {
+		final SequenceStore store = new SequenceStore(false);
+		final CountDownLatch startSignal = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int t=0; t<THREADS; t++) {
+				final List<OEISSequence> threadSequences = sequences.subList(t*SEQUENCES_PER_THREAD, (t+1)*SEQUENCES_PER_THREAD);
+				futures.add(executor.submit(new Runnable() {
+					public void run() {
+						try {
+							startSignal.await();
+						} catch (InterruptedException e) {
+							throw new IllegalStateException(e);
+						}
+						for (OEISSequence seq : threadSequences) {
+							store.add(seq);
+						}
+					}
+				}));
+			}
+			startSignal.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		assertEquals(1, store.size());
+		Iterator<OEISSequence> iter = store.iterator();
+		OEISSequence representative = iter.next();
+		assertEquals(false, iter.hasNext());
+		Set<String> names = new HashSet<String>();
+		names.add(representative.getName());
+		for (OEISSequence duplicate : representative.getDuplicates()) {
+			assertEquals(0, duplicate.getDuplicates().size());
+			names.add(duplicate.getName());
+		}
+		assertEquals(sequences.size(), names.size());
+		LOG.debug("representative " + representative.getName() + " has " + representative.getDuplicates().size() + " duplicates");
+	}
+}
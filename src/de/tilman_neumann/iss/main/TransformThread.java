@@ -13,69 +13,70 @@
  */
 package de.tilman_neumann.iss.main;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
 import org.apache.log4j.Logger;
 
 import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.iss.transform.TransformCache;
 import de.tilman_neumann.iss.transform.Transformation;
 import de.tilman_neumann.iss.transform.TransformationException;
 
 /**
- * Computation of sequence transforms, unthreaded or threaded.
+ * Computation of sequence transforms, unthreaded or as a task of the WorkerPool.
  *
  * @author Tilman Neumann
  */
-public class TransformThread implements Runnable {
+public class TransformThread implements Callable<List<OEISSequence>> {
 	
 	private static final Logger LOG = Logger.getLogger(TransformThread.class);
 
-	private final TransformThreadController listener;
-
-	private Transformation[] transformations;
-	private int maxNumberOfValues;
-	private boolean allowSimilarResults;
+	private final Transformation[] transformations;
+	private final int maxNumberOfValues;
+	private final boolean allowSimilarResults;
 
-	private OEISSequence inputSeq;
+	private final OEISSequence inputSeq;
 
 	/**
 	 * Full constructor for threaded transform computations.
 	 * @param transformations
 	 * @param maxNumberOfValues
 	 * @param allowSimilarResults
-	 * @param listener
+	 * @param inputSeq the sequence to transform
 	 */
-	public TransformThread(Transformation[] transformations, int maxNumberOfValues, boolean allowSimilarResults, TransformThreadController listener) {
+	public TransformThread(Transformation[] transformations, int maxNumberOfValues, boolean allowSimilarResults, OEISSequence inputSeq) {
+		if (inputSeq == null) throw new NullPointerException("input sequence");
 		this.transformations = transformations;
 		this.maxNumberOfValues = maxNumberOfValues;
 		this.allowSimilarResults = allowSimilarResults;
-		this.listener = listener;
-	}
-
-	/**
-	 * Set the sequence to transform.
-	 * Must be called before invoking the run() method.
-	 * @param inputSeq
-	 */
-	public void setInputSeq(OEISSequence inputSeq) {
 		this.inputSeq = inputSeq;
 	}
 	
 	/**
-	 * Computes transforms of the input sequence in a new thread.
+	 * Computes transforms of the input sequence. If there is a default TransformCache,
+	 * the transforms are taken from there if possible.
+	 * @return the transforms that could be computed, in the order of the transformations
 	 */
-	public void run() {
-		if (inputSeq == null) throw new NullPointerException("input sequence");
+	public List<OEISSequence> call() {
 		//LOG.info("input seq = " + inputSeq.nameAndValuesString());
+		List<OEISSequence> transforms = new ArrayList<OEISSequence>(transformations.length);
+		TransformCache transformCache = TransformCache.getDefault();
 		
-		// compute transforms:
+		// compute transforms, or get them from the cache:
 		for (Transformation transformation : this.transformations) {
 			try {
-				OEISSequence seq = transformation.compute(inputSeq, maxNumberOfValues, !allowSimilarResults);
-				this.listener.addPartialResult(seq);
+				if (transformCache != null) {
+					transforms.add(transformCache.compute(transformation, inputSeq, maxNumberOfValues, !allowSimilarResults));
+				} else {
+					transforms.add(transformation.compute(inputSeq, maxNumberOfValues, !allowSimilarResults));
+				}
 			} catch (TransformationException e) {
 				LOG.info("Could not compute " + transformation.getName() + " transform of sequence " + inputSeq.getName());
 			}
 		}
-		this.listener.notifyFinish(this); // wake up control thread
+		return transforms;
 	}
 
 	/**
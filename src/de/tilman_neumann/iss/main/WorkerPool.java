@@ -0,0 +1,75 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.main;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.apache.log4j.Logger;
+
+import de.tilman_neumann.util.ConfigUtil;
+
+/**
+ * The thread pool shared by all parallel phases of a lookup: Computation of transforms, expansion of transforms,
+ * and comparison of lookup sequences with the database.
+ * 
+ * This is a work-stealing pool of daemon threads that lives as long as the JVM. It has one worker per processor,
+ * because the control thread does not compete with the workers: it just submits tasks and merges their results.
+ * 
+ * @author Tilman Neumann
+ */
+public class WorkerPool {
+	
+	private static final Logger LOG = Logger.getLogger(WorkerPool.class);
+
+	private static final ForkJoinPool POOL = createPool();
+	
+	private static ForkJoinPool createPool() {
+		int parallelism = Math.max(1, ConfigUtil.NUMBER_OF_PROCESSORS);
+		LOG.info("Create worker pool with " + parallelism + " threads");
+		ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+			@Override
+			public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("Worker-" + thread.getPoolIndex());
+				return thread;
+			}
+		};
+		return new ForkJoinPool(parallelism, threadFactory, null, false);
+	}
+	
+	private WorkerPool() {
+		// static class
+	}
+	
+	/**
+	 * Submits a task for asynchronous execution.
+	 * The result is obtained by join(), which rethrows exceptions thrown by the task.
+	 * 
+	 * @param task
+	 * @return the future result of the task
+	 */
+	public static <T> ForkJoinTask<T> submit(Callable<T> task) {
+		return POOL.submit(task);
+	}
+	
+	/**
+	 * @return the number of worker threads
+	 */
+	public static int getParallelism() {
+		return POOL.getParallelism();
+	}
+}
@@ -20,7 +20,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import de.tilman_neumann.util.SortedMultiset;
+import de.tilman_neumann.util.IntPositionTable;
+import de.tilman_neumann.util.IntSetSignature;
+import de.tilman_neumann.util.SortedIntMultiset;
 
 /**
  * Interface for and partial implementation of OEIS sequences.
@@ -128,10 +130,18 @@ public class OEISSequence implements Serializable {
 		return values.getUnsignedValueIndices();
 	}
 	
-	public SortedMultiset<Integer> getUnsignedValueIndexMultiset() {
+	public SortedIntMultiset getUnsignedValueIndexMultiset() {
 		return values.getUnsignedValueIndexMultiset();
 	}
 	
+	public IntSetSignature getUnsignedValueIndexSignature() {
+		return values.getUnsignedValueIndexSignature();
+	}
+	
+	public IntPositionTable getUnsignedValuePositions() {
+		return values.getUnsignedValuePositions();
+	}
+	
 	public int size() {
 		return values.size();
 	}
@@ -0,0 +1,357 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.sequence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.log4j.Logger;
+
+import de.tilman_neumann.util.ConfigUtil;
+
+/**
+ * Parallel parser for the OEIS data file (stripped.txt).
+ *
+ * The file is memory-mapped and split into byte ranges on line boundaries. The chunks are parsed on a fork-join pool
+ * by a hand-written scanner that builds small terms directly from longs. Each chunk collects its distinct unsigned values
+ * in order of their first occurrence; merging the chunks in file order then registers the values in the ValuesStore
+ * in exactly the same order as a sequential parser would do, so value indices and frequencies do not depend on the
+ * number of threads.
+ *
+ * Line format and error handling follow BigIntList.valueOf(): The sequence name is everything before the first comma,
+ * values are separated by commas, empty tokens are skipped and any other malformed term makes the whole line broken.
+ * Lines starting with '#' are comments.
+ *
+ * @author Tilman Neumann
+ */
+public class OeisDataFileParser {
+
+	private static final Logger LOG = Logger.getLogger(OeisDataFileParser.class);
+
+	/** Maximum number of decimal digits that always fit into a long. */
+	private static final int MAX_LONG_DIGITS = 18;
+
+	private static final int DEFAULT_MIN_CHUNK_SIZE = 1<<20;
+
+	private int parallelism;
+	private int minChunkSize;
+	private int numberOfBrokenLines;
+
+	/**
+	 * Default constructor, using all processors.
+	 */
+	public OeisDataFileParser() {
+		this(ConfigUtil.NUMBER_OF_PROCESSORS, DEFAULT_MIN_CHUNK_SIZE);
+	}
+
+	/**
+	 * Full constructor.
+	 * @param parallelism number of parser threads
+	 * @param minChunkSize minimum number of bytes per chunk
+	 */
+	public OeisDataFileParser(int parallelism, int minChunkSize) {
+		this.parallelism = Math.max(1, parallelism);
+		this.minChunkSize = Math.max(1, minChunkSize);
+	}
+
+	/**
+	 * Parses the given OEIS data file. The unsigned values of all sequences are registered in the global ValuesStore.
+	 *
+	 * @param dataFile
+	 * @return sequences in the order of the data file, including exact duplicates
+	 * @throws IOException if the file can not be read
+	 */
+	public List<OEISSequence> parse(File dataFile) throws IOException {
+		ByteBuffer buf;
+		try (RandomAccessFile raf = new RandomAccessFile(dataFile, "r"); FileChannel channel = raf.getChannel()) {
+			long fileSize = channel.size();
+			if (fileSize > Integer.MAX_VALUE) throw new IOException("OEIS data file " + dataFile + " is too big");
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+		}
+		int fileSize = buf.limit();
+
+		// split into chunks on line boundaries
+		int numberOfChunks = (int) Math.max(1, Math.min(4L*parallelism, fileSize/minChunkSize));
+		ArrayList<Chunk> chunks = new ArrayList<Chunk>(numberOfChunks);
+		int chunkStart = 0;
+		for (int i=1; i<=numberOfChunks && chunkStart<fileSize; i++) {
+			int chunkEnd = (i==numberOfChunks) ? fileSize : (int) ((long)fileSize*i/numberOfChunks);
+			if (chunkEnd < chunkStart) chunkEnd = chunkStart;
+			while (chunkEnd<fileSize && buf.get(chunkEnd)!='\n') chunkEnd++;
+			if (chunkEnd<fileSize) chunkEnd++; // include '\n'
+			chunks.add(new Chunk(buf, chunkStart, chunkEnd));
+			chunkStart = chunkEnd;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			// parse chunks in parallel
+			for (Chunk chunk : chunks) pool.execute(chunk.parser);
+			for (Chunk chunk : chunks) chunk.parser.join();
+
+			// register values in file order and report broken lines with their global line numbers
+			ValuesStore valuesStore = ValuesStore.get();
+			int lineOffset = 0;
+			numberOfBrokenLines = 0;
+			int numberOfSequences = 0;
+			for (Chunk chunk : chunks) {
+				int localValueCount = chunk.localValues.size();
+				chunk.local2global = new int[localValueCount];
+				for (int i=0; i<localValueCount; i++) {
+					chunk.local2global[i] = valuesStore.addValue(chunk.localValues.get(i), chunk.localFrequencies[i]);
+				}
+				chunk.localValues = null;
+				for (int i=0; i<chunk.brokenLineNumbers.size(); i++) {
+					LOG.warn("Ignore broken line #" + (lineOffset + chunk.brokenLineNumbers.get(i)) + ": " + chunk.brokenLines.get(i));
+					LOG.warn("Reason: " + chunk.brokenLineReasons.get(i));
+				}
+				numberOfBrokenLines += chunk.brokenLineNumbers.size();
+				numberOfSequences += chunk.names.size();
+				lineOffset += chunk.lineCount;
+			}
+
+			// create sequences in parallel
+			for (Chunk chunk : chunks) pool.execute(chunk.createSequencesAction());
+			for (Chunk chunk : chunks) chunk.sequenceCreator.join();
+
+			ArrayList<OEISSequence> sequences = new ArrayList<OEISSequence>(numberOfSequences);
+			for (Chunk chunk : chunks) {
+				sequences.addAll(chunk.sequences);
+			}
+			return sequences;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @return the number of broken lines found by the last parse() call
+	 */
+	public int getNumberOfBrokenLines() {
+		return numberOfBrokenLines;
+	}
+
+	/**
+	 * A byte range of the data file, starting at the beginning of a line and ending after a line break or at the end of file.
+	 */
+	private static class Chunk {
+		private ByteBuffer buf;
+		private int start;
+		private int end;
+
+		// parse results
+		private int lineCount;
+		private ArrayList<String> names = new ArrayList<String>();
+		private ArrayList<int[]> localValueIndices = new ArrayList<int[]>();
+		private ArrayList<boolean[]> negSigns = new ArrayList<boolean[]>();
+		private ArrayList<Integer> hashcodes = new ArrayList<Integer>();
+		private ArrayList<Integer> brokenLineNumbers = new ArrayList<Integer>();
+		private ArrayList<String> brokenLines = new ArrayList<String>();
+		private ArrayList<String> brokenLineReasons = new ArrayList<String>();
+
+		// local values table: distinct unsigned values in order of first occurrence
+		private HashMap<BigInteger, Integer> localValue2Index = new HashMap<BigInteger, Integer>();
+		private ArrayList<BigInteger> localValues = new ArrayList<BigInteger>();
+		private int[] localHashcodes = new int[256];
+		private int[] localFrequencies = new int[256];
+		private int[] local2global;
+
+		private ArrayList<OEISSequence> sequences;
+
+		private RecursiveAction parser = new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected void compute() {
+				parse();
+			}
+		};
+
+		private RecursiveAction sequenceCreator;
+
+		// line buffers, reused
+		private int[] lineValueIndices = new int[64];
+		private boolean[] lineNegSigns = new boolean[64];
+
+		Chunk(ByteBuffer buf, int start, int end) {
+			this.buf = buf.duplicate();
+			this.start = start;
+			this.end = end;
+		}
+
+		private void parse() {
+			int lineStart = start;
+			while (lineStart < end) {
+				int lineEnd = lineStart;
+				while (lineEnd<end && buf.get(lineEnd)!='\n') lineEnd++;
+				lineCount++;
+				int localValueCount = localValues.size();
+				String reason = parseLine(lineStart, lineEnd);
+				if (reason != null) {
+					// forget values that occurred first in the broken line, a sequential parser would never have seen them
+					while (localValues.size() > localValueCount) {
+						localValue2Index.remove(localValues.remove(localValues.size()-1));
+					}
+					brokenLineNumbers.add(Integer.valueOf(lineCount));
+					brokenLines.add(decode(lineStart, lineEnd).trim());
+					brokenLineReasons.add(reason);
+				}
+				lineStart = lineEnd+1;
+			}
+			localValue2Index = null;
+			lineValueIndices = null;
+			lineNegSigns = null;
+		}
+
+		/**
+		 * Parses one line.
+		 * @return null if the line was parsed successfully or is a comment, otherwise the reason why the line is broken
+		 */
+		private String parseLine(int lineStart, int lineEnd) {
+			// trim
+			while (lineStart<lineEnd && (buf.get(lineStart)&0xFF)<=' ') lineStart++;
+			while (lineEnd>lineStart && (buf.get(lineEnd-1)&0xFF)<=' ') lineEnd--;
+			if (lineStart<lineEnd && buf.get(lineStart)=='#') return null; // comment
+
+			int nameEnd = lineStart;
+			while (nameEnd<lineEnd && buf.get(nameEnd)!=',') nameEnd++;
+			if (nameEnd == lineEnd) return "missing ',' after sequence name";
+			String name = decode(lineStart, nameEnd);
+
+			int size = 0;
+			int hashcode = 1;
+			int tokenStart = nameEnd+1;
+			while (tokenStart < lineEnd) {
+				int tokenEnd = tokenStart;
+				while (tokenEnd<lineEnd && buf.get(tokenEnd)!=',') tokenEnd++;
+				if (tokenEnd > tokenStart) {
+					// non-empty token
+					int pos = tokenStart;
+					int last = tokenEnd;
+					while (pos<last && (buf.get(pos)&0xFF)<=' ') pos++;
+					while (last>pos && (buf.get(last-1)&0xFF)<=' ') last--;
+					boolean negative = false;
+					if (pos<last && (buf.get(pos)=='-' || buf.get(pos)=='+')) {
+						negative = buf.get(pos)=='-';
+						pos++;
+					}
+					if (pos == last) return illegalValue(tokenStart, tokenEnd);
+					BigInteger unsignedValue;
+					if (last-pos <= MAX_LONG_DIGITS) {
+						long value = 0;
+						for (int i=pos; i<last; i++) {
+							int digit = buf.get(i) - '0';
+							if (digit<0 || digit>9) return illegalValue(tokenStart, tokenEnd);
+							value = 10*value + digit;
+						}
+						unsignedValue = BigInteger.valueOf(value);
+					} else {
+						for (int i=pos; i<last; i++) {
+							int digit = buf.get(i) - '0';
+							if (digit<0 || digit>9) return illegalValue(tokenStart, tokenEnd);
+						}
+						unsignedValue = new BigInteger(decode(pos, last));
+					}
+					if (unsignedValue.signum()==0) negative = false; // -0 == 0
+
+					int localIndex = getLocalIndex(unsignedValue);
+					if (size == lineValueIndices.length) {
+						lineValueIndices = Arrays.copyOf(lineValueIndices, 2*size);
+						lineNegSigns = Arrays.copyOf(lineNegSigns, 2*size);
+					}
+					lineValueIndices[size] = localIndex;
+					lineNegSigns[size] = negative;
+					size++;
+					// same as List<BigInteger>.hashCode(), using BigInteger.hashCode() == signum * hashcode of magnitude
+					int unsignedHashcode = localHashcodes[localIndex];
+					hashcode = 31*hashcode + (negative ? -unsignedHashcode : unsignedHashcode);
+				}
+				tokenStart = tokenEnd+1;
+			}
+
+			// line is ok -> count values
+			for (int i=0; i<size; i++) {
+				localFrequencies[lineValueIndices[i]]++;
+			}
+			names.add(name);
+			localValueIndices.add(Arrays.copyOf(lineValueIndices, size));
+			negSigns.add(Arrays.copyOf(lineNegSigns, size));
+			hashcodes.add(Integer.valueOf(hashcode));
+			return null;
+		}
+
+		private int getLocalIndex(BigInteger unsignedValue) {
+			Integer localIndex = localValue2Index.get(unsignedValue);
+			if (localIndex != null) return localIndex.intValue();
+
+			int newIndex = localValues.size();
+			localValues.add(unsignedValue);
+			localValue2Index.put(unsignedValue, Integer.valueOf(newIndex));
+			if (newIndex == localHashcodes.length) {
+				localHashcodes = Arrays.copyOf(localHashcodes, 2*newIndex);
+				localFrequencies = Arrays.copyOf(localFrequencies, 2*newIndex);
+			}
+			localHashcodes[newIndex] = unsignedValue.hashCode();
+			// frequencies are counted only for lines that are parsed completely
+			return newIndex;
+		}
+
+		private String illegalValue(int tokenStart, int tokenEnd) {
+			return IllegalArgumentException.class.getName() + ": str contains illegal value '" + decode(tokenStart, tokenEnd).trim() + "'";
+		}
+
+		private String decode(int from, int to) {
+			byte[] bytes = new byte[to-from];
+			for (int i=from; i<to; i++) {
+				bytes[i-from] = buf.get(i);
+			}
+			return new String(bytes, Charset.defaultCharset());
+		}
+
+		/**
+		 * @return action that maps local to global value indices and creates the sequences of this chunk
+		 */
+		private RecursiveAction createSequencesAction() {
+			sequenceCreator = new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected void compute() {
+					int numberOfSequences = names.size();
+					sequences = new ArrayList<OEISSequence>(numberOfSequences);
+					for (int s=0; s<numberOfSequences; s++) {
+						int[] valueIndices = localValueIndices.get(s);
+						for (int i=0; i<valueIndices.length; i++) {
+							valueIndices[i] = local2global[valueIndices[i]];
+						}
+						SequenceValues values = new SequenceValues_UnsignedIndexListImpl(valueIndices, negSigns.get(s), hashcodes.get(s).intValue());
+						sequences.add(new OEISSequence(names.get(s), values));
+					}
+					localValueIndices = null;
+					negSigns = null;
+				}
+			};
+			return sequenceCreator;
+		}
+	}
+}
@@ -18,7 +18,9 @@ import java.math.BigInteger;
 import java.util.Iterator;
 import java.util.List;
 
-import de.tilman_neumann.util.SortedMultiset;
+import de.tilman_neumann.util.IntPositionTable;
+import de.tilman_neumann.util.IntSetSignature;
+import de.tilman_neumann.util.SortedIntMultiset;
 
 /**
  * Interface for and partial implementation of integer sequences.
@@ -43,8 +45,24 @@ public abstract class SequenceValues implements Serializable {
 		this.hashcode = values.hashCode();
 	}
 
+	/**
+	 * Constructor for sequences whose hashcode has been computed before, e.g. restored from a snapshot.
+	 * @param hashcode the hashcode of the values list
+	 */
+	protected SequenceValues(int hashcode) {
+		this.hashcode = hashcode;
+	}
+
 	abstract public BigInteger getValue(int i);
 	
+	/**
+	 * @param i position
+	 * @return true if the value at position i is negative
+	 */
+	public boolean isNegative(int i) {
+		return getValue(i).signum() < 0;
+	}
+	
 	/**
 	 * @return the values of this sequence in their natural order
 	 */
@@ -65,7 +83,17 @@ public abstract class SequenceValues implements Serializable {
 	 * @return the indices and their multiplicities (unordered) of the _unsigned_ values
 	 */
 	// TODO: Outcomment this, create Sequence.compare()-method that encapsulates this functionality
-	abstract public SortedMultiset<Integer> getUnsignedValueIndexMultiset();
+	abstract public SortedIntMultiset getUnsignedValueIndexMultiset();
+	
+	/**
+	 * @return a Bloom filter signature of the _unsigned_ value indices, allowing to reject non-matching sequences quickly
+	 */
+	abstract public IntSetSignature getUnsignedValueIndexSignature();
+	
+	/**
+	 * @return the positions at which each of the _unsigned_ value indices occurs
+	 */
+	abstract public IntPositionTable getUnsignedValuePositions();
 	
 	/**
 	 * @return the number of values this sequence contains
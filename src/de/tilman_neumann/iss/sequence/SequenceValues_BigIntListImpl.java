@@ -17,8 +17,9 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
-import de.tilman_neumann.util.SortedMultiset;
-import de.tilman_neumann.util.SortedMultiset_BottomUp;
+import de.tilman_neumann.util.IntPositionTable;
+import de.tilman_neumann.util.IntSetSignature;
+import de.tilman_neumann.util.SortedIntMultiset;
 
 /**
  * An integer sequence, implemented as a list of BigIntegers.
@@ -77,12 +78,24 @@ public class SequenceValues_BigIntListImpl extends SequenceValues {
 	 * (non-Javadoc)
 	 * @see de.tilman_neumann.math.app.oeis.sequence.Sequence#getUnsignedIndexMultiset()
 	 */
-	public SortedMultiset<Integer> getUnsignedValueIndexMultiset() {
-		SortedMultiset<Integer> unsignedValueIndexMultiset = new SortedMultiset_BottomUp<Integer>();
-		for (int unsignedValueIndex : this.getUnsignedValueIndices()) {
-			unsignedValueIndexMultiset.add(Integer.valueOf(unsignedValueIndex));
-		}
-		return unsignedValueIndexMultiset;
+	public SortedIntMultiset getUnsignedValueIndexMultiset() {
+		return new SortedIntMultiset(this.getUnsignedValueIndices());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.iss.sequence.SequenceValues#getUnsignedValueIndexSignature()
+	 */
+	public IntSetSignature getUnsignedValueIndexSignature() {
+		return new IntSetSignature(this.getUnsignedValueIndexMultiset());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.iss.sequence.SequenceValues#getUnsignedValuePositions()
+	 */
+	public IntPositionTable getUnsignedValuePositions() {
+		return new IntPositionTable(this.getUnsignedValueIndices());
 	}
 
 	/* (non-Javadoc)
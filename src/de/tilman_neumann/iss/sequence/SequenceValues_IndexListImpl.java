@@ -17,8 +17,9 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
-import de.tilman_neumann.util.SortedMultiset;
-import de.tilman_neumann.util.SortedMultiset_BottomUp;
+import de.tilman_neumann.util.IntPositionTable;
+import de.tilman_neumann.util.IntSetSignature;
+import de.tilman_neumann.util.SortedIntMultiset;
 
 /**
  * An integer sequence, implemented as a list of value indices.
@@ -88,11 +89,25 @@ public class SequenceValues_IndexListImpl extends SequenceValues {
 	 * @see de.tilman_neumann.math.app.oeis.sequence.Sequence#getUnsignedIndexMultiset()
 	 */
 	@Override
-	public SortedMultiset<Integer> getUnsignedValueIndexMultiset() {
-		SortedMultiset<Integer> unsignedValueIndexMultiset = new SortedMultiset_BottomUp<Integer>();
-		for (int unsignedValueIndex : this.getUnsignedValueIndices()) {
-			unsignedValueIndexMultiset.add(Integer.valueOf(unsignedValueIndex));
-		}
-		return unsignedValueIndexMultiset;
+	public SortedIntMultiset getUnsignedValueIndexMultiset() {
+		return new SortedIntMultiset(this.getUnsignedValueIndices());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.iss.sequence.SequenceValues#getUnsignedValueIndexSignature()
+	 */
+	@Override
+	public IntSetSignature getUnsignedValueIndexSignature() {
+		return new IntSetSignature(this.getUnsignedValueIndexMultiset());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.iss.sequence.SequenceValues#getUnsignedValuePositions()
+	 */
+	@Override
+	public IntPositionTable getUnsignedValuePositions() {
+		return new IntPositionTable(this.getUnsignedValueIndices());
 	}
 }
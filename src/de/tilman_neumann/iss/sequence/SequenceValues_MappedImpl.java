@@ -0,0 +1,142 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.sequence;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.tilman_neumann.util.IntPositionTable;
+import de.tilman_neumann.util.IntSetSignature;
+import de.tilman_neumann.util.SortedIntMultiset;
+
+/**
+ * An integer sequence whose unsigned value indices and signs are stored outside of the Java heap,
+ * e.g. in a memory-mapped snapshot file.
+ *
+ * The buffer region has the layout written by OeisDataSnapshot: <code>size</code> big-endian ints with the
+ * unsigned value indices, followed by <code>(size+7)/8</code> bytes of sign bits. Only the location of the data
+ * is kept on the heap; the index multiset, signature and position table are computed on demand and not cached,
+ * because they are needed only for the few sequences passing the prefilters of a lookup.
+ *
+ * @author Tilman Neumann
+ */
+public class SequenceValues_MappedImpl extends SequenceValues {
+
+	private static final long serialVersionUID = -5521407469135640826L;
+
+	private final ByteBuffer buffer; // only absolute gets are used, so the buffer may be shared by many threads
+	private final int offset;
+	private final int size;
+
+	/**
+	 * Full constructor.
+	 * @param buffer buffer containing the unsigned value indices and sign bits
+	 * @param offset position of the first unsigned value index in the buffer
+	 * @param size number of values
+	 * @param hashcode the hashcode of the (signed) values list
+	 */
+	public SequenceValues_MappedImpl(ByteBuffer buffer, int offset, int size, int hashcode) {
+		super(hashcode);
+		this.buffer = buffer;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	private int getUnsignedValueIndex(int i) {
+		return buffer.getInt(offset + (i<<2));
+	}
+
+	/**
+	 * @param i position
+	 * @return true if the value at position i is negative
+	 */
+	@Override
+	public boolean isNegative(int i) {
+		return (buffer.get(offset + (size<<2) + (i>>3)) & (1<<(i&7))) != 0;
+	}
+
+	public BigInteger getValue(int i) {
+		BigInteger unsignedValue = ValuesStore.get().getValue(getUnsignedValueIndex(i));
+		return isNegative(i) ? unsignedValue.negate() : unsignedValue;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.iss.sequence.SequenceValues#getValues()
+	 */
+	public List<BigInteger> getValues() {
+		List<BigInteger> values = new ArrayList<BigInteger>(size);
+		for (int i=0; i<size; i++) {
+			values.add(getValue(i));
+		}
+		return values;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.iss.sequence.SequenceValues#getUnsignedValues()
+	 */
+	public List<BigInteger> getUnsignedValues() {
+		return ValuesStore.get().getValues(getUnsignedValueIndices());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.iss.sequence.SequenceValues#size()
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return a new array of the unsigned value indices
+	 */
+	@Override
+	public int[] getUnsignedValueIndices() {
+		int[] unsignedValueIndices = new int[size];
+		for (int i=0; i<size; i++) {
+			unsignedValueIndices[i] = getUnsignedValueIndex(i);
+		}
+		return unsignedValueIndices;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.iss.sequence.SequenceValues#getUnsignedValueIndexMultiset()
+	 */
+	@Override
+	public SortedIntMultiset getUnsignedValueIndexMultiset() {
+		return new SortedIntMultiset(getUnsignedValueIndices());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.iss.sequence.SequenceValues#getUnsignedValueIndexSignature()
+	 */
+	@Override
+	public IntSetSignature getUnsignedValueIndexSignature() {
+		return new IntSetSignature(getUnsignedValueIndexMultiset());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.iss.sequence.SequenceValues#getUnsignedValuePositions()
+	 */
+	@Override
+	public IntPositionTable getUnsignedValuePositions() {
+		return new IntPositionTable(getUnsignedValueIndices());
+	}
+}
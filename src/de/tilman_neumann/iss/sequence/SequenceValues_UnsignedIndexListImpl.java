@@ -19,8 +19,9 @@ import java.util.List;
 
 import org.apache.log4j.Logger;
 
-import de.tilman_neumann.util.SortedMultiset;
-import de.tilman_neumann.util.SortedMultiset_BottomUp;
+import de.tilman_neumann.util.IntPositionTable;
+import de.tilman_neumann.util.IntSetSignature;
+import de.tilman_neumann.util.SortedIntMultiset;
 
 /**
  * An integer sequence, implemented as a list of value indices.
@@ -33,11 +34,17 @@ public class SequenceValues_UnsignedIndexListImpl extends SequenceValues {
 	@SuppressWarnings("unused")
 	private static final Logger LOG = Logger.getLogger(SequenceValues_UnsignedIndexListImpl.class);
 	
-	private int[] unsignedValueIndices; // faster then List<Integer>, but higher memory requirements because unsignedValueIndexMultiset still needs Integer
+	private int[] unsignedValueIndices; // faster then List<Integer>
 	private boolean[] negSigns; // same memory requirement as byte[] with (-1/0/1) values
 	
-	private SortedMultiset<Integer> unsignedValueIndexMultiset;
+	private SortedIntMultiset unsignedValueIndexMultiset;
+	private IntSetSignature unsignedValueIndexSignature;
 	// Note: Replacement with Map<ValueIndex, List<Position>> gave no improvement!
+	/**
+	 * Positions of the unsigned value indices, created on demand because only sequences surviving the multiset
+	 * prefilter need it. Concurrent creation is harmless because the table is immutable.
+	 */
+	private transient IntPositionTable unsignedValuePositions;
 
 	/**
 	 * Full constructor.
@@ -60,10 +67,23 @@ public class SequenceValues_UnsignedIndexListImpl extends SequenceValues {
 		//LOG.debug("unsignedValues = " + unsignedValues);
 		this.unsignedValueIndices = ValuesStore.get().addAll(unsignedValues);
 		//LOG.debug("unsignedValueIndices = " + toString(unsignedValueIndices));
-		this.unsignedValueIndexMultiset = new SortedMultiset_BottomUp<Integer>();
-		for (int unsignedValueIndex : unsignedValueIndices) {
-			unsignedValueIndexMultiset.add(Integer.valueOf(unsignedValueIndex));
-		}
+		this.unsignedValueIndexMultiset = new SortedIntMultiset(unsignedValueIndices);
+		this.unsignedValueIndexSignature = new IntSetSignature(unsignedValueIndexMultiset);
+	}
+	
+	/**
+	 * Constructor for sequences whose unsigned values are already registered in the ValuesStore,
+	 * e.g. when restored from a snapshot.
+	 * @param unsignedValueIndices indices of the unsigned values in the ValuesStore
+	 * @param negSigns true for negative values
+	 * @param hashcode the hashcode of the (signed) values list
+	 */
+	public SequenceValues_UnsignedIndexListImpl(int[] unsignedValueIndices, boolean[] negSigns, int hashcode) {
+		super(hashcode);
+		this.unsignedValueIndices = unsignedValueIndices;
+		this.negSigns = negSigns;
+		this.unsignedValueIndexMultiset = new SortedIntMultiset(unsignedValueIndices);
+		this.unsignedValueIndexSignature = new IntSetSignature(unsignedValueIndexMultiset);
 	}
 	
 	public BigInteger getValue(int i) {
@@ -97,6 +117,15 @@ public class SequenceValues_UnsignedIndexListImpl extends SequenceValues {
 		return ValuesStore.get().getValues(this.unsignedValueIndices);
 	}
 
+	/**
+	 * @param i position
+	 * @return true if the value at position i is negative
+	 */
+	@Override
+	public boolean isNegative(int i) {
+		return negSigns[i];
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see de.tilman_neumann.math.app.oeis.sequence.Sequence#size()
@@ -119,7 +148,30 @@ public class SequenceValues_UnsignedIndexListImpl extends SequenceValues {
 	 * @see de.tilman_neumann.math.app.oeis.sequence.Sequence#getUnsignedIndexMultiset()
 	 */
 	@Override
-	public SortedMultiset<Integer> getUnsignedValueIndexMultiset() {
+	public SortedIntMultiset getUnsignedValueIndexMultiset() {
 		return this.unsignedValueIndexMultiset;
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.iss.sequence.SequenceValues#getUnsignedValueIndexSignature()
+	 */
+	@Override
+	public IntSetSignature getUnsignedValueIndexSignature() {
+		return this.unsignedValueIndexSignature;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.iss.sequence.SequenceValues#getUnsignedValuePositions()
+	 */
+	@Override
+	public IntPositionTable getUnsignedValuePositions() {
+		IntPositionTable positions = this.unsignedValuePositions;
+		if (positions == null) {
+			positions = new IntPositionTable(this.unsignedValueIndices);
+			this.unsignedValuePositions = positions;
+		}
+		return positions;
+	}
 }
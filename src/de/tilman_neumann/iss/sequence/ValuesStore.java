@@ -13,18 +13,17 @@
  */
 package de.tilman_neumann.iss.sequence;
 
-import java.math.BigInteger;
-
-import de.tilman_neumann.util.IndexedSetDefaultImpl;
+import de.tilman_neumann.util.IndexedSet_BigIntegerImpl;
 
 /**
  * A global server class for big integer values stored by indices.
  * 
- * Is thread-safe because IndexedSetDefaultImpl.addValue() is internally synchronized.
+ * Is thread-safe because IndexedSet_BigIntegerImpl synchronizes the insertion of new values
+ * and increments frequencies atomically.
  * 
  * @author Tilman Neumann
  */
-public class ValuesStore extends IndexedSetDefaultImpl<BigInteger> {
+public class ValuesStore extends IndexedSet_BigIntegerImpl {
 
 	private static ValuesStore singleton = new ValuesStore();
 	
@@ -18,7 +18,7 @@ import org.apache.log4j.Logger;
 import de.tilman_neumann.iss.sequence.OEISSequence;
 import de.tilman_neumann.iss.sequenceComparison.SequenceMatchCondition;
 import de.tilman_neumann.iss.sequenceMatch.SequenceMatchLinear;
-import de.tilman_neumann.util.SortedMultiset;
+import de.tilman_neumann.util.SortedIntMultiset;
 
 /**
  * A comparator for sequences.
@@ -34,27 +34,18 @@ public class SequenceDuplicateFinder extends SequenceMatchFinderBaseImpl {
 	}
 	
 	public void compare(OEISSequence s1, OEISSequence s2) throws SequenceMatchLinear {
-		SortedMultiset<Integer> s1IndexMultiset = s1.getUnsignedValueIndexMultiset();
-		SortedMultiset<Integer> s2IndexMultiset = s2.getUnsignedValueIndexMultiset();
-		SortedMultiset<Integer> valueIndexIntersection = s1IndexMultiset.intersect(s2IndexMultiset);
-		int maxPossibleMatchCount = valueIndexIntersection.totalCount();
-		if (!matchCondition.isSatisfied(s1.size(), s2.size(), maxPossibleMatchCount)) {
+		SortedIntMultiset s1IndexMultiset = s1.getUnsignedValueIndexMultiset();
+		SortedIntMultiset s2IndexMultiset = s2.getUnsignedValueIndexMultiset();
+		int requiredMatchCount = matchCondition.getRequiredNumberOfMatches(s1.size(), s2.size());
+		if (!s1IndexMultiset.intersectionTotalCountReaches(s2IndexMultiset, requiredMatchCount)) {
 			return;
 		}
 		//LOG.debug(s1.nameAndValuesString());
 		//LOG.debug(s2.nameAndValuesString());
-		//LOG.debug("valueIndexIntersection = " + valueIndexIntersection);
 		
-		// Note: valueIndexIntersection is an intersection. Therefore, joint
-		// multiplicity 1 doesn't mean that the value is unique in each of both
-		// sequences. It might occur more often in one of the two...
-		Integer uniqueValueIndex = null;
-		for (Integer valueIndex : valueIndexIntersection.keySet()) {
-			if (s1IndexMultiset.get(valueIndex).intValue()==1 && s2IndexMultiset.get(valueIndex).intValue()==1) {
-				uniqueValueIndex = valueIndex;
-				break;
-			}
-		}
+		// Note: Joint multiplicity 1 in the intersection doesn't mean that the value
+		// is unique in each of both sequences. It might occur more often in one of the two...
+		Integer uniqueValueIndex = s1IndexMultiset.getFirstCommonUniqueValue(s2IndexMultiset);
 		//LOG.debug("uniqueValueIndex = " + uniqueValueIndex);
 		if (uniqueValueIndex==null) {
 			// computing hypotheses is still too stupid to do the job if there are no unique matches...
@@ -18,7 +18,7 @@ import org.apache.log4j.Logger;
 import de.tilman_neumann.iss.sequence.OEISSequence;
 import de.tilman_neumann.iss.sequenceComparison.SequenceMatchCondition;
 import de.tilman_neumann.iss.sequenceMatch.SequenceMatchLinear;
-import de.tilman_neumann.util.SortedMultiset;
+import de.tilman_neumann.util.SortedIntMultiset;
 
 /**
  * A comparator for sequences.
@@ -43,11 +43,10 @@ public class SequenceDuplicateFinder2 extends SequenceMatchFinderBaseImpl {
 		this.s2 = s2;
 		int xSize = s1.size();
 		int ySize = s2.size();
-		SortedMultiset<Integer> s1IndexMultiset = s1.getUnsignedValueIndexMultiset();
-		SortedMultiset<Integer> s2IndexMultiset = s2.getUnsignedValueIndexMultiset();
-		SortedMultiset<Integer> valueIndexIntersection = s1IndexMultiset.intersect(s2IndexMultiset);
-		int maxPossibleMatchCount = valueIndexIntersection.totalCount();
-		if (!matchCondition.isSatisfied(xSize, ySize, maxPossibleMatchCount)) {
+		SortedIntMultiset s1IndexMultiset = s1.getUnsignedValueIndexMultiset();
+		SortedIntMultiset s2IndexMultiset = s2.getUnsignedValueIndexMultiset();
+		int requiredMatchCount = matchCondition.getRequiredNumberOfMatches(xSize, ySize);
+		if (!s1IndexMultiset.intersectionTotalCountReaches(s2IndexMultiset, requiredMatchCount)) {
 			return;
 		}
 
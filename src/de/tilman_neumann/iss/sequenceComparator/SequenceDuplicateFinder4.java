@@ -21,9 +21,9 @@ import de.tilman_neumann.iss.sequenceComparison.SequenceMatchHypothesisLinear;
 import de.tilman_neumann.iss.sequenceMatch.MatchPoint;
 import de.tilman_neumann.iss.sequenceMatch.SequenceMatchLinear;
 import de.tilman_neumann.iss.sequenceMatch.SequenceMatchMatrix;
-import de.tilman_neumann.iss.sequenceMatch.SequenceMatchMatrix2;
+import de.tilman_neumann.iss.sequenceMatch.SequenceMatchMatrix3;
 import de.tilman_neumann.iss.sequenceMatch.UniqueMatchPointIterator;
-import de.tilman_neumann.util.SortedMultiset;
+import de.tilman_neumann.util.SortedIntMultiset;
 
 /**
  * A comparator for sequences.
@@ -42,12 +42,10 @@ public class SequenceDuplicateFinder4 extends SequenceMatchFinderBaseImpl {
 		// 0. Compare index sets, abort if the possible number of matches is less than the wanted percentage.
 		// Implementation notes: Creating multisets in a double loop is quite expensive, thus we better
 		// prepare them when sequences are created (factor 4 performance improvement!)
-		SortedMultiset<Integer> s1IndexMultiset = s1.getUnsignedValueIndexMultiset();
-		SortedMultiset<Integer> s2IndexMultiset = s2.getUnsignedValueIndexMultiset();
-		SortedMultiset<Integer> valueIndexIntersection = s1IndexMultiset.intersect(s2IndexMultiset);
-		// TODO: use valueIndexIntersection in later steps
-		int maxPossibleMatchCount = valueIndexIntersection.totalCount();
-		if (!matchCondition.isSatisfied(s1.size(), s2.size(), maxPossibleMatchCount)) {
+		SortedIntMultiset s1IndexMultiset = s1.getUnsignedValueIndexMultiset();
+		SortedIntMultiset s2IndexMultiset = s2.getUnsignedValueIndexMultiset();
+		int requiredMatchCount = matchCondition.getRequiredNumberOfMatches(s1.size(), s2.size());
+		if (!s1IndexMultiset.intersectionTotalCountReaches(s2IndexMultiset, requiredMatchCount)) {
 			return;
 		}
 		
@@ -58,7 +56,8 @@ public class SequenceDuplicateFinder4 extends SequenceMatchFinderBaseImpl {
 		// x and y correspondingly. We compare the unsigned values to get sign-insensitive matches.
 		// Implementation notes: Comparing (integer) indices is faster than comparing the proper big integer values.
 //		SequenceMatchMatrix mm = new SequenceMatchMatrix1(s1, s2);
-		SequenceMatchMatrix mm = new SequenceMatchMatrix2(s1, s2);
+//		SequenceMatchMatrix mm = new SequenceMatchMatrix2(s1, s2);
+		SequenceMatchMatrix mm = new SequenceMatchMatrix3(s1, s2);
 		//LOG.debug("match matrix:\n" + mm);
 		
 		// 2. Get unique match point, abort if there is no such point, because 
@@ -15,6 +15,7 @@ package de.tilman_neumann.iss.sequenceComparator;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -27,9 +28,9 @@ import de.tilman_neumann.iss.sequenceComparison.SequenceMatchHypothesisLinear;
 import de.tilman_neumann.iss.sequenceMatch.MatchPoint;
 import de.tilman_neumann.iss.sequenceMatch.SequenceMatchLinear;
 import de.tilman_neumann.iss.sequenceMatch.SequenceMatchMatrix;
-import de.tilman_neumann.iss.sequenceMatch.SequenceMatchMatrix2;
+import de.tilman_neumann.iss.sequenceMatch.SequenceMatchMatrix3;
 import de.tilman_neumann.iss.sequenceMatch.UniqueMatchPointIterator;
-import de.tilman_neumann.util.SortedMultiset;
+import de.tilman_neumann.util.SortedIntMultiset;
 
 /**
  * A comparator for sequences, finding linear match patterns like a[i]=b[2i].
@@ -48,12 +49,10 @@ public class SequenceMatchFinderLinear extends SequenceMatchFinderBaseImpl {
 		// 0. Compare index sets, abort if the possible number of matches is less than the wanted percentage.
 		// Implementation notes: Creating multisets in a double loop is quite expensive, thus we better
 		// prepare them when sequences are created (factor 4 performance improvement!)
-		SortedMultiset<Integer> s1IndexMultiset = s1.getUnsignedValueIndexMultiset();
-		SortedMultiset<Integer> s2IndexMultiset = s2.getUnsignedValueIndexMultiset();
-		SortedMultiset<Integer> jointValueIndices = s1IndexMultiset.intersect(s2IndexMultiset);
-		// TODO: use jointValueIndices in later steps
-		int maxPossibleMatchCount = jointValueIndices.totalCount();
-		if (!matchCondition.isSatisfied(s1.size(), s2.size(), maxPossibleMatchCount)) {
+		SortedIntMultiset s1IndexMultiset = s1.getUnsignedValueIndexMultiset();
+		SortedIntMultiset s2IndexMultiset = s2.getUnsignedValueIndexMultiset();
+		int requiredMatchCount = matchCondition.getRequiredNumberOfMatches(s1.size(), s2.size());
+		if (!s1IndexMultiset.intersectionTotalCountReaches(s2IndexMultiset, requiredMatchCount)) {
 			return;
 		}
 		
@@ -64,7 +63,8 @@ public class SequenceMatchFinderLinear extends SequenceMatchFinderBaseImpl {
 		// x and y correspondingly. We compare the unsigned values to get sign-insensitive matches.
 		// Implementation notes: Comparing (integer) indices is faster than comparing the proper big integer values.
 //		SequenceMatchMatrix mm = new SequenceMatchMatrix1(s1, s2);
-		SequenceMatchMatrix mm = new SequenceMatchMatrix2(s1, s2); // 2s faster
+//		SequenceMatchMatrix mm = new SequenceMatchMatrix2(s1, s2); // 2s faster
+		SequenceMatchMatrix mm = new SequenceMatchMatrix3(s1, s2);
 		//LOG.debug("match matrix:\n" + mm);
 		
 		// 2. Get first two unique match points (those that are alone in both their row and column).
@@ -101,6 +101,38 @@ public class SequenceMatchFinderLinear extends SequenceMatchFinderBaseImpl {
 		// 8. exit with error
 	}
 	
+	/**
+	 * Compares an expanded lookup sequence with a reference sequence it matched before it was expanded.
+	 * The hypothesis of the previous match is carried forward and only checked for the new lookup sequence values;
+	 * if the first lookup sequence values have changed by the expansion, a full comparison is done.
+	 * 
+	 * @param s1 expanded lookup sequence
+	 * @param s2 reference sequence
+	 * @param previousMatch the match of the lookup sequence before expansion with s2
+	 * @throws SequenceMatchLinear if the hypothesis is still satisfied
+	 */
+	public void compareExpansion(OEISSequence s1, OEISSequence s2, SequenceMatchLinear previousMatch) throws SequenceMatchLinear {
+		SequenceMatchHypothesisLinear previousHypothesis = (SequenceMatchHypothesisLinear) previousMatch.getHypothesis();
+		int[] s1UnsignedIndices = s1.getUnsignedValueIndices();
+		int[] previousS1UnsignedIndices = previousMatch.getLookupSequence().getUnsignedValueIndices();
+		int checkedXDim = previousS1UnsignedIndices.length;
+		if (previousHypothesis == null || checkedXDim > s1UnsignedIndices.length || !Arrays.equals(previousS1UnsignedIndices, 0, checkedXDim, s1UnsignedIndices, 0, checkedXDim)) {
+			compare(s1, s2);
+			return;
+		}
+		
+		int newMatchCount = previousHypothesis.checkExpansion(s1UnsignedIndices, s2.getUnsignedValueIndices(), checkedXDim);
+		if (newMatchCount < 0) {
+			// hypothesis discarded
+			return;
+		}
+		if (matchCondition.isSatisfied(s1.size(), s2.size(), previousHypothesis.getMatchScore() + newMatchCount)) {
+			// the match matrix is only needed for printing the match, so it is created on demand
+			SequenceMatchHypothesisLinear smh = new SequenceMatchHypothesisLinear(previousHypothesis.getSlope(), previousHypothesis.getAbscissa(), previousHypothesis.getMatchScore() + newMatchCount);
+			throw new SequenceMatchLinear(s1, s2, smh);
+		}
+	}
+	
 	OEISSequence getMatchSequence(OEISSequence s1, SequenceMatchHypothesis smh) {
 		List<BigInteger> unsignedValues = s1.getUnsignedValues();
 		List<BigInteger> unsignedMatchValues = new ArrayList<BigInteger>();
@@ -29,4 +29,13 @@ public interface SequenceMatchCondition {
 	 */
 	public abstract boolean isSatisfied(int s1Size, int s2Size, int matchCount);
 
+	/**
+	 * Returns the smallest number of matches satisfying this condition.
+	 * Allows prefilters to give up as soon as this number can not be reached anymore.
+	 * @param s1Size length of first sequence
+	 * @param s2Size length of second sequence
+	 * @return required number of matches
+	 */
+	public abstract int getRequiredNumberOfMatches(int s1Size, int s2Size);
+
 }
\ No newline at end of file
@@ -29,8 +29,11 @@ public class SequenceMatchCondition1To1 implements SequenceMatchCondition {
 	 * @see de.tilman_neumann.math.app.oeis.sequenceComparison.XXX#isSatisfied(int, int, int)
 	 */
 	public boolean isSatisfied(int s1Size, int s2Size, int matchCount) {
+		return (matchCount >= getRequiredNumberOfMatches(s1Size, s2Size));
+	}
+
+	public int getRequiredNumberOfMatches(int s1Size, int s2Size) {
 		int minSeqLen = Math.min(s1Size, s2Size);
-		int requiredNumberOfMatches = Math.max(minSeqLen-4, minNumberOfMatches); // tolerate offset up to 4
-		return (matchCount >= requiredNumberOfMatches);
+		return Math.max(minSeqLen-4, minNumberOfMatches); // tolerate offset up to 4
 	}
 }
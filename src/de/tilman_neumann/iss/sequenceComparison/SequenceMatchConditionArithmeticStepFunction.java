@@ -29,8 +29,12 @@ public class SequenceMatchConditionArithmeticStepFunction implements SequenceMat
 	 * @see de.tilman_neumann.math.app.oeis.sequenceComparison.XXX#isSatisfied(int, int, int)
 	 */
 	public boolean isSatisfied(int s1Size, int s2Size, int numberOfMatches) {
+		return (numberOfMatches >= getRequiredNumberOfMatches(s1Size, s2Size));
+	}
+	
+	public int getRequiredNumberOfMatches(int s1Size, int s2Size) {
 		int minSeqLen = Math.min(s1Size, s2Size);
-		return ((numberOfMatches-minNumberOfMatches) >= requiredNumberOfMatches(minSeqLen-minNumberOfMatches));
+		return minNumberOfMatches + requiredNumberOfMatches(minSeqLen-minNumberOfMatches);
 	}
 	
 	private int requiredNumberOfMatches(int n) {
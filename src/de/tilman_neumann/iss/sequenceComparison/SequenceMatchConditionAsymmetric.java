@@ -30,12 +30,13 @@ public class SequenceMatchConditionAsymmetric implements SequenceMatchCondition
 	 * @see de.tilman_neumann.math.app.oeis.sequenceComparison.XXX#isSatisfied(int, int, int)
 	 */
 	public boolean isSatisfied(int s1Size, int s2Size, int matchCount) {
-		if (matchCount > desiredMatchCount) {
-			// this is always enough
-			return true;
-		}
+		return (matchCount >= getRequiredNumberOfMatches(s1Size, s2Size));
+	}
+
+	public int getRequiredNumberOfMatches(int s1Size, int s2Size) {
 		final int allowedDeviationFromDesiredMatchCount = (s1Size>3) ? (int) (Math.log(s1Size-3)/log2) : 0;
 		final int requiredMatchCount = s1Size - allowedDeviationFromDesiredMatchCount;
-		return (matchCount >= requiredMatchCount);
+		// more than desiredMatchCount is always enough
+		return Math.min(desiredMatchCount+1, requiredMatchCount);
 	}
 }
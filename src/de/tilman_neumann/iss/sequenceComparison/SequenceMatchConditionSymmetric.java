@@ -30,13 +30,14 @@ public class SequenceMatchConditionSymmetric implements SequenceMatchCondition {
 	 * @see de.tilman_neumann.math.app.oeis.sequenceComparison.XXX#isSatisfied(int, int, int)
 	 */
 	public boolean isSatisfied(int s1Size, int s2Size, int matchCount) {
-		if (matchCount > desiredMatchCount) {
-			// this is always enough
-			return true;
-		}
+		return (matchCount >= getRequiredNumberOfMatches(s1Size, s2Size));
+	}
+
+	public int getRequiredNumberOfMatches(int s1Size, int s2Size) {
 		final int maxPossibleMatchCount = Math.min(s1Size, s2Size);
 		final int allowedDeviationFromDesiredMatchCount = (maxPossibleMatchCount>3) ? (int) (Math.log(maxPossibleMatchCount-3)/log2) : 0;
 		final int requiredMatchCount = maxPossibleMatchCount - allowedDeviationFromDesiredMatchCount;
-		return (matchCount >= requiredMatchCount);
+		// more than desiredMatchCount is always enough
+		return Math.min(desiredMatchCount+1, requiredMatchCount);
 	}
 }
@@ -13,7 +13,7 @@
  */
 package de.tilman_neumann.iss.sequenceComparison;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -34,7 +34,9 @@ public class SequenceMatchHypothesisLinear implements SequenceMatchHypothesis {
 	private double a;
 	private double b;
 	private int matchScore = 0;
-	List<MatchPoint> hypothesisMatches;
+	/** the match matrix of the last check, needed to compute the hypothesis matches on demand */
+	private SequenceMatchMatrix checkedMatrix = null;
+	private List<MatchPoint> hypothesisMatches = null;
 	
 	/**
 	 * Constructor for linear match hypothesis: s2_index = a * s1_index + b.
@@ -77,15 +79,28 @@ public class SequenceMatchHypothesisLinear implements SequenceMatchHypothesis {
 
 	/**
 	 * Checks if the hypothesis is satisfied by the given match matrix.
+	 * The match points are only counted here; getHypothesisMatches() creates them on demand.
 	 * @return match score, or 0 if the hypothesis is not satisfied.
 	 */
 	public int check(SequenceMatchMatrix mm) {
-		hypothesisMatches = new LinkedList<MatchPoint>();
-		
+		checkedMatrix = mm;
+		hypothesisMatches = null;
+		matchScore = collectMatches(mm, null);
+		return matchScore;
+	}
+	
+	/**
+	 * Walks along the hypothesis line through the match matrix.
+	 * @param mm match matrix
+	 * @param matches list to add the match points to, may be null if only the count is wanted
+	 * @return number of matches, or 0 if the hypothesis is not satisfied.
+	 */
+	private int collectMatches(SequenceMatchMatrix mm, List<MatchPoint> matches) {
 		short xDim = mm.getXDim();
 		short yDim = mm.getYDim();
 		short xMaxFromY = (short) ((a>=0) ? (yDim-1-b)/a : -(0-b)/a);
 		short xMax = (short) Math.min(xDim-1, xMaxFromY);
+		int matchCount = 0;
 		for (short x=0; x<=xMax; x++) {
 			double y = a*x + b;
 			if (y > yDim-1) {
@@ -100,12 +115,12 @@ public class SequenceMatchHypothesisLinear implements SequenceMatchHypothesis {
 					boolean isMatch = mm.isMatch(x, i_y);
 					//LOG.debug("isMatch(" + x + "," + i_y + ") = " + isMatch);
 					if (isMatch) {
-						hypothesisMatches.add(new MatchPoint(Short.valueOf(x), Short.valueOf(i_y)));
+						matchCount++;
+						if (matches != null) matches.add(new MatchPoint(x, i_y));
 					} else {
 						// (x,y) is not a match!
 						if (x>2 && i_y>2) {
 							// we can't ignore mismatches in higher regions
-							matchScore = 0;
 							return 0;
 						}
 						// ignore mismatch in first few values
@@ -113,22 +128,83 @@ public class SequenceMatchHypothesisLinear implements SequenceMatchHypothesis {
 				}
 			}
 		}
-		
-		matchScore = hypothesisMatches.size();
-		return matchScore;
+		return matchCount;
+	}
+
+	/**
+	 * Checks the hypothesis for the lookup sequence values that have been added since it was checked successfully.
+	 * If the first lookup sequence values did not change, then their matches are still valid, so only the new
+	 * x-range needs to be checked. Value indices are compared directly, no match matrix is required.
+	 * 
+	 * @param s1UnsignedIndices unsigned value indices of the expanded lookup sequence
+	 * @param s2UnsignedIndices unsigned value indices of the reference sequence
+	 * @param checkedXDim the number of lookup sequence values the hypothesis has been checked with before
+	 * @return number of matches in the new x-range, or -1 if the hypothesis is not satisfied.
+	 */
+	public int checkExpansion(int[] s1UnsignedIndices, int[] s2UnsignedIndices, int checkedXDim) {
+		short xDim = (short) s1UnsignedIndices.length;
+		short yDim = (short) s2UnsignedIndices.length;
+		short xMaxFromY = (short) ((a>=0) ? (yDim-1-b)/a : -(0-b)/a);
+		short xMax = (short) Math.min(xDim-1, xMaxFromY);
+		int matchCount = 0;
+		for (int x=checkedXDim; x<=xMax; x++) {
+			double y = a*x + b;
+			if (y > yDim-1) {
+				// index exceeds number of values in sequence 2 -> finish
+				break;
+			}
+			if (y>=0) {
+				short i_y = (short) y;
+				if (i_y == y) {
+					if (s1UnsignedIndices[x] == s2UnsignedIndices[i_y]) {
+						matchCount++;
+					} else if (x>2 && i_y>2) {
+						// we can't ignore mismatches in higher regions
+						return -1;
+					}
+				}
+			}
+		}
+		return matchCount;
 	}
 
 	public List<MatchPoint> getHypothesisMatches() {
+		if (hypothesisMatches == null && checkedMatrix != null) {
+			List<MatchPoint> matches = new ArrayList<MatchPoint>();
+			collectMatches(checkedMatrix, matches);
+			hypothesisMatches = matches;
+		}
 		return this.hypothesisMatches;
 	}
 
+	/**
+	 * Releases the match matrix of the last check, so that it can be garbage collected.
+	 * @param keepHypothesisMatches if true, then the hypothesis matches are computed before, if that has not been done yet;
+	 * otherwise they are released, too, and getHypothesisMatches() returns null afterwards
+	 */
+	public void releaseMatrix(boolean keepHypothesisMatches) {
+		if (keepHypothesisMatches) {
+			getHypothesisMatches();
+		} else {
+			hypothesisMatches = null;
+		}
+		checkedMatrix = null;
+	}
+
 	public int getMatchScore() {
 		return matchScore;
 	}
 	
 	public boolean needsXExpansion(SequenceMatchMatrix mm) {
-		short xDim = mm.getXDim();
-		short yDim = mm.getYDim();
+		return needsXExpansion(mm.getXDim(), mm.getYDim());
+	}
+	
+	/**
+	 * @param xDim number of lookup sequence values
+	 * @param yDim number of reference sequence values
+	 * @return true if the hypothesis line leaves the match matrix of the given dimensions at its right border
+	 */
+	public boolean needsXExpansion(int xDim, int yDim) {
 		short xMaxFromY = (short) ((a>=0) ? (yDim-1-b)/a : -(0-b)/a);
 		return (xDim-1 < xMaxFromY);
 	}
@@ -0,0 +1,144 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.sequenceMatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Collector of the best matches of a lookup, in the order of SequenceMatchComparator.
+ *
+ * Each lookup task fills its own collector without synchronization, and the control thread merges the collectors
+ * of the tasks at the end. If the number of matches is bounded, a collector keeps only the best matches in a heap
+ * with the worst retained match on top, so that noisy inputs with many trivial matches need bounded memory.
+ * Optionally the match matrices of the retained matches are dropped, because they are only needed to print
+ * a match when it is found.
+ *
+ * @author Tilman Neumann
+ */
+public class SequenceMatchCollector {
+
+	private static final SequenceMatchComparator comp = new SequenceMatchComparator();
+
+	/** A retained match and the number of matches added before it. */
+	private static class Entry {
+		final SequenceMatch match;
+		final long arrival;
+
+		Entry(SequenceMatch match, long arrival) {
+			this.match = match;
+			this.arrival = arrival;
+		}
+	}
+
+	/**
+	 * Total order of entries, worst first: SequenceMatchComparator ties are broken by the lookup sequence name
+	 * and then by arrival, so that the retained matches do not depend on the order in which equal matches arrive.
+	 */
+	private static final Comparator<Entry> WORST_FIRST = new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			int cmp = comp.compare(e1.match, e2.match);
+			if (cmp != 0) return cmp;
+			cmp = e2.match.getLookupSequence().getName().compareTo(e1.match.getLookupSequence().getName());
+			if (cmp != 0) return cmp;
+			return Long.compare(e2.arrival, e1.arrival);
+		}
+	};
+
+	private final int maxSize;
+	private final boolean dropMatchMatrices;
+	private final PriorityQueue<Entry> heap;
+	private long arrivalCount = 0;
+
+	/**
+	 * Constructor for an unbounded collector.
+	 */
+	public SequenceMatchCollector() {
+		this(Integer.MAX_VALUE, false);
+	}
+
+	/**
+	 * Full constructor.
+	 * @param maxSize maximum number of matches to retain
+	 * @param dropMatchMatrices if true, then the match matrices of linear matches are released when they are added
+	 */
+	public SequenceMatchCollector(int maxSize, boolean dropMatchMatrices) {
+		if (maxSize < 1) throw new IllegalArgumentException("maxSize = " + maxSize + " < 1");
+		this.maxSize = maxSize;
+		this.dropMatchMatrices = dropMatchMatrices;
+		this.heap = new PriorityQueue<Entry>(Math.min(maxSize, 16), WORST_FIRST);
+	}
+
+	/**
+	 * @return a new empty collector with the same bound, e.g. the local collector of a lookup task
+	 */
+	public SequenceMatchCollector newCollector() {
+		return new SequenceMatchCollector(maxSize, dropMatchMatrices);
+	}
+
+	/**
+	 * Adds a match if it is better than the worst retained match, or if the collector is not full yet.
+	 * @param match
+	 * @return true if the match has been retained
+	 */
+	public boolean add(SequenceMatch match) {
+		Entry entry = new Entry(match, arrivalCount++);
+		if (heap.size() == maxSize) {
+			if (WORST_FIRST.compare(entry, heap.peek()) <= 0) return false;
+			heap.poll();
+		}
+		if (dropMatchMatrices && match instanceof SequenceMatchLinear) {
+			((SequenceMatchLinear) match).dropMatchMatrix();
+		}
+		heap.add(entry);
+		return true;
+	}
+
+	/**
+	 * Adds the retained matches of another collector, in the order of its match list.
+	 * @param other
+	 */
+	public void addAll(SequenceMatchCollector other) {
+		for (SequenceMatch match : other.toSequenceMatchList()) {
+			add(match);
+		}
+	}
+
+	/**
+	 * @return the number of retained matches
+	 */
+	public int size() {
+		return heap.size();
+	}
+
+	/**
+	 * @return the retained matches as a sorted list; the matches are inserted in the order they have been added
+	 */
+	public SequenceMatchList toSequenceMatchList() {
+		List<Entry> entries = new ArrayList<Entry>(heap);
+		Collections.sort(entries, new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				return Long.compare(e1.arrival, e2.arrival);
+			}
+		});
+		SequenceMatchList list = new SequenceMatchList();
+		for (Entry entry : entries) {
+			list.add(entry.match);
+		}
+		return list;
+	}
+}
@@ -15,6 +15,8 @@ package de.tilman_neumann.iss.sequenceMatch;
 
 import java.util.List;
 
+import org.apache.log4j.Logger;
+
 import de.tilman_neumann.iss.sequence.OEISSequence;
 import de.tilman_neumann.iss.sequenceComparison.SequenceMatchHypothesis;
 import de.tilman_neumann.iss.sequenceComparison.SequenceMatchHypothesisLinear;
@@ -26,12 +28,15 @@ import de.tilman_neumann.iss.sequenceComparison.SequenceMatchHypothesisLinear;
 public class SequenceMatchLinear extends SequenceMatch {
 
 	private static final long serialVersionUID = -1256662855916287080L;
+	private static final Logger LOG = Logger.getLogger(SequenceMatchLinear.class);
 
 	private OEISSequence lookupSeq;
 	private OEISSequence refSeq;
 	private int matchCount = 0;
 	private SequenceMatchHypothesisLinear matchHypothesis = null;
 	private SequenceMatchMatrix matchMatrix = null;
+	/** true if the match matrix has been released and shall not be created again */
+	private boolean matrixDropped = false;
 	
 	/**
 	 * Simplified constructor without hypothesis or match matrix.
@@ -59,6 +64,17 @@ public class SequenceMatchLinear extends SequenceMatch {
 		this.matchHypothesis = hyp;
 		this.matchMatrix = matchMatrix;
 	}
+
+	/**
+	 * Constructor for a match whose hypothesis score is already known, e.g. from an incremental check.
+	 * The match matrix is created when the match is printed.
+	 * @param lookupSeq
+	 * @param refSeq
+	 * @param hyp match hypothesis with match score
+	 */
+	public SequenceMatchLinear(OEISSequence lookupSeq, OEISSequence refSeq, SequenceMatchHypothesisLinear hyp) {
+		this(lookupSeq, refSeq, hyp, null);
+	}
 	
 	public int getMatchCount() {
 		return this.matchCount;
@@ -89,7 +105,33 @@ public class SequenceMatchLinear extends SequenceMatch {
 	}
 
 	public boolean needsXExpansion() {
-		return matchHypothesis.needsXExpansion(matchMatrix);
+		return matchHypothesis.needsXExpansion(lookupSeq.size(), refSeq.size());
+	}
+	
+	/**
+	 * Releases the match matrix, here and in the hypothesis that has been checked with it. It is only needed to print the match.
+	 */
+	public void dropMatchMatrix() {
+		matchMatrix = null;
+		matrixDropped = true;
+		// the hypothesis matches are only needed to print the match matrix
+		if (matchHypothesis != null) matchHypothesis.releaseMatrix(false);
+	}
+	
+	/**
+	 * @return the match matrix, created and checked against the match score if it does not exist yet,
+	 * or null if it has been dropped. A score mismatch is only logged, because this is used to print the match.
+	 */
+	private SequenceMatchMatrix getMatchMatrix() {
+		if (matchMatrix == null && matchHypothesis != null && !matrixDropped) {
+			SequenceMatchMatrix mm = new SequenceMatchMatrix3(lookupSeq, refSeq);
+			int checkedScore = matchHypothesis.check(mm);
+			if (checkedScore != matchCount) {
+				LOG.warn("match score " + matchCount + " of " + lookupSeq.getName() + " & " + refSeq.getName() + " differs from the score " + checkedScore + " recomputed from the match matrix");
+			}
+			matchMatrix = mm;
+		}
+		return matchMatrix;
 	}
 	
 	@Override
@@ -100,7 +142,7 @@ public class SequenceMatchLinear extends SequenceMatch {
 		bu.append("Potential match!\n");
 		bu.append(lookupSeq.nameAndValuesString() + "\n");
 		bu.append("& " + refSeq.nameAndValuesString() + "\n");
-		bu.append(getMatrixWithHypothesisString());
+		if (getMatchMatrix() != null) bu.append(getMatrixWithHypothesisString());
 		bu.append(matchHypothesis + "\n");
 		return bu.toString();
 	}
@@ -14,12 +14,6 @@
 package de.tilman_neumann.iss.sequenceMatch;
 
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import de.tilman_neumann.iss.sequence.OEISSequence;
 
@@ -67,43 +61,13 @@ abstract public class SequenceMatchMatrix implements Serializable {
 		return bu.toString();
 	}
 	
-	// TODO: Should we compute this already in the sequence constructors?
-	protected Map<Integer, Set<Short>> hashSequenceValues2Positions(List<Integer> values) {
-		short numberOfValues = (short)values.size();
-		Map<Integer, Set<Short>> values2Positions = new HashMap<Integer, Set<Short>>(numberOfValues);
-		Iterator<Integer> valuesIter = values.iterator();
-		for (short i=0; i<numberOfValues; i++) {
-			Integer value = valuesIter.next();
-			//LOG.debug("value " + i + " = " + value);
-			this.addToValues2PositionsMap(values2Positions, value, i);
-		}
-		return values2Positions;
-	}
-	
-	protected Map<Integer, Set<Short>> hashSequenceValues2Positions(int[] values) {
-		short numberOfValues = (short)values.length;
-		Map<Integer, Set<Short>> values2Positions = new HashMap<Integer, Set<Short>>(numberOfValues);
-		for (short i=0; i<numberOfValues; i++) {
-			Integer value = Integer.valueOf(values[i]);
-			//LOG.debug("value " + i + " = " + value);
-			this.addToValues2PositionsMap(values2Positions, value, i);
-		}
-		return values2Positions;
-	}
-
-	protected void addToValues2PositionsMap(Map<Integer, Set<Short>> values2Positions, Integer value, short position) {
-		Set<Short> positions = values2Positions.get(value);
-		if (positions == null) {
-			positions = new HashSet<Short>();
-		}
-		positions.add(Short.valueOf(position));
-		//LOG.debug("indices = " + indices);
-		values2Positions.put(value, positions);
-	}
-
 	abstract public boolean isMatch(short x, short y);
 
-	abstract public Map<Integer, Set<Short>> getyValues2Positions();
-
-	abstract public Map<Integer, Set<Short>> getyValues2xPositions();
+	/**
+	 * Finds the unique match in row y. A match is unique if it is the only one in both its row and its column,
+	 * i.e. if the matching value occurs exactly once in both sequences.
+	 * @param y row
+	 * @return the x-position of the unique match in row y, or -1 if row y has no unique match
+	 */
+	abstract public short getUniqueMatchX(short y);
 }
\ No newline at end of file
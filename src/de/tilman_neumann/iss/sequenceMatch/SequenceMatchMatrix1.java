@@ -13,11 +13,8 @@
  */
 package de.tilman_neumann.iss.sequenceMatch;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-
 import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.util.IntPositionTable;
 
 /**
  * A match matrix for two sequences.
@@ -27,9 +24,10 @@ public class SequenceMatchMatrix1 extends SequenceMatchMatrix {
 
 	private static final long serialVersionUID = 6177298374247406064L;
 	
-	private Map<Integer, Set<Short>> yValuesToPositions;
-	private Map<Integer, Set<Short>> yValues2xPositions;
+	private IntPositionTable xPositionTable;
+	private IntPositionTable yPositionTable;
 	private boolean[][] matches;
+	private int[] s2UnsignedValueIndices;
 	
 	public SequenceMatchMatrix1(OEISSequence s1, OEISSequence s2) {
 		super(s1, s2);
@@ -37,26 +35,21 @@ public class SequenceMatchMatrix1 extends SequenceMatchMatrix {
 		// Search procedure:
 		// 1. Compute match matrix. s1 will be the x- and s2 the y-axis; 
 		// the indices are labeled correspondingly x and y.
-		// With this we get all y-indices for a certain value:
-		Map<Integer, Set<Short>> xValuesToPositions = hashSequenceValues2Positions(s1.getUnsignedValueIndices());
-		//LOG.debug("xValuesToPositions = " + xValuesToPositions);
-		int[] s2UnsignedValueIndices = s2.getUnsignedValueIndices();
-		yValuesToPositions = hashSequenceValues2Positions(s2UnsignedValueIndices);
+		// With this we get all x-indices for a certain value:
+		xPositionTable = s1.getUnsignedValuePositions();
+		yPositionTable = s2.getUnsignedValuePositions();
+		s2UnsignedValueIndices = s2.getUnsignedValueIndices();
 	
 		// initialize arrays:
 		matches = new boolean[xDim][yDim]; // false-initialized
-		this.yValues2xPositions = new HashMap<Integer, Set<Short>>();
 
 		for (int y=0; y<yDim; y++) {
-			// this is the value of seq2 for row y:
-			Integer seq2Value = s2UnsignedValueIndices[y];
-			// where does it occur in seq1? these are the matches for row y:
-			Set<Short> xPositions = xValuesToPositions.get(seq2Value);
-			if (xPositions!=null && xPositions.size()>0) {
-				this.yValues2xPositions.put(seq2Value, xPositions);
-				for (Short xPosition : xPositions) {
-					short x = xPosition.shortValue();
-					matches[x][y] = true;
+			// where does the value of row y occur in seq1? these are the matches for row y:
+			int xValueNumber = xPositionTable.indexOf(s2UnsignedValueIndices[y]);
+			if (xValueNumber>=0) {
+				int xCount = xPositionTable.getPositionCount(xValueNumber);
+				for (int j=0; j<xCount; j++) {
+					matches[xPositionTable.getPosition(xValueNumber, j)][y] = true;
 				}
 			}
 		}
@@ -68,12 +61,14 @@ public class SequenceMatchMatrix1 extends SequenceMatchMatrix {
 	}
 
 	@Override
-	public Map<Integer, Set<Short>> getyValues2Positions() {
-		return yValuesToPositions;
-	}
-
-	@Override
-	public Map<Integer, Set<Short>> getyValues2xPositions() {
-		return yValues2xPositions;
+	public short getUniqueMatchX(short y) {
+		int yValue = s2UnsignedValueIndices[y];
+		int xValueNumber = xPositionTable.indexOf(yValue);
+		if (xValueNumber>=0 && xPositionTable.getPositionCount(xValueNumber)==1) {
+			if (yPositionTable.getPositionCount(yPositionTable.indexOf(yValue))==1) {
+				return xPositionTable.getPosition(xValueNumber, 0);
+			}
+		}
+		return -1;
 	}
 }
@@ -13,13 +13,10 @@
  */
 package de.tilman_neumann.iss.sequenceMatch;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-
 import org.apache.log4j.Logger;
 
 import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.util.IntPositionTable;
 
 /**
  * A match matrix for two sequences.
@@ -32,56 +29,51 @@ public class SequenceMatchMatrix2 extends SequenceMatchMatrix {
 	
 	private static final long serialVersionUID = 6177298374247406064L;
 	
-	private Map<Integer, Set<Short>> yValues2Positions;
-	private Map<Integer, Set<Short>> yValues2xPositions;
+	private IntPositionTable xPositionTable;
+	private IntPositionTable yPositionTable;
 	private int[] s2UnsignedIndices;
+	/** the number of the value of row y in xPositionTable, or -1 if s1 does not contain it */
+	private int[] yValueNumbers;
 	
 	public SequenceMatchMatrix2(OEISSequence s1, OEISSequence s2) {
 		super(s1, s2);
 
-		// With this we get all y-indices for a certain value:
-		Map<Integer, Set<Short>> xValuesToPositions = hashSequenceValues2Positions(s1.getUnsignedValueIndices());
-		//LOG.debug("xValuesToPositions = " + xValuesToPositions);
-		
-		// initialize arrays:
-		this.yValues2xPositions = new HashMap<Integer, Set<Short>>();
-		this.yValues2Positions = new HashMap<Integer, Set<Short>>();
+		// With this we get all x-indices for a certain value:
+		this.xPositionTable = s1.getUnsignedValuePositions();
+		this.yPositionTable = s2.getUnsignedValuePositions();
 		this.s2UnsignedIndices = s2.getUnsignedValueIndices();
-
+		
+		this.yValueNumbers = new int[yDim];
 		for (short y=0; y<yDim; y++) {
-			// this is the value of seq2 for row y:
-			Integer seq2Value = s2UnsignedIndices[y];
-			this.addToValues2PositionsMap(yValues2Positions, seq2Value, y);
-			// where does it occur in seq1? these are the matches for row y:
-			Set<Short> xPositions = xValuesToPositions.get(seq2Value);
-			if (xPositions!=null && xPositions.size()>0) {
-				yValues2xPositions.put(seq2Value, xPositions);
-			}
+			// where does the value of row y occur in seq1? these are the matches for row y:
+			yValueNumbers[y] = xPositionTable.indexOf(s2UnsignedIndices[y]);
 		}
-		
-		//LOG.debug("yValues2xPositions = " + yValues2xPositions);
 	}
 	
 	/* (non-Javadoc)
 	 * @see de.tilman_neumann.math.app.oeis.sequenceComparison.SequenceMatchMatrix#isMatch(int, int)
 	 */
 	public boolean isMatch(short xPos, short yPos) {
-		Integer yValue = s2UnsignedIndices[yPos];
-		Set<Short> xPositionsForYValue = yValues2xPositions.get(yValue);
-		//LOG.debug("xPositionsForYValue(" + yValue + ") = " + xPositionsForYValue);
-		if (xPositionsForYValue==null) {
+		int xValueNumber = yValueNumbers[yPos];
+		if (xValueNumber<0) {
 			return false;
 		}
-		return xPositionsForYValue.contains(Short.valueOf(xPos));
-	}
-
-	@Override
-	public Map<Integer, Set<Short>> getyValues2Positions() {
-		return yValues2Positions;
+		int xCount = xPositionTable.getPositionCount(xValueNumber);
+		for (int j=0; j<xCount; j++) {
+			if (xPositionTable.getPosition(xValueNumber, j) == xPos) return true;
+		}
+		return false;
 	}
 
 	@Override
-	public Map<Integer, Set<Short>> getyValues2xPositions() {
-		return yValues2xPositions;
+	public short getUniqueMatchX(short y) {
+		int xValueNumber = yValueNumbers[y];
+		if (xValueNumber>=0 && xPositionTable.getPositionCount(xValueNumber)==1) {
+			int yValueNumber = yPositionTable.indexOf(s2UnsignedIndices[y]);
+			if (yPositionTable.getPositionCount(yValueNumber)==1) {
+				return xPositionTable.getPosition(xValueNumber, 0);
+			}
+		}
+		return -1;
 	}
 }
@@ -0,0 +1,105 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.sequenceMatch;
+
+import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.util.IntPositionTable;
+
+/**
+ * A match matrix for two sequences, stored as bit rows.
+ * 
+ * The matrix is built by merging the value-to-positions tables of both sequences,
+ * which needs no hashing and only two allocations.
+ * 
+ * @author Tilman Neumann
+ */
+public class SequenceMatchMatrix3 extends SequenceMatchMatrix {
+
+	private static final long serialVersionUID = -3340372592810262337L;
+
+	/** number of longs per row */
+	private int rowLength;
+	/** bit x of row y is bit (x&63) of rows[y*rowLength + (x>>6)] */
+	private long[] rows;
+	/** the columns that have more than one match, same bit layout as a row */
+	private long[] multipleMatchColumns;
+	
+	public SequenceMatchMatrix3(OEISSequence s1, OEISSequence s2) {
+		super(s1, s2);
+		
+		rowLength = (xDim+63)>>6;
+		rows = new long[yDim*rowLength];
+		multipleMatchColumns = new long[rowLength];
+		
+		// All matches belong to values that occur in both sequences. The rows of a value are the y-positions
+		// where it occurs in s2, and its columns are the x-positions where it occurs in s1.
+		IntPositionTable xPositionTable = s1.getUnsignedValuePositions();
+		IntPositionTable yPositionTable = s2.getUnsignedValuePositions();
+		int xValueCount = xPositionTable.size();
+		int yValueCount = yPositionTable.size();
+		for (int i=0, j=0; i<xValueCount && j<yValueCount; ) {
+			int xValue = xPositionTable.getValue(i);
+			int yValue = yPositionTable.getValue(j);
+			if (xValue < yValue) {
+				i++;
+			} else if (xValue > yValue) {
+				j++;
+			} else {
+				int xCount = xPositionTable.getPositionCount(i);
+				int yCount = yPositionTable.getPositionCount(j);
+				for (int k=0; k<yCount; k++) {
+					int rowStart = yPositionTable.getPosition(j, k) * rowLength;
+					for (int l=0; l<xCount; l++) {
+						int x = xPositionTable.getPosition(i, l);
+						rows[rowStart + (x>>6)] |= 1L << x;
+					}
+				}
+				if (yCount > 1) {
+					for (int l=0; l<xCount; l++) {
+						int x = xPositionTable.getPosition(i, l);
+						multipleMatchColumns[x>>6] |= 1L << x;
+					}
+				}
+				i++;
+				j++;
+			}
+		}
+		//LOG.debug("match matrix:\n" + this);
+	}
+	
+	public boolean isMatch(short x, short y) {
+		return (rows[y*rowLength + (x>>6)] & (1L << x)) != 0;
+	}
+
+	@Override
+	public short getUniqueMatchX(short y) {
+		int rowStart = y*rowLength;
+		int x = -1;
+		for (int w=0; w<rowLength; w++) {
+			long word = rows[rowStart + w];
+			if (word != 0) {
+				if (x>=0 || (word & (word-1)) != 0) {
+					// more than one match in row y
+					return -1;
+				}
+				x = (w<<6) + Long.numberOfTrailingZeros(word);
+			}
+		}
+		if (x<0 || (multipleMatchColumns[x>>6] & (1L << x)) != 0) {
+			// no match in row y, or not the only match in its column
+			return -1;
+		}
+		return (short) x;
+	}
+}
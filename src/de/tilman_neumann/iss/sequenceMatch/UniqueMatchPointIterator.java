@@ -14,36 +14,37 @@
 package de.tilman_neumann.iss.sequenceMatch;
 
 import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
 
 /**
- * An iterator that delivers unique matches of two sequences represented by the given match matrix.
+ * An iterator that delivers unique matches of two sequences represented by the given match matrix,
+ * in ascending y-order, i.e. by their index in the second sequence.
+ * 
+ * The linear match finder builds its hypothesis from the first two unique matches, so this order is part of
+ * the lookup results: It does not depend on hashing, and the hypothesis uses the first unique matches
+ * of the reference sequence.
  * @author Tilman Neumann
  */
 public class UniqueMatchPointIterator implements Iterator<MatchPoint> {
 
-	private Map<Integer, Set<Short>> yValues2Positions;
-	private Iterator<Map.Entry<Integer, Set<Short>>> yValues2xPositionsIter;
+	private SequenceMatchMatrix mm;
+	private short yDim;
+	/** the next row to search */
+	private short y = 0;
 	private MatchPoint nextMp = null;
 
 	public UniqueMatchPointIterator(SequenceMatchMatrix mm) {
-		this.yValues2xPositionsIter = mm.getyValues2xPositions().entrySet().iterator();
-		this.yValues2Positions = mm.getyValues2Positions();
+		this.mm = mm;
+		this.yDim = mm.getYDim();
 		this.nextMp = findNextMp();
 	}
 
 	private MatchPoint findNextMp() {
-		while(yValues2xPositionsIter.hasNext()) {
-			Map.Entry<Integer, Set<Short>> yValue2xPositions = yValues2xPositionsIter.next();
-			Set<Short> xPositions = yValue2xPositions.getValue();
-			if (xPositions!=null && xPositions.size()==1) {
-				Integer value = yValue2xPositions.getKey();
-				Set<Short> yPositions = yValues2Positions.get(value);
-				if (yPositions!=null && yPositions.size()==1) {
-					return new MatchPoint(xPositions.iterator().next(), yPositions.iterator().next());
-				}
+		while (y < yDim) {
+			short x = mm.getUniqueMatchX(y);
+			if (x >= 0) {
+				return new MatchPoint(x, y++);
 			}
+			y++;
 		}
 		return null;
 	}
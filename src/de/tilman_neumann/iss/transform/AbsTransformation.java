@@ -32,4 +32,14 @@ public class AbsTransformation extends Transformation_SimpleImpl {
 	BigInteger computeNthValue(int n, List<BigInteger> a, List<BigInteger> b) {
 		return a.get(n).abs();
 	}
+
+	@Override
+	boolean hasLongArithmetic() {
+		return true;
+	}
+
+	@Override
+	long computeNthLongValue(int n, long[] a) {
+		return absExact(a[n]);
+	}
 }
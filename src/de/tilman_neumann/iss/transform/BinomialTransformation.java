@@ -18,8 +18,6 @@ import java.util.List;
 import org.apache.log4j.Logger;
 import java.math.BigInteger;
 
-import de.tilman_neumann.jml.combinatorics.Binomial;
-
 /**
  * Computes the (forward) binomial transform according to Sloane, which is the
  * inverse binomial transform in the terminology of Wolfram MathWorld.
@@ -40,11 +38,26 @@ public class BinomialTransformation extends Transformation_SimpleImpl {
 	BigInteger computeNthValue(int n, List<BigInteger> a, List<BigInteger> b) {
 		BigInteger b_n = BigInteger.ZERO;
 		for (int k=0; k<=n; k++) {
-			BigInteger binomial = Binomial.binomial(n, k);
+			BigInteger binomial = CoefficientTriangle.BINOMIAL.get(n, k);
 			//LOG.debug("binomial(" + n + ", " + k + ") = " + binomial);
 			BigInteger elem = a.get(k).multiply(binomial);
 			b_n = b_n.add(elem);
 		}
 		return b_n;
 	}
+
+	@Override
+	boolean hasLongArithmetic() {
+		return true;
+	}
+
+	@Override
+	long computeNthLongValue(int n, long[] a) {
+		long b_n = 0;
+		for (int k=0; k<=n; k++) {
+			long binomial = CoefficientTriangle.BINOMIAL.getLong(n, k);
+			b_n = Math.addExact(b_n, Math.multiplyExact(a[k], binomial));
+		}
+		return b_n;
+	}
 }
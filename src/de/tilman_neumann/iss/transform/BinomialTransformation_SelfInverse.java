@@ -17,8 +17,6 @@ import java.util.List;
 
 import org.apache.log4j.Logger;
 
-import de.tilman_neumann.jml.combinatorics.Binomial;
-
 import java.math.BigInteger;
 
 /**
@@ -42,7 +40,7 @@ public class BinomialTransformation_SelfInverse extends Transformation_SimpleImp
 	BigInteger computeNthValue(int n, List<BigInteger> a, List<BigInteger> b) {
 		BigInteger b_n = BigInteger.ZERO;
 		for (int k=0; k<=n; k++) {
-			BigInteger binomial = Binomial.binomial(n, k);
+			BigInteger binomial = CoefficientTriangle.BINOMIAL.get(n, k);
 			//LOG.debug("binomial(" + n + ", " + k + ") = " + binomial);
 			BigInteger elem = a.get(k).multiply(binomial);
 			if (k%2!=0) {
@@ -52,4 +50,20 @@ public class BinomialTransformation_SelfInverse extends Transformation_SimpleImp
 		}
 		return b_n;
 	}
+
+	@Override
+	boolean hasLongArithmetic() {
+		return true;
+	}
+
+	@Override
+	long computeNthLongValue(int n, long[] a) {
+		long b_n = 0;
+		for (int k=0; k<=n; k++) {
+			long binomial = CoefficientTriangle.BINOMIAL.getLong(n, k);
+			long elem = Math.multiplyExact(a[k], binomial);
+			b_n = k%2!=0 ? Math.subtractExact(b_n, elem) : Math.addExact(b_n, elem);
+		}
+		return b_n;
+	}
 }
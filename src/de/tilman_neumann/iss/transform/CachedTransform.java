@@ -0,0 +1,47 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.transform;
+
+import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.iss.sequence.SequenceValues;
+import de.tilman_neumann.iss.sequence.SequenceValues_UnsignedIndexListImpl;
+
+/**
+ * A transform restored from the TransformCache.
+ * 
+ * It has the values of the original transform, but not the data that some transformations keep for the expansion
+ * of their transforms, like triangles or intermediate transforms. Thus it is expanded by computing the transform
+ * again from the expanded input sequence.
+ * 
+ * @author Tilman Neumann
+ */
+public class CachedTransform extends Transform {
+
+	private static final long serialVersionUID = -2305812478862201655L;
+
+	public CachedTransform(String name, SequenceValues values, Transformation transformation, OEISSequence inputSequence, int consideredInputValues) {
+		super(name, values, transformation, inputSequence, consideredInputValues);
+	}
+
+	@Override
+	public Transform expand(int wantedNumberOfInputValues) throws TransformationException {
+		expandInputSequence(wantedNumberOfInputValues);
+		boolean forLookup = getAbstractValues() instanceof SequenceValues_UnsignedIndexListImpl;
+		TransformCache transformCache = TransformCache.getDefault();
+		if (transformCache != null) {
+			return transformCache.compute(getTransformation(), getInputSequence(), wantedNumberOfInputValues, forLookup);
+		}
+		return getTransformation().compute(getInputSequence(), wantedNumberOfInputValues, forLookup);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.transform;
+
+import java.math.BigInteger;
+
+/**
+ * Process-wide cache of a triangle of combinatorial coefficients T(n, k), 0 &lt;= k &lt;= n, like binomial coefficients
+ * or Stirling numbers. The triangle is computed row by row from a recurrence and grows on demand.
+ * 
+ * Complete rows are immutable and published through a volatile array of rows, so reading rows that exist already
+ * needs no locking; only growing the triangle is synchronized.
+ * 
+ * Each row has a long copy of its values, too, for the long arithmetic of Transformation_SimpleImpl.
+ * 
+ * @author Tilman Neumann
+ */
+abstract public class CoefficientTriangle {
+
+	/** binomial coefficients */
+	public static final CoefficientTriangle BINOMIAL = new CoefficientTriangle(1, 1) {
+		BigInteger computeValue(int n, int k, BigInteger[] previousRow) {
+			// binomial(n, k) = binomial(n-1, k-1) + binomial(n-1, k)
+			return previousRow[k-1].add(previousRow[k]);
+		}
+	};
+
+	/** signed Stirling numbers of the first kind */
+	public static final CoefficientTriangle STIRLING1 = new CoefficientTriangle(1, 0) {
+		BigInteger computeValue(int n, int k, BigInteger[] previousRow) {
+			// s(n, k) = s(n-1, k-1) - (n-1)*s(n-1, k)
+			return previousRow[k-1].subtract(previousRow[k].multiply(BigInteger.valueOf(n-1)));
+		}
+	};
+
+	/** unsigned Stirling numbers of the first kind */
+	public static final CoefficientTriangle ABS_STIRLING1 = new CoefficientTriangle(1, 0) {
+		BigInteger computeValue(int n, int k, BigInteger[] previousRow) {
+			// |s(n, k)| = |s(n-1, k-1)| + (n-1)*|s(n-1, k)|
+			return previousRow[k-1].add(previousRow[k].multiply(BigInteger.valueOf(n-1)));
+		}
+	};
+
+	/** Stirling numbers of the second kind, with S(0, 0) = 0 like Stirling.stirling2() of jml */
+	public static final CoefficientTriangle STIRLING2 = new CoefficientTriangle(0, 0) {
+		BigInteger computeValue(int n, int k, BigInteger[] previousRow) {
+			// S(n, k) = S(n-1, k-1) + k*S(n-1, k)
+			return previousRow[k-1].add(previousRow[k].multiply(BigInteger.valueOf(k)));
+		}
+	};
+	
+	/** marks a value that does not fit into a long in the long rows */
+	private static final long NO_LONG = Long.MIN_VALUE;
+	
+	/** T(n, 0) for n &gt; 0 */
+	private final BigInteger firstColumnValue;
+	
+	private volatile BigInteger[][] rows;
+	private volatile long[][] longRows;
+	
+	/**
+	 * Constructor.
+	 * @param value00 T(0, 0)
+	 * @param firstColumnValue T(n, 0) for n &gt; 0
+	 */
+	private CoefficientTriangle(long value00, long firstColumnValue) {
+		this.firstColumnValue = BigInteger.valueOf(firstColumnValue);
+		this.rows = new BigInteger[][] {{BigInteger.valueOf(value00)}};
+		this.longRows = new long[][] {{value00}};
+	}
+	
+	/**
+	 * Computes T(n, k) for 0 &lt; k &lt; n. T(n, 0) and T(n, n) = 1 for n &gt; 0 are set by the caller;
+	 * the latter holds for all triangles of this class.
+	 * 
+	 * @param n
+	 * @param k
+	 * @param previousRow row n-1, with n entries
+	 * @return T(n, k)
+	 */
+	abstract BigInteger computeValue(int n, int k, BigInteger[] previousRow);
+	
+	/**
+	 * @param n
+	 * @param k
+	 * @return T(n, k); 0 for k &lt; 0 or k &gt; n
+	 */
+	public BigInteger get(int n, int k) {
+		if (k<0 || k>n) return BigInteger.ZERO;
+		BigInteger[][] rows = this.rows;
+		if (n >= rows.length) rows = grow(n);
+		return rows[n][k];
+	}
+	
+	/**
+	 * @param n
+	 * @param k
+	 * @return T(n, k) as a long; 0 for k &lt; 0 or k &gt; n
+	 * @throws ArithmeticException if T(n, k) does not fit into a long
+	 */
+	public long getLong(int n, int k) {
+		if (k<0 || k>n) return 0;
+		long[][] longRows = this.longRows;
+		if (n >= longRows.length) {
+			grow(n);
+			longRows = this.longRows;
+		}
+		long value = longRows[n][k];
+		if (value == NO_LONG) throw new ArithmeticException("T(" + n + ", " + k + ") does not fit into a long");
+		return value;
+	}
+	
+	/**
+	 * Computes all rows up to row n, if they do not exist yet.
+	 * @param n
+	 * @return rows
+	 */
+	private synchronized BigInteger[][] grow(int n) {
+		BigInteger[][] oldRows = this.rows;
+		int oldSize = oldRows.length;
+		if (n < oldSize) return oldRows;
+		
+		// at least double the size, so that the copying of rows does not matter
+		int newSize = Math.max(n+1, 2*oldSize);
+		BigInteger[][] newRows = new BigInteger[newSize][];
+		long[][] newLongRows = new long[newSize][];
+		System.arraycopy(oldRows, 0, newRows, 0, oldSize);
+		System.arraycopy(this.longRows, 0, newLongRows, 0, oldSize);
+		for (int m=oldSize; m<newSize; m++) {
+			BigInteger[] previousRow = newRows[m-1];
+			BigInteger[] row = new BigInteger[m+1];
+			long[] longRow = new long[m+1];
+			row[0] = firstColumnValue;
+			for (int k=1; k<m; k++) {
+				row[k] = computeValue(m, k, previousRow);
+			}
+			row[m] = BigInteger.ONE;
+			for (int k=0; k<=m; k++) {
+				longRow[k] = row[k].bitLength() < 64 ? row[k].longValue() : NO_LONG;
+			}
+			newRows[m] = row;
+			newLongRows[m] = longRow;
+		}
+		// publish long rows first, so that a reader who sees the new rows sees the new long rows too
+		this.longRows = newLongRows;
+		this.rows = newRows;
+		return newRows;
+	}
+}
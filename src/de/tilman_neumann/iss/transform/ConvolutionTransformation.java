@@ -18,8 +18,6 @@ import java.util.List;
 import org.apache.log4j.Logger;
 import java.math.BigInteger;
 
-import de.tilman_neumann.jml.combinatorics.Binomial;
-import de.tilman_neumann.jml.combinatorics.Stirling;
 import de.tilman_neumann.jml.gcd.Gcd;
 
 /**
@@ -31,6 +29,9 @@ public class ConvolutionTransformation extends Transformation_SimpleImpl {
 	@SuppressWarnings("unused")
 	private static final Logger LOG = Logger.getLogger(ConvolutionTransformation.class);
 
+	/** minimum number of values to compute the standard convolution by power series multiplication */
+	private static final int BLOCK_THRESHOLD = 64;
+	
 	private ConvolutionTransformationType type;
 	
 	public ConvolutionTransformation(ConvolutionTransformationType type) {
@@ -55,7 +56,7 @@ public class ConvolutionTransformation extends Transformation_SimpleImpl {
 				break;
 			}
 			case EXP: {
-				BigInteger coeff = Binomial.binomial(n, k);
+				BigInteger coeff = CoefficientTriangle.BINOMIAL.get(n, k);
 				//LOG.debug("binomial(" + n + ", " + k + ") = " + coeff);
 				elem = a.get(k).multiply(a.get(n-k)).multiply(coeff);
 				break;
@@ -69,61 +70,61 @@ public class ConvolutionTransformation extends Transformation_SimpleImpl {
 				break;
 			}
 			case STIRLING1: {
-				BigInteger coeff = Stirling.stirling1(n, k);
+				BigInteger coeff = CoefficientTriangle.STIRLING1.get(n, k);
 				//LOG.debug("stirling1(" + n + ", " + k + ") = " + coeff);
 				elem = a.get(k).multiply(a.get(n-k)).multiply(coeff);
 				break;
 			}
 			case ABS_STIRLING1: {
-				BigInteger coeff = Stirling.absStirling1(n, k);
+				BigInteger coeff = CoefficientTriangle.ABS_STIRLING1.get(n, k);
 				//LOG.debug("absStirling1(" + n + ", " + k + ") = " + coeff);
 				elem = a.get(k).multiply(a.get(n-k)).multiply(coeff);
 				break;
 			}
 			case STIRLING2: {
-				BigInteger coeff = Stirling.stirling2(n, k);
+				BigInteger coeff = CoefficientTriangle.STIRLING2.get(n, k);
 				//LOG.debug("stirling2(" + n + ", " + k + ") = " + coeff);
 				elem = a.get(k).multiply(a.get(n-k)).multiply(coeff);
 				break;
 			}
 			case DOUBLE_STIRLING1: {
-				BigInteger coeff = Stirling.stirling1(n, k).multiply(Stirling.stirling1(n, n-k));
+				BigInteger coeff = CoefficientTriangle.STIRLING1.get(n, k).multiply(CoefficientTriangle.STIRLING1.get(n, n-k));
 				//LOG.debug("double stirling1(" + n + ", " + k + ") = " + coeff);
 				elem = a.get(k).multiply(a.get(n-k)).multiply(coeff);
 				break;
 			}
 			case DOUBLE_ABS_STIRLING1: {
-				BigInteger coeff = Stirling.stirling1(n, k).multiply(Stirling.stirling1(n, n-k)).abs();
+				BigInteger coeff = CoefficientTriangle.STIRLING1.get(n, k).multiply(CoefficientTriangle.STIRLING1.get(n, n-k)).abs();
 				//LOG.debug("double absStirling1(" + n + ", " + k + ") = " + coeff);
 				elem = a.get(k).multiply(a.get(n-k)).multiply(coeff);
 				break;
 			}
 			case DOUBLE_STIRLING2: {
-				BigInteger coeff = Stirling.stirling2(n, k).multiply(Stirling.stirling2(n, n-k));
+				BigInteger coeff = CoefficientTriangle.STIRLING2.get(n, k).multiply(CoefficientTriangle.STIRLING2.get(n, n-k));
 				//LOG.debug("double stirling2(" + n + ", " + k + ") = " + coeff);
 				elem = a.get(k).multiply(a.get(n-k)).multiply(coeff);
 				break;
 			}
 			case STIRLING1_STIRLING2: {
-				BigInteger coeff = Stirling.stirling1(n, k).multiply(Stirling.stirling2(n, n-k));
+				BigInteger coeff = CoefficientTriangle.STIRLING1.get(n, k).multiply(CoefficientTriangle.STIRLING2.get(n, n-k));
 				//LOG.debug("stirling1*stirling2(" + n + ", " + k + ") = " + coeff);
 				elem = a.get(k).multiply(a.get(n-k)).multiply(coeff);
 				break;
 			}
 			case ABS_STIRLING1_STIRLING2: {
-				BigInteger coeff = Stirling.absStirling1(n, k).multiply(Stirling.stirling2(n, n-k));
+				BigInteger coeff = CoefficientTriangle.ABS_STIRLING1.get(n, k).multiply(CoefficientTriangle.STIRLING2.get(n, n-k));
 				//LOG.debug("absStirling1*stirling2(" + n + ", " + k + ") = " + coeff);
 				elem = a.get(k).multiply(a.get(n-k)).multiply(coeff);
 				break;
 			}
 			case STIRLING2_STIRLING1: {
-				BigInteger coeff = Stirling.stirling2(n, k).multiply(Stirling.stirling1(n, n-k));
+				BigInteger coeff = CoefficientTriangle.STIRLING2.get(n, k).multiply(CoefficientTriangle.STIRLING1.get(n, n-k));
 				//LOG.debug("stirling2*stirling1(" + n + ", " + k + ") = " + coeff);
 				elem = a.get(k).multiply(a.get(n-k)).multiply(coeff);
 				break;
 			}
 			case STIRLING2_ABS_STIRLING1: {
-				BigInteger coeff = Stirling.stirling2(n, k).multiply(Stirling.absStirling1(n, n-k));
+				BigInteger coeff = CoefficientTriangle.STIRLING2.get(n, k).multiply(CoefficientTriangle.ABS_STIRLING1.get(n, n-k));
 				//LOG.debug("stirling2*absStirling1(" + n + ", " + k + ") = " + coeff);
 				elem = a.get(k).multiply(a.get(n-k)).multiply(coeff);
 				break;
@@ -135,4 +136,103 @@ public class ConvolutionTransformation extends Transformation_SimpleImpl {
 		}
 		return b_n;
 	}
+
+	@Override
+	boolean hasLongArithmetic() {
+		return true;
+	}
+
+	@Override
+	long computeNthLongValue(int n, long[] a) {
+		long b_n = 0;
+		for (int k=0; k<=n; k++) {
+			long elem;
+			switch (type) {
+			case STANDARD: {
+				elem = Math.multiplyExact(a[k], a[n-k]);
+				break;
+			}
+			case LCM: {
+				elem = lcm(a[k], a[n-k]);
+				break;
+			}
+			case GCD: {
+				elem = gcd(a[k], a[n-k]);
+				break;
+			}
+			default: {
+				elem = Math.multiplyExact(Math.multiplyExact(a[k], a[n-k]), getLongCoefficient(n, k));
+				break;
+			}
+			}
+			b_n = Math.addExact(b_n, elem);
+		}
+		return b_n;
+	}
+	
+	@Override
+	boolean useValueBlock(int start, int end) {
+		// The exponential convolution would need the power series sum_k a_k*(N!/k!) x^k to have integer coefficients.
+		// That adds about N*log(N) bits per coefficient, which makes the series multiplication slower than the binomial sum.
+		if (type != ConvolutionTransformationType.STANDARD) return false;
+		// one series multiplication computes all values up to end, so it pays off only if many of them are new
+		return end >= BLOCK_THRESHOLD && 2*(end-start) >= end;
+	}
+
+	/**
+	 * Computes the standard convolution as the square of the generating function of a.
+	 */
+	@Override
+	List<BigInteger> computeValueBlock(List<BigInteger> a, int start, int end) {
+		PowerSeries f = new PowerSeries(a.subList(0, end));
+		return f.multiply(f).getCoefficients(start, end);
+	}
+	
+	/**
+	 * @param n
+	 * @param k
+	 * @return the coefficient of a(k)*a(n-k) in the n.th value of types with coefficients
+	 * @throws ArithmeticException if the coefficient does not fit into a long
+	 */
+	private long getLongCoefficient(int n, int k) {
+		switch (type) {
+		case EXP: return CoefficientTriangle.BINOMIAL.getLong(n, k);
+		case STIRLING1: return CoefficientTriangle.STIRLING1.getLong(n, k);
+		case ABS_STIRLING1: return CoefficientTriangle.ABS_STIRLING1.getLong(n, k);
+		case STIRLING2: return CoefficientTriangle.STIRLING2.getLong(n, k);
+		case DOUBLE_STIRLING1: return Math.multiplyExact(CoefficientTriangle.STIRLING1.getLong(n, k), CoefficientTriangle.STIRLING1.getLong(n, n-k));
+		case DOUBLE_ABS_STIRLING1: return absExact(Math.multiplyExact(CoefficientTriangle.STIRLING1.getLong(n, k), CoefficientTriangle.STIRLING1.getLong(n, n-k)));
+		case DOUBLE_STIRLING2: return Math.multiplyExact(CoefficientTriangle.STIRLING2.getLong(n, k), CoefficientTriangle.STIRLING2.getLong(n, n-k));
+		case STIRLING1_STIRLING2: return Math.multiplyExact(CoefficientTriangle.STIRLING1.getLong(n, k), CoefficientTriangle.STIRLING2.getLong(n, n-k));
+		case ABS_STIRLING1_STIRLING2: return Math.multiplyExact(CoefficientTriangle.ABS_STIRLING1.getLong(n, k), CoefficientTriangle.STIRLING2.getLong(n, n-k));
+		case STIRLING2_STIRLING1: return Math.multiplyExact(CoefficientTriangle.STIRLING2.getLong(n, k), CoefficientTriangle.STIRLING1.getLong(n, n-k));
+		case STIRLING2_ABS_STIRLING1: return Math.multiplyExact(CoefficientTriangle.STIRLING2.getLong(n, k), CoefficientTriangle.ABS_STIRLING1.getLong(n, n-k));
+		default:
+			throw new IllegalArgumentException("Illegal convolution transformation type: " + type);
+		}
+	}
+	
+	/**
+	 * @return the non-negative greatest common divisor of x and y, like BigInteger.gcd()
+	 * @throws ArithmeticException if the result would be 2^63
+	 */
+	private static long gcd(long x, long y) {
+		x = absExact(x);
+		y = absExact(y);
+		while (y != 0) {
+			long r = x % y;
+			x = y;
+			y = r;
+		}
+		return x;
+	}
+	
+	/**
+	 * @return x*y/gcd(x, y) like Gcd.lcm(), in particular 0 if x or y is 0, and negative if exactly one of x, y is negative
+	 * @throws ArithmeticException on overflow
+	 */
+	private static long lcm(long x, long y) {
+		if (x==0 || y==0) return 0;
+		return Math.multiplyExact(x / gcd(x, y), y);
+	}
 }
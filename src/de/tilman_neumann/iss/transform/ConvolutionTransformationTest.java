@@ -0,0 +1,92 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.iss.sequence.SequenceValues_BigIntListImpl;
+import de.tilman_neumann.util.ConfigUtil;
+
+/**
+ * Test of the standard convolution, whose values are computed by power series multiplication for long sequences.
+ * 
+ * @author Tilman Neumann
+ */
+public class ConvolutionTransformationTest {
+	private static final Logger LOG = Logger.getLogger(ConvolutionTransformationTest.class);
+
+	private OEISSequence inputSeq;
+	private List<BigInteger> expected;
+	
+	@Before
+	public void setup() {
+		ConfigUtil.initProject();
+		// values beyond the long range, such that the block computation is compared with BigInteger arithmetic
+		Random rng = new Random(43);
+		List<BigInteger> values = new ArrayList<BigInteger>();
+		for (int n=0; n<200; n++) {
+			BigInteger value = new BigInteger(1 + rng.nextInt(100), rng);
+			values.add(rng.nextBoolean() ? value : value.negate());
+		}
+		inputSeq = new OEISSequence("random", new SequenceValues_BigIntListImpl(values));
+		
+		expected = new ArrayList<BigInteger>();
+		for (int n=0; n<values.size(); n++) {
+			BigInteger sum = BigInteger.ZERO;
+			for (int k=0; k<=n; k++) {
+				sum = sum.add(values.get(k).multiply(values.get(n-k)));
+			}
+			expected.add(sum);
+		}
+	}
+
+	@Test
+	public void testValueBlock() {
+		ConvolutionTransformation conv = new ConvolutionTransformation(ConvolutionTransformationType.STANDARD);
+		assertTrue(conv.useValueBlock(0, 100));
+		Transform result = conv.compute(inputSeq, 100, false);
+		assertEquals(expected.subList(0, 100), result.getValues());
+	}
+
+	@Test
+	public void testExpand() throws TransformationException {
+		ConvolutionTransformation conv = new ConvolutionTransformation(ConvolutionTransformationType.STANDARD);
+		// value by value
+		Transform result = conv.compute(inputSeq, 40, false);
+		assertEquals(expected.subList(0, 40), result.getValues());
+		// block of the new values 40..99
+		assertTrue(conv.useValueBlock(40, 100));
+		result = result.expand(100);
+		assertEquals(expected.subList(0, 100), result.getValues());
+		// value by value, because there are few new values
+		assertTrue(!conv.useValueBlock(100, 120));
+		result = result.expand(120);
+		assertEquals(expected.subList(0, 120), result.getValues());
+		// block again
+		result = result.expand(200);
+		assertEquals(expected, result.getValues());
+		LOG.info("conv(random) = " + result.getValues().subList(0, 5) + ", ...");
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.transform;
+
+/**
+ * Process-wide table of the divisors and Moebius function values of 1, ..., N, computed by a sieve.
+ * The table grows on demand, so N is always at least the largest argument requested so far.
+ * 
+ * Divisors and Moebius values are kept in an immutable snapshot published through a volatile field,
+ * so reading needs no locking; only growing the table is synchronized.
+ * 
+ * Used by the Moebius and Euler transforms instead of factoring each index again.
+ * 
+ * @author Tilman Neumann
+ */
+public final class DivisorTable {
+
+	/** snapshot of the table for the arguments 1, ..., divisors.length-1 */
+	private static final class Table {
+		/** divisors[n] = divisors of n in ascending order; divisors[0] is not used */
+		final int[][] divisors;
+		/** moebius[n] = mu(n); moebius[0] is not used */
+		final byte[] moebius;
+		
+		Table(int[][] divisors, byte[] moebius) {
+			this.divisors = divisors;
+			this.moebius = moebius;
+		}
+	}
+	
+	private static volatile Table table = sieve(64);
+
+	private DivisorTable() {
+		// static class
+	}
+	
+	/**
+	 * @param n &gt; 0
+	 * @return the divisors of n in ascending order. The returned array is shared and must not be modified.
+	 */
+	public static int[] getDivisors(int n) {
+		Table table = DivisorTable.table;
+		if (n >= table.divisors.length) table = grow(n);
+		return table.divisors[n];
+	}
+	
+	/**
+	 * @param n &gt; 0
+	 * @return the Moebius function mu(n)
+	 */
+	public static int moebius(int n) {
+		Table table = DivisorTable.table;
+		if (n >= table.moebius.length) table = grow(n);
+		return table.moebius[n];
+	}
+	
+	/**
+	 * Computes the table up to n, if it does not exist yet.
+	 * @param n
+	 * @return table
+	 */
+	private static synchronized Table grow(int n) {
+		Table oldTable = table;
+		int oldSize = oldTable.divisors.length;
+		if (n < oldSize) return oldTable;
+		
+		// at least double the size, so that sieving again from scratch does not matter
+		Table newTable = sieve(Math.max(n+1, 2*oldSize));
+		table = newTable;
+		return newTable;
+	}
+	
+	/**
+	 * Sieve divisors and Moebius values of all arguments below size.
+	 * @param size
+	 * @return table
+	 */
+	private static Table sieve(int size) {
+		// count divisors first, so that each divisor list can be allocated with its exact size
+		int[] counts = new int[size];
+		for (int d=1; d<size; d++) {
+			for (int m=d; m<size; m+=d) {
+				counts[m]++;
+			}
+		}
+		int[][] divisors = new int[size][];
+		divisors[0] = new int[0];
+		for (int m=1; m<size; m++) {
+			divisors[m] = new int[counts[m]];
+			counts[m] = 0;
+		}
+		// running d upwards gives ascending divisor lists
+		for (int d=1; d<size; d++) {
+			for (int m=d; m<size; m+=d) {
+				divisors[m][counts[m]++] = d;
+			}
+		}
+		
+		// sum_{d|n} mu(d) = 0 for n>1, so mu(n) = -sum_{d|n, d<n} mu(d)
+		byte[] moebius = new byte[size];
+		if (size > 1) moebius[1] = 1;
+		for (int d=1; d<size; d++) {
+			int mu = moebius[d];
+			if (mu == 0) continue;
+			for (int m=2*d; m<size; m+=d) {
+				moebius[m] -= mu;
+			}
+		}
+		return new Table(divisors, moebius);
+	}
+}
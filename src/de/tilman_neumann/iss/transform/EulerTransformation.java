@@ -61,11 +61,7 @@ public class EulerTransformation extends Transformation {
 		int numberOfInputValues	= cTransform.getNumberOfConsideredInputValues();
 		
 		// compute second step inline, optimized for computation or lookup:
-		List<BigInteger> b = new ArrayList<BigInteger>(numberOfInputValues);
-		if (numberOfInputValues>0) b.add(c.get(0)); // b_1 = c_1
-		for (int n=1; n<numberOfInputValues; n++) {
-			b.add(computeNthValueOfStep2(n, c, b));
-		}
+		List<BigInteger> b = EulerTransformation_Step2.computeValues(c.subList(0, numberOfInputValues), new ArrayList<BigInteger>());
 		
 		// do not mention intermediate step in the name of the transform
 		String name = this.getName(inputSeq.getName());
@@ -85,20 +81,8 @@ public class EulerTransformation extends Transformation {
 		List<BigInteger> c = cTransform.getValues();
 		int numberOfInputValues	= cTransform.getNumberOfConsideredInputValues();
 
-		// expand second transform:
-		List<BigInteger> b = new ArrayList<BigInteger>(numberOfInputValues);
-		// copy old values
-		int oldNumberOfInputValues = oldTransform.getNumberOfConsideredInputValues();
-		if (oldNumberOfInputValues>0) {
-			b.addAll(oldTransform.getValues());
-		} else if (numberOfInputValues>0) {
-			b.add(c.get(0));
-			oldNumberOfInputValues = 1;
-		}
-		// compute new values
-		for (int n=oldNumberOfInputValues; n<numberOfInputValues; n++) {
-			b.add(computeNthValueOfStep2(n, c, b));
-		}
+		// expand second transform, keeping the old values:
+		List<BigInteger> b = EulerTransformation_Step2.computeValues(c.subList(0, numberOfInputValues), oldTransform.getValues());
 		
 		SequenceValues oldTransformValues = oldTransform.getAbstractValues();
 		SequenceValues outputValues =
@@ -107,13 +91,4 @@ public class EulerTransformation extends Transformation {
 			    new SequenceValues_BigIntListImpl(b);
 		return new DoubleTransform(oldTransform.getName(), outputValues, this, cTransform);
 	}
-	
-	private BigInteger computeNthValueOfStep2(int n, List<BigInteger> c, List<BigInteger> b) {
-		BigInteger b_n = c.get(n);
-		for (int k=1; k<=n; k++) {
-			b_n = b_n.add(c.get(k-1).multiply(b.get(n-k)));
-		}
-		b_n = b_n.divide(BigInteger.valueOf(n+1));
-		return b_n;
-	}
 }
@@ -15,7 +15,6 @@ package de.tilman_neumann.iss.transform;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.SortedSet;
 
 import org.apache.log4j.Logger;
 import java.math.BigInteger;
@@ -24,8 +23,6 @@ import de.tilman_neumann.iss.sequence.OEISSequence;
 import de.tilman_neumann.iss.sequence.SequenceValues;
 import de.tilman_neumann.iss.sequence.SequenceValues_BigIntListImpl;
 import de.tilman_neumann.iss.sequence.SequenceValues_UnsignedIndexListImpl;
-import de.tilman_neumann.jml.Divisors;
-import de.tilman_neumann.jml.MoebiusFunction;
 
 /**
  * Computation of the inverse Euler transform of the given integer sequence.
@@ -110,21 +107,14 @@ public class EulerTransformation_Inverse extends Transformation {
 	 * @return
 	 */
 	private BigInteger computeNthValueOfStep2(int n, List<BigInteger> c, List<BigInteger> b) {
-		BigInteger nBig = BigInteger.valueOf(n+1);
-		SortedSet<BigInteger> divisors = Divisors.getDivisors(nBig);
-		//LOG.debug("divisors(" + n + ") = " + divisors);
 		BigInteger b_n = BigInteger.ZERO;
-		//String b_n_str = "";
-		for (BigInteger d : divisors) {
-			BigInteger moebiusArg = nBig.divide(d);
-			BigInteger moebiusVal = BigInteger.valueOf(MoebiusFunction.moebius(moebiusArg));
-			//LOG.debug("moebius(" + moebiusArg + ") = " + moebiusVal);
-			BigInteger elem = moebiusVal.multiply(c.get(d.intValue()-1));
-			b_n = b_n.add(elem);
-			//b_n_str += (elem.compareTo(BigIntConstants.ZERO)<0) ? elem : "+"+elem;
+		for (int d : DivisorTable.getDivisors(n+1)) {
+			int moebiusVal = DivisorTable.moebius((n+1)/d);
+			if (moebiusVal == 0) continue;
+			BigInteger c_d = c.get(d-1);
+			b_n = moebiusVal > 0 ? b_n.add(c_d) : b_n.subtract(c_d);
 		}
-		b_n = b_n.divide(nBig);
-		//LOG.debug("b_" + n + " = ( " + b_n_str + " ) / " + nBig + " = " + b_n);
+		b_n = b_n.divide(BigInteger.valueOf(n+1));
 		return b_n;
 	}
 }
@@ -56,11 +56,7 @@ public class EulerTransformation_Inverse_Step1 extends Transformation {
 		int numberOfInputValues = Math.min(inputSeq.size(), maxNumberOfInputValues);
 		List<BigInteger> a = inputSeq.getValues().subList(0, numberOfInputValues);
 		
-		List<BigInteger> b = new ArrayList<BigInteger>(numberOfInputValues);
-		b.add(a.get(0)); // b_1 = a_1
-		for (int n=1; n<numberOfInputValues; n++) {
-			b.add(computeNthValue(n, a, b));
-		}
+		List<BigInteger> b = computeValues(a);
 		
 		String name = this.getName(inputSeq.getName());
 		SequenceValues outputValues = forLookup ? new SequenceValues_UnsignedIndexListImpl(b) : new SequenceValues_BigIntListImpl(b);
@@ -75,16 +71,9 @@ public class EulerTransformation_Inverse_Step1 extends Transformation {
 		
 		List<BigInteger> b = new ArrayList<BigInteger>(numberOfInputValues);
 		// copy old values
-		if (oldNumberOfInputValues>0) {
-			b.addAll(oldTransform.getValues());
-		} else if (numberOfInputValues>0) {
-			b.add(a.get(0)); // b_1 = a_1
-			oldNumberOfInputValues = 1;
-		}
+		b.addAll(oldTransform.getValues());
 		// compute new values
-		for (int n=oldNumberOfInputValues; n<numberOfInputValues; n++) {
-			b.add(computeNthValue(n, a, b));
-		}
+		b.addAll(computeValues(a).subList(oldNumberOfInputValues, numberOfInputValues));
 		
 		SequenceValues oldTransformValues = oldTransform.getAbstractValues();
 		SequenceValues outputValues =
@@ -95,20 +84,16 @@ public class EulerTransformation_Inverse_Step1 extends Transformation {
 	}
 	
 	/**
-	 * Compute transform of n.th input sequence value, for n>=1.
+	 * Computes b_n = n*a_n - sum_{k=1..n-1} b_k*a_{n-k} for all n with known a_n, where indices start with 1.
+	 * 
+	 * With a_0 = 1 this means that sum b_n x^n is the logarithmic derivative of the generating function 1 + sum a_n x^n,
+	 * which is computed by power series arithmetic in O(M(n)) instead of O(n^2) operations,
+	 * where M(n) is the cost of a power series multiplication.
 	 * 
-	 * @param n
 	 * @param a
-	 * @param b
-	 * @return
+	 * @return b, with as many values as a
 	 */
-	private BigInteger computeNthValue(int n, List<BigInteger> a, List<BigInteger> b) {
-		BigInteger b_n = a.get(n).multiply(BigInteger.valueOf(n+1));
-		for (int k=1; k<=n; k++) {
-			BigInteger b_nk = b.get(n-k);
-			BigInteger elem = a.get(k-1).multiply(b_nk);
-			b_n = b_n.subtract(elem);
-		}
-		return b_n;
+	private static List<BigInteger> computeValues(List<BigInteger> a) {
+		return new PowerSeries(BigInteger.ONE, a).logarithmicDerivative().getCoefficients(1, a.size()+1);
 	}
 }
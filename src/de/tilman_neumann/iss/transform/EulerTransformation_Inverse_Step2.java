@@ -14,13 +14,9 @@
 package de.tilman_neumann.iss.transform;
 
 import java.util.List;
-import java.util.SortedSet;
 
 import org.apache.log4j.Logger;
 
-import de.tilman_neumann.jml.Divisors;
-import de.tilman_neumann.jml.MoebiusFunction;
-
 import java.math.BigInteger;
 
 /**
@@ -40,21 +36,32 @@ public class EulerTransformation_Inverse_Step2 extends Transformation_SimpleImpl
 	}
 	
 	BigInteger computeNthValue(int n, List<BigInteger> a, List<BigInteger> b) {
-		// first compute divisors
-		BigInteger nBig = BigInteger.valueOf(n+1);
-		SortedSet<BigInteger> divisors = Divisors.getDivisors(nBig);
-		//LOG.debug("divisors(" + n + ") = " + divisors);
-		
 		// transform current list element
 		BigInteger b_n = BigInteger.ZERO;
-		for (BigInteger d : divisors) {
-			BigInteger moebiusArg = nBig.divide(d);
-			BigInteger moebiusVal = BigInteger.valueOf(MoebiusFunction.moebius(moebiusArg));
-			//LOG.debug("moebius(" + moebiusArg + ") = " + moebiusVal);
-			BigInteger elem = moebiusVal.multiply(a.get(d.intValue()-1));
-			b_n = b_n.add(elem);
+		for (int d : DivisorTable.getDivisors(n+1)) {
+			int moebiusVal = DivisorTable.moebius((n+1)/d);
+			if (moebiusVal == 0) continue;
+			BigInteger a_d = a.get(d-1);
+			b_n = moebiusVal > 0 ? b_n.add(a_d) : b_n.subtract(a_d);
 		}
-		b_n = b_n.divide(nBig);
+		b_n = b_n.divide(BigInteger.valueOf(n+1));
 		return b_n;
 	}
+
+	@Override
+	boolean hasLongArithmetic() {
+		return true;
+	}
+
+	@Override
+	long computeNthLongValue(int n, long[] a) {
+		long b_n = 0;
+		for (int d : DivisorTable.getDivisors(n+1)) {
+			int moebiusVal = DivisorTable.moebius((n+1)/d);
+			if (moebiusVal == 0) continue;
+			b_n = moebiusVal > 0 ? Math.addExact(b_n, a[d-1]) : Math.subtractExact(b_n, a[d-1]);
+		}
+		// BigInteger.divide() truncates towards zero like long division
+		return b_n / (n+1);
+	}
 }
@@ -14,12 +14,9 @@
 package de.tilman_neumann.iss.transform;
 
 import java.util.List;
-import java.util.SortedSet;
 
 import org.apache.log4j.Logger;
 
-import de.tilman_neumann.jml.Divisors;
-
 import java.math.BigInteger;
 
 /**
@@ -39,15 +36,25 @@ public class EulerTransformation_Step1 extends Transformation_SimpleImpl {
 	}
 	
 	BigInteger computeNthValue(int n, List<BigInteger> a, List<BigInteger> b) {
-		// first compute divisors
-		SortedSet<BigInteger> divisors = Divisors.getDivisors(BigInteger.valueOf(n+1));
-		//LOG.debug("divisors(" + n + ") = " + divisors);
-		
 		// transform current list element
 		BigInteger b_n = BigInteger.ZERO;
-		for (BigInteger d : divisors) {
-			BigInteger a_d = a.get(d.intValue()-1); // list indices start with 0, a_i with 1
-			b_n = b_n.add(d.multiply(a_d));
+		for (int d : DivisorTable.getDivisors(n+1)) {
+			BigInteger a_d = a.get(d-1); // list indices start with 0, a_i with 1
+			b_n = b_n.add(BigInteger.valueOf(d).multiply(a_d));
+		}
+		return b_n;
+	}
+
+	@Override
+	boolean hasLongArithmetic() {
+		return true;
+	}
+
+	@Override
+	long computeNthLongValue(int n, long[] a) {
+		long b_n = 0;
+		for (int d : DivisorTable.getDivisors(n+1)) {
+			b_n = Math.addExact(b_n, Math.multiplyExact(d, a[d-1]));
 		}
 		return b_n;
 	}
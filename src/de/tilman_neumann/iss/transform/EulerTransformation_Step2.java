@@ -56,11 +56,7 @@ public class EulerTransformation_Step2 extends Transformation {
 		int numberOfInputValues = Math.min(inputSeq.size(), maxNumberOfInputValues);
 		List<BigInteger> a = inputSeq.getValues().subList(0, numberOfInputValues);
 		
-		List<BigInteger> b = new ArrayList<BigInteger>(numberOfInputValues);
-		if (numberOfInputValues>0) b.add(a.get(0)); // b_1 = a_1
-		for (int n=1; n<numberOfInputValues; n++) {
-			b.add(computeNthValue(n, a, b));
-		}
+		List<BigInteger> b = computeValues(a, new ArrayList<BigInteger>());
 		
 		String name = this.getName(inputSeq.getName());
 		SequenceValues outputValues = forLookup ? new SequenceValues_UnsignedIndexListImpl(b) : new SequenceValues_BigIntListImpl(b);
@@ -69,24 +65,11 @@ public class EulerTransformation_Step2 extends Transformation {
 
 	Transform expand(Transform oldTransform, int maxNumberOfInputValues) {
 		OEISSequence inputSeq = oldTransform.getInputSequence();
-		int oldNumberOfInputValues = oldTransform.getNumberOfConsideredInputValues();
 		int numberOfInputValues = Math.min(inputSeq.size(), maxNumberOfInputValues);
 		List<BigInteger> a = inputSeq.getValues().subList(0, numberOfInputValues);
 		
-		List<BigInteger> b = new ArrayList<BigInteger>(numberOfInputValues);
-		// copy old values
-		if (oldNumberOfInputValues>0) {
-			b.addAll(oldTransform.getValues());
-		} else if (numberOfInputValues>0) {
-			b.add(a.get(0)); // b_1 = a_1
-			oldNumberOfInputValues = 1;
-		}
-		// compute new values
-		//LOG.debug("oldNumberOfInputValues = " + oldNumberOfInputValues);
-		for (int n=oldNumberOfInputValues; n<numberOfInputValues; n++) {
-			//LOG.debug("computeNthValue(" + n + ", " + a + ", " + b + ")");
-			b.add(computeNthValue(n, a, b));
-		}
+		// keep old values and compute new values
+		List<BigInteger> b = computeValues(a, oldTransform.getValues());
 		
 		SequenceValues oldTransformValues = oldTransform.getAbstractValues();
 		SequenceValues outputValues =
@@ -96,13 +79,20 @@ public class EulerTransformation_Step2 extends Transformation {
 		return new Transform(oldTransform.getName(), outputValues, this, inputSeq, numberOfInputValues);
 	}
 	
-	private BigInteger computeNthValue(int n, List<BigInteger> a, List<BigInteger> b) {
-		BigInteger b_n = a.get(n); // list indices start with 0, c_i with 1
-		for (int k=1; k<=n; k++) {
-			BigInteger b_nk = b.get(n-k);
-			b_n = b_n.add(a.get(k-1).multiply(b_nk));
-		}
-		b_n = b_n.divide(BigInteger.valueOf(n+1));
-		return b_n;
+	/**
+	 * Computes b_n = (c_n + sum_{k=1..n-1} c_k*b_{n-k}) / n for all n with known c_n, where indices start with 1.
+	 * 
+	 * With b_0 = 1 this is n*b_n = sum_{k=1..n} c_k*b_{n-k}, i.e. the generating function 1 + sum b_n x^n is the power series
+	 * with logarithmic derivative sum c_n x^n. That is solved in O(M(n) log n) instead of O(n^2) operations,
+	 * where M(n) is the cost of a power series multiplication.
+	 * 
+	 * @param c
+	 * @param oldB values of b computed before, may be empty
+	 * @return b, with as many values as c
+	 */
+	static List<BigInteger> computeValues(List<BigInteger> c, List<BigInteger> oldB) {
+		PowerSeries cSeries = new PowerSeries(BigInteger.ZERO, c);
+		PowerSeries bSeries = PowerSeries.fromLogarithmicDerivative(cSeries, new PowerSeries(BigInteger.ONE, oldB));
+		return bSeries.getCoefficients(1, c.size()+1);
 	}
 }
@@ -15,12 +15,9 @@ package de.tilman_neumann.iss.transform;
 
 import java.math.BigInteger;
 import java.util.List;
-import java.util.SortedSet;
 
 import org.apache.log4j.Logger;
 
-import de.tilman_neumann.jml.Divisors;
-
 /**
  * Sloane's inverse Moebius transform.
  * Is sometimes also taken as the forward Moebius transform.
@@ -36,15 +33,24 @@ public class MoebiusTransformation_Inverse extends Transformation_SimpleImpl {
 	}
 	
 	BigInteger computeNthValue(int n, List<BigInteger> a, List<BigInteger> b) {
-		// first compute divisors
-		SortedSet<BigInteger> divisors = Divisors.getDivisors(BigInteger.valueOf(n+1));
-		//LOG.debug("divisors(" + n + ") = " + divisors);
-		
 		// transform current list element
 		BigInteger b_n = BigInteger.ZERO;
-		for (BigInteger d : divisors) {
-			BigInteger a_d = a.get(d.intValue()-1);
-			b_n = b_n.add(a_d);
+		for (int d : DivisorTable.getDivisors(n+1)) {
+			b_n = b_n.add(a.get(d-1));
+		}
+		return b_n;
+	}
+
+	@Override
+	boolean hasLongArithmetic() {
+		return true;
+	}
+
+	@Override
+	long computeNthLongValue(int n, long[] a) {
+		long b_n = 0;
+		for (int d : DivisorTable.getDivisors(n+1)) {
+			b_n = Math.addExact(b_n, a[d-1]);
 		}
 		return b_n;
 	}
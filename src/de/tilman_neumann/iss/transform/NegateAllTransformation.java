@@ -30,4 +30,14 @@ public class NegateAllTransformation extends Transformation_SimpleImpl {
 	BigInteger computeNthValue(int n, List<BigInteger> a, List<BigInteger> b) {
 		return a.get(n).negate();
 	}
+
+	@Override
+	boolean hasLongArithmetic() {
+		return true;
+	}
+
+	@Override
+	long computeNthLongValue(int n, long[] a) {
+		return Math.negateExact(a[n]);
+	}
 }
@@ -48,4 +48,15 @@ public class NegateAlternatingTransformation extends Transformation_SimpleImpl {
 		}
 		return b_n;
 	}
+
+	@Override
+	boolean hasLongArithmetic() {
+		return true;
+	}
+
+	@Override
+	long computeNthLongValue(int n, long[] a) {
+		int nMinusOffset = n - offset;
+		return (nMinusOffset>=0 && nMinusOffset%2==0) ? Math.negateExact(a[n]) : a[n];
+	}
 }
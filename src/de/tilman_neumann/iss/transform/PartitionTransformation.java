@@ -15,8 +15,6 @@ package de.tilman_neumann.iss.transform;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import org.apache.log4j.Logger;
 import java.math.BigInteger;
@@ -26,16 +24,14 @@ import de.tilman_neumann.iss.sequence.SequenceValues;
 import de.tilman_neumann.iss.sequence.SequenceValues_BigIntListImpl;
 import de.tilman_neumann.iss.sequence.SequenceValues_UnsignedIndexListImpl;
 import de.tilman_neumann.jml.base.BigIntTriangle;
-import de.tilman_neumann.jml.partitions.IntegerPartition;
-import de.tilman_neumann.jml.partitions.IntegerPartitionGenerator;
 
 import static de.tilman_neumann.jml.base.BigIntConstants.*;
 
 /**
  * Implementation of forward partition transforms.
  * 
- * This is a sample application of the partitions generator, but
- * interesting of its own account.
+ * This started as a sample application of the partitions generator, but
+ * is interesting of its own account.
  * 
  * The main method creates a triangle by a kind of "partition transform" from sequence.
  * The entry T[n,k] is the sum over all partitions with k parts of integer n,
@@ -72,6 +68,9 @@ import static de.tilman_neumann.jml.base.BigIntConstants.*;
  * Note that it would also make sense to apply the partitions transform to
  * arbitrary numbers, not just integers.
  * 
+ * The rows are not computed by enumerating all partitions of n, which would cost about p(n) operations,
+ * but by recurrences from the previous rows, see computeNthRow().
+ * 
  * @author Tilman Neumann
  */
 public class PartitionTransformation extends Transformation {
@@ -114,7 +113,7 @@ public class PartitionTransformation extends Transformation {
 		BigIntTriangle triangle = new BigIntTriangle();
 		for (int n=0; n<numberOfInputValues; n++) {
 			// compute transform for n.th row
-			triangle.addRow(computeNthRow(n+1, a));
+			triangle.addRow(computeNthRow(n+1, a, weighted, central, triangle));
 			//LOG.debug("Triangle after " + n + " rows:\n" + triangle);
 		}
 		List<BigInteger> b = triangle.getRowSums();
@@ -145,7 +144,7 @@ public class PartitionTransformation extends Transformation {
 		//LOG.debug("expand triangle " + triangle.getUid() + " from " + oldNumberOfInputValues + " to " + numberOfInputValues + " rows", new Throwable());
 		for (int n=oldNumberOfInputValues; n<numberOfInputValues; n++) {
 			 // triangle indices start with 1
-			triangle.addRow(computeNthRow(n+1, a));
+			triangle.addRow(computeNthRow(n+1, a, weighted, central, triangle));
 			b.add(triangle.getRowSum(n+1));
 		}
 		
@@ -174,52 +173,99 @@ public class PartitionTransformation extends Transformation {
 		BigIntTriangle triangle = new BigIntTriangle();
 		for (int n=0; n<numberOfInputValues; n++) {
 			// compute transform for n.th row
-			triangle.addRow(computeNthRow(n+1, a));
+			triangle.addRow(computeNthRow(n+1, a, weighted, central, triangle));
 			//LOG.debug("Triangle after " + n + " rows:\n" + triangle);
 		}
 		return triangle;
 	}
 	
 	/**
-	 * Compute n.th row of the triangle, with the first row having index 1.
+	 * Compute n.th row of the triangle, with the first row having index 1, from the previous rows.
+	 * 
+	 * Skipping partitions that contain a part 1 is the same as setting a[1] = 0, so let c[i] = a[i]
+	 * except c[1] = 0 if <code>central</code> is true.
+	 * 
+	 * The weighted triangle is the triangle of partial Bell polynomials evaluated at c, so
+	 * T[n,k] = sum_{i=1..n-k+1} binomial(n-1, i-1) * c[i] * T[n-i,k-1].
+	 * 
+	 * The unweighted T[n,k] is the coefficient of x^n*y^k in prod_{i>=1} 1/(1 - c[i]*y*x^i).
+	 * Its logarithmic derivative gives n*T[n,k] = sum_{m=1..n} sum_{i*j=m} i * c[i]^j * T[n-m,k-j].
+	 * 
+	 * In both recurrences T[0,0] = 1 and T[n,0] = 0 for n&gt;0.
+	 * 
 	 * @param n
 	 * @param a
-	 * @return n.th row of the triangle
+	 * @param weighted
+	 * @param central
+	 * @param triangle the forward triangle containing at least the rows 1, ..., n-1
+	 * @return n.th row of the forward triangle
 	 */
-	private ArrayList<BigInteger> computeNthRow(int n, List<BigInteger> a) {
-		// create zero-initialized row
+	static ArrayList<BigInteger> computeNthRow(int n, List<BigInteger> a, boolean weighted, boolean central, BigIntTriangle triangle) {
+		// create zero-initialized row, index k-1 holding T[n,k]
 		ArrayList<BigInteger> nthRow = new ArrayList<BigInteger>(n);
 		for (int j=0; j<n; j++) {
 			nthRow.add(I_0);
 		}
 		
-		IntegerPartitionGenerator pg = new IntegerPartitionGenerator(n);
-		while (pg.hasNext()) {
-			IntegerPartition p = new IntegerPartition(pg.next());
-			if (central) {
-				Set<Integer> parts = p.keySet();
-				if (parts.contains(Integer.valueOf(1))) {
-					// partition contains primary part, thus it is not added to T[n,k]
-					continue; // next partition
+		if (weighted) {
+			for (int k=1; k<=n; k++) {
+				BigInteger entry = I_0;
+				for (int i=1; i<=n-k+1; i++) {
+					BigInteger c_i = getCoefficient(a, i, central);
+					if (c_i.signum()==0) continue;
+					BigInteger t = getEntry(triangle, n-i, k-1);
+					if (t.signum()==0) continue;
+					entry = entry.add(CoefficientTriangle.BINOMIAL.get(n-1, i-1).multiply(c_i).multiply(t));
 				}
+				nthRow.set(k-1, entry);
 			}
-			BigInteger summand = weighted ? p.getNumberOfRealizations() : I_1;
-			//LOG.debug("partition of " + n + ": " + p + ", realizations=" + summand);
-			for (Map.Entry<Integer, Integer> partAndPower : p.entrySet()) {
-				int part = partAndPower.getKey().intValue();
-				int power = partAndPower.getValue().intValue();
-				BigInteger xval = a.get(part-1);
-				BigInteger elem = xval.pow(power);
-				//LOG.debug("a["+part+"]^"+power + " = " + elem);
-				summand = summand.multiply(elem);
+			return nthRow;
+		}
+		
+		// unweighted: the weights i*c[i]^j do not depend on k, so sum up k-rows in the inner loop
+		for (int m=1; m<=n; m++) {
+			for (int i : DivisorTable.getDivisors(m)) {
+				BigInteger c_i = getCoefficient(a, i, central);
+				if (c_i.signum()==0) continue;
+				int j = m/i;
+				BigInteger weight = c_i.pow(j).multiply(BigInteger.valueOf(i));
+				// T[n-m,k-j] is non-zero only for j<k<=n-m+j, or k=j if m=n
+				int kMin = m==n ? j : j+1;
+				int kMax = m==n ? j : n-m+j;
+				for (int k=kMin; k<=kMax; k++) {
+					BigInteger t = getEntry(triangle, n-m, k-j);
+					if (t.signum()==0) continue;
+					nthRow.set(k-1, nthRow.get(k-1).add(weight.multiply(t)));
+				}
 			}
-			int partIndex = p.totalCount()-1;
-			BigInteger entry = nthRow.get(partIndex);
-			//LOG.debug("entry before: " + entry);
-			nthRow.set(partIndex, entry.add(summand));
-			//LOG.debug("entry afterwards: " + entry + "+" + summand + " = " + nthRow.get(partIndex));
-			//LOG.debug("nthRow after adding partition " + p +" :\n" + nthRow);
+		}
+		BigInteger nBig = BigInteger.valueOf(n);
+		for (int k=1; k<=n; k++) {
+			// the division is exact
+			nthRow.set(k-1, nthRow.get(k-1).divide(nBig));
 		}
 		return nthRow;
 	}
+	
+	/**
+	 * @param a
+	 * @param i part
+	 * @param central
+	 * @return c[i] = a[i], except c[1] = 0 if central is true
+	 */
+	private static BigInteger getCoefficient(List<BigInteger> a, int i, boolean central) {
+		return (central && i==1) ? I_0 : a.get(i-1);
+	}
+	
+	/**
+	 * @param triangle
+	 * @param n
+	 * @param k
+	 * @return T[n,k] including the row 0 and the column 0
+	 */
+	private static BigInteger getEntry(BigIntTriangle triangle, int n, int k) {
+		if (n==0) return k==0 ? I_1 : I_0;
+		if (k<1 || k>n) return I_0;
+		return triangle.get(n, k);
+	}
 }
@@ -15,8 +15,6 @@ package de.tilman_neumann.iss.transform;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import org.apache.log4j.Logger;
 import java.math.BigInteger;
@@ -27,16 +25,12 @@ import de.tilman_neumann.iss.sequence.SequenceValues_BigIntListImpl;
 import de.tilman_neumann.iss.sequence.SequenceValues_UnsignedIndexListImpl;
 import de.tilman_neumann.jml.base.BigIntTriangle;
 import de.tilman_neumann.jml.combinatorics.Factorial;
-import de.tilman_neumann.jml.partitions.IntegerPartition;
-import de.tilman_neumann.jml.partitions.IntegerPartitionGenerator;
-
-import static de.tilman_neumann.jml.base.BigIntConstants.*;
 
 /**
  * Implementation of inverse partition transforms.
  * 
- * This is a sample application of the partitions generator, but
- * interesting of its own account.
+ * This started as a sample application of the partitions generator, but
+ * is interesting of its own account.
  * 
  * Method partitionsTransform(..) creates number triangles from integer sequences.
  * Many of these triangles and the sequences of their row sums play important
@@ -45,6 +39,9 @@ import static de.tilman_neumann.jml.base.BigIntConstants.*;
  * Note that it would also make sense to apply the partitions transform to
  * arbitrary numbers, not just integers.
  * 
+ * T[n,k] is (-1)^(k-1) * (k-1)! times the entry of the forward partition transform triangle,
+ * so the rows are computed from the forward rows given by the recurrences of PartitionTransformation.
+ * 
  * @author Tilman Neumann
  */
 public class PartitionTransformation_Inverse extends Transformation {
@@ -84,10 +81,11 @@ public class PartitionTransformation_Inverse extends Transformation {
 		int numberOfInputValues = Math.min(inputSeq.size(), maxNumberOfInputValues);
 		List<BigInteger> a = inputSeq.getValues().subList(0, numberOfInputValues);
 		
+		BigIntTriangle forwardTriangle = new BigIntTriangle();
 		BigIntTriangle triangle = new BigIntTriangle();
 		for (int n=0; n<numberOfInputValues; n++) {
 			// compute transform for n.th row
-			triangle.addRow(computeNthRow(n+1, a));
+			triangle.addRow(computeNthRow(n+1, a, forwardTriangle));
 			//LOG.debug("Triangle after " + n + " rows:\n" + triangle);
 		}
 		List<BigInteger> b = triangle.getRowSums();
@@ -115,9 +113,14 @@ public class PartitionTransformation_Inverse extends Transformation {
 			throw cce;
 		}
 		BigIntTriangle triangle = oldTriangleTransform.getTriangle();
+		// the recurrences need the old rows of the forward triangle, too
+		BigIntTriangle forwardTriangle = new BigIntTriangle();
+		for (int n=0; n<oldNumberOfInputValues; n++) {
+			forwardTriangle.addRow(PartitionTransformation.computeNthRow(n+1, a, weighted, central, forwardTriangle));
+		}
 		for (int n=oldNumberOfInputValues; n<numberOfInputValues; n++) {
 			 // triangle indices start with 1
-			triangle.addRow(computeNthRow(n+1, a));
+			triangle.addRow(computeNthRow(n+1, a, forwardTriangle));
 			b.add(triangle.getRowSum(n+1));
 		}
 		
@@ -147,10 +150,11 @@ public class PartitionTransformation_Inverse extends Transformation {
 	public BigIntTriangle computeTriangle(List<BigInteger> a) {
 		if (a==null) return null;
 		int numberOfInputValues = a.size();
+		BigIntTriangle forwardTriangle = new BigIntTriangle();
 		BigIntTriangle triangle = new BigIntTriangle();
 		for (int n=0; n<numberOfInputValues; n++) {
 			// compute transform for n.th row
-			triangle.addRow(computeNthRow(n+1, a));
+			triangle.addRow(computeNthRow(n+1, a, forwardTriangle));
 			//LOG.debug("Triangle after " + n + " rows:\n" + triangle);
 		}
 		return triangle;
@@ -158,50 +162,22 @@ public class PartitionTransformation_Inverse extends Transformation {
 	
 	/**
 	 * Compute n.th row of the triangle, with the first row having index 1.
+	 * Adds the n.th row of the forward triangle to <code>forwardTriangle</code>.
+	 * 
 	 * @param n
 	 * @param a
-	 * @param t triangle
+	 * @param forwardTriangle the forward triangle containing the rows 1, ..., n-1
+	 * @return n.th row of the inverse triangle
 	 */
-	private ArrayList<BigInteger> computeNthRow(int n, List<BigInteger> a) {
-		// create zero-initialized row
-		ArrayList<BigInteger> nthRow = new ArrayList<BigInteger>(n);
-		for (int j=0; j<n; j++) {
-			nthRow.add(I_0);
-		}
+	private ArrayList<BigInteger> computeNthRow(int n, List<BigInteger> a, BigIntTriangle forwardTriangle) {
+		ArrayList<BigInteger> forwardRow = PartitionTransformation.computeNthRow(n, a, weighted, central, forwardTriangle);
+		forwardTriangle.addRow(forwardRow);
 		
-		IntegerPartitionGenerator pg = new IntegerPartitionGenerator(n);
-		while (pg.hasNext()) {
-			IntegerPartition p = new IntegerPartition(pg.next());
-			if (central) {
-				Set<Integer> parts = p.keySet();
-				if (parts.contains(Integer.valueOf(1))) {
-					// partition contains primary part, thus it is not added to T[n,k]
-					continue; // next partition
-				}
-			}
-			BigInteger summand = weighted ? p.getNumberOfRealizations() : I_1;
-			//LOG.debug("partition of " + n + ": " + p + ", realizations=" + summand);
-			for (Map.Entry<Integer, Integer> partAndPower : p.entrySet()) {
-				int part = partAndPower.getKey().intValue();
-				int power = partAndPower.getValue().intValue();
-				BigInteger xval = a.get(part-1);
-				BigInteger elem = xval.pow(power);
-				//LOG.debug("a["+part+"]^"+power + " = " + elem);
-				summand = summand.multiply(elem);
-			}
-
-			int partIndex = p.totalCount()-1;
-			if (partIndex%2 != 0) {
-				// sign is (-1)^(k-1)
-				summand = summand.negate();
-			}
-			summand = summand.multiply(Factorial.factorial(partIndex));
-			
-			BigInteger entry = nthRow.get(partIndex);
-			//LOG.debug("entry before: " + entry);
-			nthRow.set(partIndex, entry.add(summand));
-			//LOG.debug("entry afterwards: " + entry + "+" + summand + " = " + nthRow.get(partIndex));
-			//LOG.debug("nthRow after adding partition " + p +" :\n" + nthRow);
+		ArrayList<BigInteger> nthRow = new ArrayList<BigInteger>(n);
+		for (int partIndex=0; partIndex<n; partIndex++) {
+			BigInteger entry = forwardRow.get(partIndex).multiply(Factorial.factorial(partIndex));
+			// sign is (-1)^(k-1)
+			nthRow.add(partIndex%2 != 0 ? entry.negate() : entry);
 		}
 		return nthRow;
 	}
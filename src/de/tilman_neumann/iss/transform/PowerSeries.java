@@ -0,0 +1,444 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.transform;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable truncated power series f(x) = sum_{n&lt;precision} f_n x^n with BigInteger coefficients.
+ * 
+ * Products of long series are computed by Kronecker substitution: Both factors are packed into one big integer each,
+ * with enough bits per coefficient, so that a single BigInteger multiplication computes all coefficients of the product.
+ * Since BigInteger uses Karatsuba and Toom-Cook multiplication for big numbers, this is sub-quadratic in the precision.
+ * 
+ * Logarithm and exponential are computed in the form of the logarithmic derivative x*f'/f = x*d/dx log(f),
+ * whose coefficients n*[x^n]log(f) stay integers if f_0 = 1.
+ * 
+ * @author Tilman Neumann
+ */
+public final class PowerSeries {
+
+	/** products of series with less coefficients are computed by schoolbook multiplication */
+	private static final int KRONECKER_THRESHOLD = 32;
+	
+	/**
+	 * Kronecker substitution needs at least that many coefficients per 32 bit word of the average coefficient size to be faster
+	 * than schoolbook multiplication, because the packed coefficients are about twice as big as the factor coefficients.
+	 */
+	private static final int KRONECKER_MIN_COEFFICIENTS_PER_WORD = 12;
+	
+	/** index ranges of at most that size are solved coefficient by coefficient in logarithmicDerivative() and fromLogarithmicDerivative() */
+	private static final int RELAXED_BASE_SIZE = 32;
+	
+	private static final BigInteger I_2 = BigInteger.valueOf(2);
+	
+	private final BigInteger[] coefficients;
+	
+	/**
+	 * Constructor for the series sum_{n&lt;coefficients.size()} coefficients.get(n) x^n.
+	 * @param coefficients
+	 */
+	public PowerSeries(List<BigInteger> coefficients) {
+		this.coefficients = coefficients.toArray(new BigInteger[coefficients.size()]);
+	}
+	
+	/**
+	 * Constructor for the series f_0 + sum_{n&gt;=1} values.get(n-1) x^n,
+	 * i.e. the generating function of a sequence whose first value is a_1, with the given constant coefficient.
+	 * 
+	 * @param constantCoefficient f_0
+	 * @param values f_1, f_2, ...
+	 */
+	public PowerSeries(BigInteger constantCoefficient, List<BigInteger> values) {
+		int size = values.size();
+		this.coefficients = new BigInteger[size+1];
+		this.coefficients[0] = constantCoefficient;
+		for (int n=1; n<=size; n++) {
+			this.coefficients[n] = values.get(n-1);
+		}
+	}
+	
+	private PowerSeries(BigInteger[] coefficients) {
+		this.coefficients = coefficients;
+	}
+	
+	/**
+	 * @return the number of known coefficients
+	 */
+	public int precision() {
+		return coefficients.length;
+	}
+	
+	/**
+	 * @param n
+	 * @return f_n
+	 */
+	public BigInteger get(int n) {
+		return coefficients[n];
+	}
+	
+	/**
+	 * @param from
+	 * @param to
+	 * @return the coefficients f_from, ..., f_{to-1}
+	 */
+	public ArrayList<BigInteger> getCoefficients(int from, int to) {
+		ArrayList<BigInteger> list = new ArrayList<BigInteger>(to-from);
+		for (int n=from; n<to; n++) {
+			list.add(coefficients[n]);
+		}
+		return list;
+	}
+	
+	/**
+	 * @param other
+	 * @return this*other, with the smaller precision of both
+	 */
+	public PowerSeries multiply(PowerSeries other) {
+		int precision = Math.min(this.precision(), other.precision());
+		return new PowerSeries(multiply(this.coefficients, other.coefficients, precision));
+	}
+	
+	/**
+	 * Computes 1/f by Newton iteration g &lt;- g*(2 - f*g), which doubles the number of correct coefficients in each step.
+	 * @return 1/f
+	 * @throws ArithmeticException if f_0 is not 1 or -1, so that 1/f would not have integer coefficients
+	 */
+	public PowerSeries reciprocal() {
+		int precision = coefficients.length;
+		if (precision == 0) return this;
+		BigInteger f_0 = coefficients[0];
+		if (f_0.abs().compareTo(BigInteger.ONE) != 0) throw new ArithmeticException("1/f has no integer coefficients for f_0 = " + f_0);
+		
+		BigInteger[] g = new BigInteger[] {f_0}; // 1/f_0 = f_0
+		for (int correct=1; correct<precision; ) {
+			int newCorrect = Math.min(2*correct, precision);
+			BigInteger[] e = multiply(coefficients, g, newCorrect);
+			for (int n=0; n<newCorrect; n++) {
+				e[n] = e[n].negate();
+			}
+			e[0] = e[0].add(I_2);
+			g = multiply(g, e, newCorrect);
+			correct = newCorrect;
+		}
+		return new PowerSeries(g);
+	}
+	
+	/**
+	 * Computes the logarithmic derivative c = x*f'/f, i.e. the series with c_0 = 0 and n*f_n = sum_{k=1..n} c_k*f_{n-k}.
+	 * For f_0 = 1 this is c_n = n*[x^n]log(f).
+	 * 
+	 * The recurrence is solved by the same divide-and-conquer scheme as in fromLogarithmicDerivative(), with the roles of f and c exchanged.
+	 * 
+	 * @return x*f'/f
+	 * @throws ArithmeticException if f_0 is not 1 or -1, so that the result would not have integer coefficients
+	 */
+	public PowerSeries logarithmicDerivative() {
+		int precision = coefficients.length;
+		if (precision == 0) return this;
+		BigInteger f_0 = coefficients[0];
+		if (f_0.abs().compareTo(BigInteger.ONE) != 0) throw new ArithmeticException("x*f'/f has no integer coefficients for f_0 = " + f_0);
+		
+		BigInteger[] c = new BigInteger[precision];
+		c[0] = BigInteger.ZERO;
+		BigInteger[] sums = new BigInteger[precision];
+		Arrays.fill(sums, BigInteger.ZERO);
+		solve(c, sums, coefficients, 1, precision, false);
+		return new PowerSeries(c);
+	}
+	
+	/**
+	 * Inverse of logarithmicDerivative(): Computes the series f with f_0 = 1 and x*f'/f = c, i.e. n*f_n = sum_{k=1..n} c_k*f_{n-k}.
+	 * This is f = exp(sum_{n&gt;=1} c_n x^n / n). c_0 is ignored.
+	 * 
+	 * If some division by n is not exact, then it is truncated towards zero like BigInteger.divide(),
+	 * and the following coefficients are computed from the truncated one.
+	 * 
+	 * The solution is computed by an online ("relaxed") divide-and-conquer scheme: Once the coefficients of the left
+	 * half of an index range are known, their contributions to the right half are added by one series multiplication.
+	 * This needs O(M(n) log n) operations, where M(n) is the cost of a multiplication.
+	 * 
+	 * @param c
+	 * @param knownPrefix known first coefficients of f, starting with f_0 = 1, e.g. from a previous computation with less precision; may be null
+	 * @return f, with the precision of c
+	 */
+	public static PowerSeries fromLogarithmicDerivative(PowerSeries c, PowerSeries knownPrefix) {
+		int precision = c.precision();
+		BigInteger[] f = new BigInteger[precision];
+		if (precision == 0) return new PowerSeries(f);
+		
+		int known;
+		if (knownPrefix != null && knownPrefix.precision() > 0) {
+			known = Math.min(knownPrefix.precision(), precision);
+			System.arraycopy(knownPrefix.coefficients, 0, f, 0, known);
+		} else {
+			f[0] = BigInteger.ONE;
+			known = 1;
+		}
+		if (known == precision) return new PowerSeries(f);
+		
+		BigInteger[] sums = new BigInteger[precision];
+		Arrays.fill(sums, BigInteger.ZERO);
+		addContributions(f, 0, known, c.coefficients, sums, known, precision);
+		solve(f, sums, c.coefficients, known, precision, true);
+		return new PowerSeries(f);
+	}
+	
+	/**
+	 * Solves n*f_n = sum_{k=1..n} c_k*f_{n-k} for the unknown series x at indices lo, ..., hi-1,
+	 * given that sums[n] contains sum_{j&lt;lo} x_j*y_{n-j} for all n in [lo, hi).
+	 * 
+	 * @param x the unknown series: f if exponential, else c
+	 * @param sums
+	 * @param y the known series: c if exponential, else f
+	 * @param lo
+	 * @param hi
+	 * @param exponential true if f is computed from c, false if c is computed from f
+	 */
+	private static void solve(BigInteger[] x, BigInteger[] sums, BigInteger[] y, int lo, int hi, boolean exponential) {
+		if (hi - lo <= RELAXED_BASE_SIZE) {
+			for (int n=lo; n<hi; n++) {
+				BigInteger sum = sums[n];
+				for (int j=lo; j<n; j++) {
+					sum = sum.add(x[j].multiply(y[n-j]));
+				}
+				if (exponential) {
+					x[n] = sum.divide(BigInteger.valueOf(n));
+				} else {
+					// c_n = (n*f_n - sum_{k=1..n-1} c_k*f_{n-k}) / f_0, where 1/f_0 = f_0
+					BigInteger c_n = y[n].multiply(BigInteger.valueOf(n)).subtract(sum);
+					x[n] = y[0].signum() < 0 ? c_n.negate() : c_n;
+				}
+			}
+			return;
+		}
+		
+		int mid = (lo + hi) >>> 1;
+		solve(x, sums, y, lo, mid, exponential);
+		addContributions(x, lo, mid, y, sums, mid, hi);
+		solve(x, sums, y, mid, hi, exponential);
+	}
+	
+	/**
+	 * Adds sum_{j=lo..mid-1} f_j*c_{n-j} to sums[n] for all n in [from, to), where from &gt;= mid, so that c_0 is never needed.
+	 * 
+	 * @param f
+	 * @param lo
+	 * @param mid
+	 * @param c
+	 * @param sums
+	 * @param from
+	 * @param to
+	 */
+	private static void addContributions(BigInteger[] f, int lo, int mid, BigInteger[] c, BigInteger[] sums, int from, int to) {
+		int fLength = mid - lo;
+		int cLength = to - lo;
+		if (fLength >= KRONECKER_THRESHOLD) {
+			BigInteger[] fPart = Arrays.copyOfRange(f, lo, mid);
+			int fBits = maxBitLength(fPart, fLength);
+			int cBits = maxBitLength(c, cLength);
+			if (isKroneckerFaster(fPart, fLength, fBits, c, cLength, cBits)) {
+				BigInteger[] product = multiplyKronecker(fPart, fLength, fBits, c, cLength, cBits, cLength);
+				for (int n=from; n<to; n++) {
+					sums[n] = sums[n].add(product[n-lo]);
+				}
+				return;
+			}
+		}
+		// a full schoolbook product would compute many coefficients that are not needed here
+		for (int n=from; n<to; n++) {
+			BigInteger sum = sums[n];
+			for (int j=lo; j<mid; j++) {
+				sum = sum.add(f[j].multiply(c[n-j]));
+			}
+			sums[n] = sum;
+		}
+	}
+	
+	/**
+	 * @param x
+	 * @param y
+	 * @param precision
+	 * @return the first precision coefficients of x*y
+	 */
+	static BigInteger[] multiply(BigInteger[] x, BigInteger[] y, int precision) {
+		int xLength = Math.min(x.length, precision);
+		int yLength = Math.min(y.length, precision);
+		if (Math.min(xLength, yLength) >= KRONECKER_THRESHOLD) {
+			int xBits = maxBitLength(x, xLength);
+			int yBits = maxBitLength(y, yLength);
+			if (isKroneckerFaster(x, xLength, xBits, y, yLength, yBits)) {
+				return multiplyKronecker(x, xLength, xBits, y, yLength, yBits, precision);
+			}
+		}
+		return multiplySchoolbook(x, xLength, y, yLength, precision);
+	}
+	
+	/**
+	 * Kronecker substitution reserves xBits + yBits bits for each coefficient, while the cost of schoolbook multiplication
+	 * depends on the actual coefficient sizes. Thus coefficients of very different size, like those of 2^n, favor schoolbook multiplication.
+	 * 
+	 * @param x
+	 * @param xLength
+	 * @param xBits maximum bit length of the first xLength coefficients of x
+	 * @param y
+	 * @param yLength
+	 * @param yBits maximum bit length of the first yLength coefficients of y
+	 * @return true if the product of the given series is computed faster by Kronecker substitution
+	 */
+	private static boolean isKroneckerFaster(BigInteger[] x, int xLength, int xBits, BigInteger[] y, int yLength, int yBits) {
+		int minLength = Math.min(xLength, yLength);
+		if (minLength < KRONECKER_THRESHOLD || xBits == 0 || yBits == 0) return false;
+		// ratio of the average to the maximum coefficient size in both factors
+		double fillRatio = (double) bitLengthSum(x, xLength) * bitLengthSum(y, yLength) / ((double) xLength * xBits * yLength * yBits);
+		int averageWords = (xBits + yBits + 63) >> 6;
+		return minLength * fillRatio >= KRONECKER_MIN_COEFFICIENTS_PER_WORD * averageWords;
+	}
+	
+	private static BigInteger[] multiplySchoolbook(BigInteger[] x, int xLength, BigInteger[] y, int yLength, int precision) {
+		BigInteger[] product = new BigInteger[precision];
+		Arrays.fill(product, BigInteger.ZERO);
+		if (x == y && xLength == yLength) {
+			// squaring: sum up the products x_i*x_j with i<j only once
+			for (int i=0; i<xLength; i++) {
+				BigInteger x_i = x[i];
+				if (x_i.signum() == 0) continue;
+				int jMax = Math.min(xLength, precision-i);
+				for (int j=i+1; j<jMax; j++) {
+					product[i+j] = product[i+j].add(x_i.multiply(x[j]));
+				}
+			}
+			for (int n=0; n<precision; n++) {
+				product[n] = product[n].shiftLeft(1);
+				if ((n & 1) == 0 && (n>>1) < xLength) {
+					BigInteger x_i = x[n>>1];
+					product[n] = product[n].add(x_i.multiply(x_i));
+				}
+			}
+			return product;
+		}
+		for (int i=0; i<xLength; i++) {
+			BigInteger x_i = x[i];
+			if (x_i.signum() == 0) continue;
+			int jMax = Math.min(yLength, precision-i);
+			for (int j=0; j<jMax; j++) {
+				product[i+j] = product[i+j].add(x_i.multiply(y[j]));
+			}
+		}
+		return product;
+	}
+	
+	private static BigInteger[] multiplyKronecker(BigInteger[] x, int xLength, int xBits, BigInteger[] y, int yLength, int yBits, int precision) {
+		// each product coefficient is a sum of at most min(xLength, yLength) products with absolute values < 2^(xBits+yBits);
+		// one more bit is needed for the sign
+		int minLength = Math.min(xLength, yLength);
+		int bits = xBits + yBits + (32 - Integer.numberOfLeadingZeros(minLength)) + 1;
+		int bytesPerCoefficient = (bits + 7) >> 3;
+		BigInteger xPacked = pack(x, xLength, bytesPerCoefficient);
+		// BigInteger.multiply() squares if both arguments are the same object
+		BigInteger yPacked = (x == y && xLength == yLength) ? xPacked : pack(y, yLength, bytesPerCoefficient);
+		return unpack(xPacked.multiply(yPacked), precision, bytesPerCoefficient);
+	}
+	
+	/**
+	 * @param x
+	 * @param length
+	 * @return a bound b such that |x_i| &lt; 2^b for all i &lt; length
+	 */
+	private static int maxBitLength(BigInteger[] x, int length) {
+		int max = 0;
+		for (int i=0; i<length; i++) {
+			// bitLength() of -2^k is k
+			int bits = x[i].signum() < 0 ? x[i].bitLength() + 1 : x[i].bitLength();
+			if (bits > max) max = bits;
+		}
+		return max;
+	}
+	
+	private static long bitLengthSum(BigInteger[] x, int length) {
+		long sum = 0;
+		for (int i=0; i<length; i++) {
+			sum += x[i].bitLength();
+		}
+		return sum;
+	}
+	
+	/**
+	 * Packs x_0, ..., x_{length-1} into the big integer sum x_i 2^(8*i*bytesPerCoefficient).
+	 * Negative coefficients borrow from the next one, like in a subtraction by hand.
+	 * 
+	 * @param x
+	 * @param length
+	 * @param bytesPerCoefficient such that |x_i| &lt; 2^(8*bytesPerCoefficient-1)
+	 * @return packed value
+	 */
+	private static BigInteger pack(BigInteger[] x, int length, int bytesPerCoefficient) {
+		// big-endian two's complement representation, with one more byte for the sign
+		byte[] bytes = new byte[length*bytesPerCoefficient + 1];
+		BigInteger base = BigInteger.ONE.shiftLeft(8*bytesPerCoefficient);
+		boolean borrow = false;
+		for (int i=0; i<length; i++) {
+			BigInteger digit = borrow ? x[i].subtract(BigInteger.ONE) : x[i];
+			borrow = digit.signum() < 0;
+			if (borrow) digit = digit.add(base);
+			// 0 <= digit < base; toByteArray() may add a leading zero byte
+			byte[] digitBytes = digit.toByteArray();
+			int count = Math.min(digitBytes.length, bytesPerCoefficient);
+			int end = bytes.length - i*bytesPerCoefficient;
+			System.arraycopy(digitBytes, digitBytes.length - count, bytes, end - count, count);
+		}
+		if (borrow) bytes[0] = -1;
+		return new BigInteger(bytes);
+	}
+	
+	/**
+	 * Inverse of pack().
+	 * 
+	 * @param value
+	 * @param length
+	 * @param bytesPerCoefficient such that the absolute values of all coefficients are &lt; 2^(8*bytesPerCoefficient-1)
+	 * @return the first length coefficients
+	 */
+	private static BigInteger[] unpack(BigInteger value, int length, int bytesPerCoefficient) {
+		byte[] bytes = value.toByteArray();
+		byte signByte = (byte) (value.signum() < 0 ? -1 : 0);
+		BigInteger base = BigInteger.ONE.shiftLeft(8*bytesPerCoefficient);
+		BigInteger halfBase = BigInteger.ONE.shiftLeft(8*bytesPerCoefficient - 1);
+		
+		BigInteger[] x = new BigInteger[length];
+		byte[] digitBytes = new byte[bytesPerCoefficient];
+		boolean carry = false;
+		for (int i=0; i<length; i++) {
+			int start = bytes.length - (i+1)*bytesPerCoefficient;
+			for (int j=0; j<bytesPerCoefficient; j++) {
+				int pos = start + j;
+				digitBytes[j] = pos >= 0 ? bytes[pos] : signByte;
+			}
+			BigInteger digit = new BigInteger(1, digitBytes);
+			if (carry) digit = digit.add(BigInteger.ONE);
+			// digits >= base/2 stand for negative coefficients, that have borrowed from the next digit
+			carry = digit.compareTo(halfBase) >= 0;
+			x[i] = carry ? digit.subtract(base) : digit;
+		}
+		return x;
+	}
+	
+	@Override
+	public String toString() {
+		return Arrays.toString(coefficients) + " + O(x^" + coefficients.length + ")";
+	}
+}
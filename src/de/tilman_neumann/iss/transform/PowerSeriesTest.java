@@ -0,0 +1,180 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.transform;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tilman_neumann.util.ConfigUtil;
+
+/**
+ * Test of the power series arithmetic against the naive quadratic algorithms.
+ * The precisions are chosen such that both schoolbook and Kronecker multiplication
+ * and the divide-and-conquer recursion of fromLogarithmicDerivative() are used.
+ * 
+ * @author Tilman Neumann
+ */
+public class PowerSeriesTest {
+	private static final Logger LOG = Logger.getLogger(PowerSeriesTest.class);
+
+	private static final int[] PRECISIONS = new int[] {1, 2, 10, 31, 32, 33, 100, 300};
+	
+	private Random rng;
+	
+	@Before
+	public void setup() {
+		ConfigUtil.initProject();
+		rng = new Random(43);
+	}
+
+	@Test
+	public void testMultiply() {
+		for (int precision : PRECISIONS) {
+			for (int bits : new int[] {4, 64, 500}) {
+				List<BigInteger> x = randomCoefficients(precision, bits);
+				List<BigInteger> y = randomCoefficients(precision + 5, bits);
+				List<BigInteger> product = new PowerSeries(x).multiply(new PowerSeries(y)).getCoefficients(0, precision);
+				assertEquals(naiveMultiply(x, y, precision), product);
+			}
+		}
+		// coefficients of very different size, like those of 2^n
+		List<BigInteger> powers = new ArrayList<BigInteger>();
+		for (int n=0; n<300; n++) {
+			powers.add(BigInteger.ONE.shiftLeft(n));
+		}
+		List<BigInteger> x = randomCoefficients(300, 10);
+		assertEquals(naiveMultiply(x, powers, 300), new PowerSeries(x).multiply(new PowerSeries(powers)).getCoefficients(0, 300));
+	}
+	
+	@Test
+	public void testReciprocal() {
+		for (int precision : PRECISIONS) {
+			for (BigInteger f_0 : new BigInteger[] {BigInteger.ONE, BigInteger.ONE.negate()}) {
+				List<BigInteger> f = randomCoefficients(precision, 30);
+				f.set(0, f_0);
+				PowerSeries reciprocal = new PowerSeries(f).reciprocal();
+				assertEquals(naiveReciprocal(f), reciprocal.getCoefficients(0, precision));
+			}
+		}
+		LOG.info("reciprocal test passed");
+	}
+	
+	@Test(expected = ArithmeticException.class)
+	public void testReciprocalWithoutIntegerCoefficients() {
+		List<BigInteger> f = randomCoefficients(10, 30);
+		f.set(0, BigInteger.valueOf(2));
+		new PowerSeries(f).reciprocal();
+	}
+	
+	@Test
+	public void testFromLogarithmicDerivative() {
+		for (int precision : PRECISIONS) {
+			// random c: most divisions are not exact and get truncated
+			List<BigInteger> c = randomCoefficients(precision, 20);
+			PowerSeries f = PowerSeries.fromLogarithmicDerivative(new PowerSeries(c), null);
+			List<BigInteger> expected = naiveFromLogarithmicDerivative(c);
+			assertEquals(expected, f.getCoefficients(0, precision));
+			
+			// incremental computation from a known prefix
+			int prefixPrecision = precision/3 + 1;
+			PowerSeries prefix = PowerSeries.fromLogarithmicDerivative(new PowerSeries(c.subList(0, prefixPrecision)), null);
+			PowerSeries expanded = PowerSeries.fromLogarithmicDerivative(new PowerSeries(c), prefix);
+			assertEquals(expected, expanded.getCoefficients(0, precision));
+		}
+	}
+	
+	@Test
+	public void testLogarithmicDerivative() {
+		for (int precision : PRECISIONS) {
+			List<BigInteger> f = randomCoefficients(precision, 20);
+			f.set(0, BigInteger.ONE);
+			PowerSeries c = new PowerSeries(f).logarithmicDerivative();
+			assertEquals(naiveLogarithmicDerivative(f), c.getCoefficients(0, precision));
+			// for f_0 = 1 all divisions are exact, so that the inverse gives f again
+			assertEquals(f, PowerSeries.fromLogarithmicDerivative(c, null).getCoefficients(0, precision));
+		}
+	}
+	
+	private List<BigInteger> randomCoefficients(int size, int bits) {
+		List<BigInteger> coefficients = new ArrayList<BigInteger>(size);
+		for (int n=0; n<size; n++) {
+			BigInteger coefficient = new BigInteger(1 + rng.nextInt(bits), rng);
+			coefficients.add(rng.nextBoolean() ? coefficient : coefficient.negate());
+		}
+		return coefficients;
+	}
+	
+	private static List<BigInteger> naiveMultiply(List<BigInteger> x, List<BigInteger> y, int precision) {
+		List<BigInteger> product = new ArrayList<BigInteger>(precision);
+		for (int n=0; n<precision; n++) {
+			BigInteger sum = BigInteger.ZERO;
+			for (int k=0; k<=n; k++) {
+				sum = sum.add(x.get(k).multiply(y.get(n-k)));
+			}
+			product.add(sum);
+		}
+		return product;
+	}
+	
+	/** g_n = -f_0 * sum_{k=1..n} f_k*g_{n-k}, using 1/f_0 = f_0 */
+	private static List<BigInteger> naiveReciprocal(List<BigInteger> f) {
+		List<BigInteger> g = new ArrayList<BigInteger>(f.size());
+		BigInteger f_0 = f.get(0);
+		g.add(f_0);
+		for (int n=1; n<f.size(); n++) {
+			BigInteger sum = BigInteger.ZERO;
+			for (int k=1; k<=n; k++) {
+				sum = sum.add(f.get(k).multiply(g.get(n-k)));
+			}
+			g.add(sum.multiply(f_0).negate());
+		}
+		return g;
+	}
+	
+	/** f_0 = 1, n*f_n = sum_{k=1..n} c_k*f_{n-k} */
+	private static List<BigInteger> naiveFromLogarithmicDerivative(List<BigInteger> c) {
+		List<BigInteger> f = new ArrayList<BigInteger>(c.size());
+		f.add(BigInteger.ONE);
+		for (int n=1; n<c.size(); n++) {
+			BigInteger sum = BigInteger.ZERO;
+			for (int k=1; k<=n; k++) {
+				sum = sum.add(c.get(k).multiply(f.get(n-k)));
+			}
+			f.add(sum.divide(BigInteger.valueOf(n)));
+		}
+		return f;
+	}
+	
+	/** c_0 = 0, c_n = n*f_n - sum_{k=1..n-1} c_k*f_{n-k} for f_0 = 1 */
+	private static List<BigInteger> naiveLogarithmicDerivative(List<BigInteger> f) {
+		List<BigInteger> c = new ArrayList<BigInteger>(f.size());
+		c.add(BigInteger.ZERO);
+		for (int n=1; n<f.size(); n++) {
+			BigInteger sum = BigInteger.ZERO;
+			for (int k=1; k<n; k++) {
+				sum = sum.add(c.get(k).multiply(f.get(n-k)));
+			}
+			c.add(f.get(n).multiply(BigInteger.valueOf(n)).subtract(sum));
+		}
+		return c;
+	}
+}
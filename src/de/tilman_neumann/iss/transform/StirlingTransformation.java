@@ -17,8 +17,6 @@ import java.util.List;
 
 import org.apache.log4j.Logger;
 
-import de.tilman_neumann.jml.combinatorics.Stirling;
-
 import java.math.BigInteger;
 
 /**
@@ -38,11 +36,26 @@ public class StirlingTransformation extends Transformation_SimpleImpl {
 	BigInteger computeNthValue(int n, List<BigInteger> a, List<BigInteger> b) {
 		BigInteger b_n = BigInteger.ZERO;
 		for (int k=0; k<=n; k++) {
-			BigInteger stirling2 = Stirling.stirling2(n, k);
+			BigInteger stirling2 = CoefficientTriangle.STIRLING2.get(n, k);
 			//LOG.debug("stirling2(" + n + ", " + k + ") = " + stirling2);
 			BigInteger elem = a.get(k).multiply(stirling2);
 			b_n = b_n.add(elem);
 		}
 		return b_n;
 	}
+
+	@Override
+	boolean hasLongArithmetic() {
+		return true;
+	}
+
+	@Override
+	long computeNthLongValue(int n, long[] a) {
+		long b_n = 0;
+		for (int k=0; k<=n; k++) {
+			long stirling2 = CoefficientTriangle.STIRLING2.getLong(n, k);
+			b_n = Math.addExact(b_n, Math.multiplyExact(a[k], stirling2));
+		}
+		return b_n;
+	}
 }
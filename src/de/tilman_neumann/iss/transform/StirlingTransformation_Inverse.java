@@ -17,8 +17,6 @@ import java.util.List;
 
 import org.apache.log4j.Logger;
 
-import de.tilman_neumann.jml.combinatorics.Stirling;
-
 import java.math.BigInteger;
 
 /**
@@ -39,11 +37,26 @@ public class StirlingTransformation_Inverse extends Transformation_SimpleImpl {
 		BigInteger b_n = BigInteger.ZERO;
 		for (int k=0; k<=n; k++) {
 			// Get signed Stirling numbers of first kind:
-			BigInteger stirling1 = Stirling.stirling1(n, k);
+			BigInteger stirling1 = CoefficientTriangle.STIRLING1.get(n, k);
 			//LOG.debug("stirling1(" + n + ", " + k + ") = " + stirling1);
 			BigInteger elem = a.get(k).multiply(stirling1);
 			b_n = b_n.add(elem);
 		}
 		return b_n;
 	}
+
+	@Override
+	boolean hasLongArithmetic() {
+		return true;
+	}
+
+	@Override
+	long computeNthLongValue(int n, long[] a) {
+		long b_n = 0;
+		for (int k=0; k<=n; k++) {
+			long stirling1 = CoefficientTriangle.STIRLING1.getLong(n, k);
+			b_n = Math.addExact(b_n, Math.multiplyExact(a[k], stirling1));
+		}
+		return b_n;
+	}
 }
@@ -74,6 +74,19 @@ public class Transform extends OEISSequence {
 	 */
 	public Transform expand(int wantedNumberOfInputValues) throws TransformationException {
 		// first expand input sequence if necessary and possible
+		expandInputSequence(wantedNumberOfInputValues);
+		
+		// now expand the given sequence
+		return transformation.expand(this, wantedNumberOfInputValues);
+	}
+	
+	/**
+	 * Expands the input sequence of this transform, if it is a transform itself.
+	 * 
+	 * @param wantedNumberOfInputValues
+	 * @throws TransformationException if the input transform could not be computed
+	 */
+	protected void expandInputSequence(int wantedNumberOfInputValues) throws TransformationException {
 		OEISSequence inputSeq = getInputSequence();
 		if (wantedNumberOfInputValues>inputSeq.size()) {
 			// input sequence needs expansion
@@ -88,8 +101,5 @@ public class Transform extends OEISSequence {
 				setInputSequence(expandedInputTransform);
 			}
 		}
-		
-		// now expand the given sequence
-		return transformation.expand(this, wantedNumberOfInputValues);
 	}
 }
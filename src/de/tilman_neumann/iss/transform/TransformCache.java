@@ -0,0 +1,321 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.iss.transform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import de.tilman_neumann.iss.sequence.OEISSequence;
+import de.tilman_neumann.iss.sequence.SequenceValues;
+import de.tilman_neumann.iss.sequence.SequenceValues_BigIntListImpl;
+import de.tilman_neumann.iss.sequence.SequenceValues_UnsignedIndexListImpl;
+
+/**
+ * Disk cache of computed transforms, such that repeated lookups of the same sequence do not need to compute
+ * the expensive complex transforms again.
+ * 
+ * Each entry is a file in the cache directory. It is identified by the transform chain name
+ * <code>transformation.getName(inputSeq.getName())</code> together with the input values the transform
+ * has been computed from, so entries of sequences with the same name but different values never get mixed up.
+ * An entry stores the values of the transform, or the message of the TransformationException if the transform
+ * could not be computed.
+ * 
+ * Entries are written to temporary files first and then renamed, so concurrent workers and interrupted writes
+ * never leave broken entries. Cache errors are logged but never fail a transform computation.
+ * 
+ * The size of the cache is bounded by cleanUp(), which deletes the least recently used entries exceeding
+ * the maximum number of entries. Entries are not invalidated when the implementation of a transformation changes:
+ * Then the cache directory must be deleted, or VERSION increased, otherwise old results are returned.
+ * 
+ * @author Tilman Neumann
+ */
+public class TransformCache {
+	
+	private static final Logger LOG = Logger.getLogger(TransformCache.class);
+
+	private static final int MAGIC = 0x49535354; // "ISST"
+	/** must be increased whenever a transformation changes its results, to make old entries invalid */
+	private static final int VERSION = 1;
+	
+	private static final String ENTRY_SUFFIX = ".transform";
+	private static final String TMP_SUFFIX = ".tmp";
+	/** temporary files older than this have been left by interrupted writes */
+	private static final long TMP_FILE_MAX_AGE_MILLIS = 24L*60*60*1000;
+
+	private static final byte STATUS_COMPUTED = 0;
+	private static final byte STATUS_FAILED = 1;
+	
+	private static volatile TransformCache defaultCache = null;
+
+	private final File directory;
+	private final int maxNumberOfEntries;
+	
+	/**
+	 * Constructor.
+	 * @param directory the cache directory; it is created when the first entry is written
+	 * @param maxNumberOfEntries the number of entries kept by cleanUp()
+	 */
+	public TransformCache(File directory, int maxNumberOfEntries) {
+		if (maxNumberOfEntries < 0) throw new IllegalArgumentException("maxNumberOfEntries = " + maxNumberOfEntries + " < 0");
+		this.directory = directory;
+		this.maxNumberOfEntries = maxNumberOfEntries;
+	}
+	
+	/**
+	 * @return the cache used by the transform computations of lookups, or null if there is none
+	 */
+	public static TransformCache getDefault() {
+		return defaultCache;
+	}
+	
+	/**
+	 * Sets the cache used by the transform computations of lookups.
+	 * @param cache the cache, or null to switch caching off
+	 */
+	public static void setDefault(TransformCache cache) {
+		defaultCache = cache;
+	}
+	
+	/**
+	 * Deletes the least recently used entries exceeding the maximum number of entries,
+	 * and temporary files left by interrupted writes.
+	 */
+	public void cleanUp() {
+		File[] files = directory.listFiles();
+		if (files == null) return; // no entries written yet
+		
+		long now = System.currentTimeMillis();
+		List<File> entryFiles = new ArrayList<File>();
+		int deletedCount = 0;
+		for (File file : files) {
+			String name = file.getName();
+			if (name.endsWith(ENTRY_SUFFIX)) {
+				entryFiles.add(file);
+			} else if (name.endsWith(TMP_SUFFIX) && now - file.lastModified() > TMP_FILE_MAX_AGE_MILLIS) {
+				if (file.delete()) deletedCount++;
+			}
+		}
+		int entryCount = entryFiles.size();
+		if (entryCount > maxNumberOfEntries) {
+			// read entries get a new modification time, so the oldest ones are the least recently used
+			final Map<File, Long> lastModified = new HashMap<File, Long>();
+			for (File entryFile : entryFiles) {
+				lastModified.put(entryFile, entryFile.lastModified());
+			}
+			Collections.sort(entryFiles, new Comparator<File>() {
+				public int compare(File f1, File f2) {
+					return lastModified.get(f1).compareTo(lastModified.get(f2));
+				}
+			});
+			for (int i=0; i<entryCount-maxNumberOfEntries; i++) {
+				if (entryFiles.get(i).delete()) deletedCount++;
+			}
+		}
+		LOG.info("transform cache " + directory + ": found " + entryCount + " entries, deleted " + deletedCount + " files");
+	}
+	
+	/**
+	 * Returns the transform of up to maxNumberOfInputValues of the given input sequence from the cache,
+	 * or computes it and stores it in the cache if it is not there yet.
+	 * 
+	 * @param transformation
+	 * @param inputSeq
+	 * @param maxNumberOfInputValues
+	 * @param forLookup
+	 * @return transform
+	 * @throws TransformationException if the transform could not be computed
+	 */
+	public Transform compute(Transformation transformation, OEISSequence inputSeq, int maxNumberOfInputValues, boolean forLookup) throws TransformationException {
+		String chainName = transformation.getName(inputSeq.getName());
+		int numberOfInputValues = Math.min(inputSeq.size(), maxNumberOfInputValues);
+		File entryFile = getEntryFile(chainName, inputSeq, numberOfInputValues);
+		
+		Transform transform = read(entryFile, chainName, transformation, inputSeq, forLookup);
+		if (transform != null) return transform;
+		
+		try {
+			transform = transformation.compute(inputSeq, maxNumberOfInputValues, forLookup);
+		} catch (TransformationException e) {
+			write(entryFile, chainName, null, 0, String.valueOf(e.getMessage()));
+			throw e;
+		}
+		write(entryFile, chainName, transform.getValues(), transform.getNumberOfConsideredInputValues(), null);
+		return transform;
+	}
+	
+	/**
+	 * Stores a transform that has been computed without the cache, e.g. by expansion of another transform.
+	 * Nothing is done if there is an entry for it already.
+	 * 
+	 * @param transform
+	 */
+	public void put(Transform transform) {
+		OEISSequence inputSeq = transform.getInputSequence();
+		String chainName = transform.getTransformation().getName(inputSeq.getName());
+		File entryFile = getEntryFile(chainName, inputSeq, transform.getNumberOfConsideredInputValues());
+		if (entryFile.exists()) return;
+		write(entryFile, chainName, transform.getValues(), transform.getNumberOfConsideredInputValues(), null);
+	}
+	
+	/**
+	 * @param chainName
+	 * @param inputSeq
+	 * @param numberOfInputValues
+	 * @return the entry file for the given transform chain name and the first numberOfInputValues input values
+	 */
+	private File getEntryFile(String chainName, OEISSequence inputSeq, int numberOfInputValues) {
+		return new File(directory, getEntryName(chainName, inputSeq.getValues().subList(0, numberOfInputValues)));
+	}
+	
+	private static String getEntryName(String chainName, List<BigInteger> inputValues) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform must support SHA-256
+			throw new IllegalStateException(e);
+		}
+		byte[] nameBytes = chainName.getBytes(StandardCharsets.UTF_8);
+		updateInt(digest, nameBytes.length);
+		digest.update(nameBytes);
+		updateInt(digest, inputValues.size());
+		for (BigInteger value : inputValues) {
+			byte[] valueBytes = value.toByteArray();
+			updateInt(digest, valueBytes.length);
+			digest.update(valueBytes);
+		}
+		StringBuilder entryName = new StringBuilder();
+		for (byte b : digest.digest()) {
+			entryName.append(Character.forDigit((b>>4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return entryName.append(ENTRY_SUFFIX).toString();
+	}
+	
+	private static void updateInt(MessageDigest digest, int i) {
+		digest.update((byte) (i>>>24));
+		digest.update((byte) (i>>>16));
+		digest.update((byte) (i>>>8));
+		digest.update((byte) i);
+	}
+
+	/**
+	 * Reads a cache entry.
+	 * @return the cached transform, or null if there is no valid entry
+	 * @throws TransformationException if the entry says that the transform could not be computed
+	 */
+	private Transform read(File entryFile, String chainName, Transformation transformation, OEISSequence inputSeq, boolean forLookup) throws TransformationException {
+		if (!entryFile.exists()) return null;
+		
+		String failureMessage;
+		List<BigInteger> values;
+		int consideredInputValues;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				LOG.debug("cache entry " + entryFile + " has an unknown format");
+				return null;
+			}
+			if (!chainName.equals(in.readUTF())) {
+				// hash collision
+				return null;
+			}
+			byte status = in.readByte();
+			if (status == STATUS_FAILED) {
+				failureMessage = in.readUTF();
+				values = null;
+				consideredInputValues = 0;
+			} else if (status == STATUS_COMPUTED) {
+				failureMessage = null;
+				consideredInputValues = in.readInt();
+				int size = in.readInt();
+				values = new ArrayList<BigInteger>(size);
+				for (int i=0; i<size; i++) {
+					byte[] valueBytes = new byte[in.readInt()];
+					in.readFully(valueBytes);
+					values.add(new BigInteger(valueBytes));
+				}
+			} else {
+				throw new IOException("unknown status " + status);
+			}
+		} catch (IOException e) {
+			LOG.warn("could not read cache entry " + entryFile + ": " + e, e);
+			return null;
+		}
+		// mark the entry as recently used for cleanUp()
+		entryFile.setLastModified(System.currentTimeMillis());
+		
+		if (failureMessage != null) throw new TransformationException(failureMessage);
+		SequenceValues outputValues = forLookup ? new SequenceValues_UnsignedIndexListImpl(values) : new SequenceValues_BigIntListImpl(values);
+		return new CachedTransform(chainName, outputValues, transformation, inputSeq, consideredInputValues);
+	}
+	
+	/**
+	 * Writes a cache entry for a computed transform (values != null) or a failed computation (failureMessage != null).
+	 */
+	private void write(File entryFile, String chainName, List<BigInteger> values, int consideredInputValues, String failureMessage) {
+		File tmpFile = null;
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+				throw new IOException("could not create directory " + directory);
+			}
+			tmpFile = File.createTempFile("entry", TMP_SUFFIX, directory);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(chainName);
+				if (values != null) {
+					out.writeByte(STATUS_COMPUTED);
+					out.writeInt(consideredInputValues);
+					out.writeInt(values.size());
+					for (BigInteger value : values) {
+						byte[] valueBytes = value.toByteArray();
+						out.writeInt(valueBytes.length);
+						out.write(valueBytes);
+					}
+				} else {
+					out.writeByte(STATUS_FAILED);
+					out.writeUTF(failureMessage);
+				}
+			} finally {
+				out.close();
+			}
+			// another worker may have written the same entry in the meantime; both are equal then
+			if (!tmpFile.renameTo(entryFile) && !entryFile.exists()) {
+				throw new IOException("could not rename " + tmpFile + " to " + entryFile);
+			}
+		} catch (IOException e) {
+			LOG.warn("could not write cache entry " + entryFile + ": " + e, e);
+		} finally {
+			if (tmpFile != null && tmpFile.exists()) tmpFile.delete();
+		}
+	}
+}
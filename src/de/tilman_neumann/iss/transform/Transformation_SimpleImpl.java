@@ -26,6 +26,13 @@ import de.tilman_neumann.iss.sequence.SequenceValues_UnsignedIndexListImpl;
  * Default transformation implementation for transformations that
  * compute their values from the input sequence values alone.
  * 
+ * Implementations may provide a long arithmetic version of the value computation, too. Then each value is first
+ * computed in long arithmetic if all input values up to its index fit into a long, and with BigIntegers only if that
+ * overflows. For the first values of typical lookup sequences nearly all arithmetic fits into longs.
+ * 
+ * Implementations may also compute a block of values at once, e.g. by power series arithmetic,
+ * if that is faster than the value by value computation for long sequences.
+ * 
  * @author Tilman Neumann
  */
 public abstract class Transformation_SimpleImpl extends Transformation {
@@ -43,9 +50,7 @@ public abstract class Transformation_SimpleImpl extends Transformation {
 		List<BigInteger> a = inputSeq.getValues().subList(0, numberOfInputValues);
 		
 		ArrayList<BigInteger> b = new ArrayList<BigInteger>(numberOfInputValues);
-		for (int n=0; n<numberOfInputValues; n++) {
-			b.add(computeNthValue(n, a, b));
-		}
+		computeValues(a, b, 0, numberOfInputValues);
 		
 		String name = this.getName(inputSeq.getName());
 		SequenceValues outputValues = forLookup ? new SequenceValues_UnsignedIndexListImpl(b) : new SequenceValues_BigIntListImpl(b);
@@ -63,9 +68,7 @@ public abstract class Transformation_SimpleImpl extends Transformation {
 		// copy old values
 		b.addAll(oldTransform.getValues());
 		// compute new values
-		for (int n=oldNumberOfInputValues; n<numberOfInputValues; n++) {
-			b.add(computeNthValue(n, a, b));
-		}
+		computeValues(a, b, oldNumberOfInputValues, numberOfInputValues);
 		
 		SequenceValues oldTransformValues = oldTransform.getAbstractValues();
 		SequenceValues outputValues =
@@ -75,5 +78,95 @@ public abstract class Transformation_SimpleImpl extends Transformation {
 		return new Transform(oldTransform.getName(), outputValues, this, inputSeq, numberOfInputValues);
 	}
 
+	/**
+	 * Computes the values with indices start...end-1 and adds them to b.
+	 * @param a input values
+	 * @param b output values computed so far
+	 * @param start
+	 * @param end
+	 */
+	private void computeValues(List<BigInteger> a, List<BigInteger> b, int start, int end) {
+		if (useValueBlock(start, end)) {
+			b.addAll(computeValueBlock(a, start, end));
+			return;
+		}
+		
+		// long versions of the longest prefix of input values that fit into longs
+		long[] aLong = null;
+		int longInputCount = 0;
+		if (hasLongArithmetic()) {
+			aLong = new long[end];
+			for (; longInputCount<end; longInputCount++) {
+				BigInteger a_i = a.get(longInputCount);
+				if (a_i.bitLength() > 63) break;
+				aLong[longInputCount] = a_i.longValue();
+			}
+		}
+		
+		for (int n=start; n<end; n++) {
+			if (n < longInputCount) {
+				try {
+					b.add(BigInteger.valueOf(computeNthLongValue(n, aLong)));
+					continue;
+				} catch (ArithmeticException e) {
+					// overflow -> compute this value with BigIntegers
+				}
+			}
+			b.add(computeNthValue(n, a, b));
+		}
+	}
+
 	abstract BigInteger computeNthValue(int n, List<BigInteger> a, List<BigInteger> b);
+	
+	/**
+	 * @return true if this transformation implements computeNthLongValue()
+	 */
+	boolean hasLongArithmetic() {
+		return false;
+	}
+	
+	/**
+	 * Computes the n.th value in long arithmetic. Must throw an ArithmeticException if some intermediate result
+	 * or the result itself does not fit into a long, e.g. by using Math.multiplyExact() and Math.addExact().
+	 * It should not allocate objects per term: Coefficients are taken from CoefficientTriangle, divisors from DivisorTable.
+	 * 
+	 * @param n
+	 * @param a input values; at least the first n+1 of them are valid
+	 * @return n.th value
+	 * @throws ArithmeticException on overflow
+	 */
+	long computeNthLongValue(int n, long[] a) {
+		throw new UnsupportedOperationException(getName() + " has no long arithmetic");
+	}
+	
+	/**
+	 * @param start
+	 * @param end
+	 * @return true if the values with indices start...end-1 should be computed at once by computeValueBlock()
+	 */
+	boolean useValueBlock(int start, int end) {
+		return false;
+	}
+	
+	/**
+	 * Computes the values with indices start...end-1 at once.
+	 * 
+	 * @param a input values; at least the first end of them are valid
+	 * @param start
+	 * @param end
+	 * @return values start...end-1
+	 */
+	List<BigInteger> computeValueBlock(List<BigInteger> a, int start, int end) {
+		throw new UnsupportedOperationException(getName() + " has no block computation");
+	}
+	
+	/**
+	 * @param x
+	 * @return the absolute value of x
+	 * @throws ArithmeticException if x == Long.MIN_VALUE
+	 */
+	static long absExact(long x) {
+		if (x == Long.MIN_VALUE) throw new ArithmeticException("long overflow");
+		return x<0 ? -x : x;
+	}
 }
@@ -0,0 +1,459 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Indexed set of BigIntegers using primitive arrays only:
+ * An open-addressing hash table of (hashcode, index+1) int pairs maps values to indices,
+ * values and frequencies are stored in pages of fixed size, and informations in a double[].
+ *
+ * Values that fit into 63 bits are stored in long[] pages. Their BigInteger objects are only created
+ * when getValue() is called for them the first time, and then shared by all later calls.
+ * Bigger values are kept in a BigInteger side table; their long entry holds a marker below -2^62
+ * that encodes the position in the side table.
+ * Optionally, the big values are stored as length-prefixed magnitude bytes in a direct buffer outside of the Java heap
+ * instead, and the marker encodes the position in that buffer. Then the table contains no objects besides its arrays,
+ * at the cost of creating a BigInteger for each access to a big value.
+ *
+ * Pages are never copied when the set grows, so frequencies can be incremented atomically
+ * without any lock while other threads add new values. Adding new values is synchronized;
+ * lookups are lock-free and fall back to the lock only if they observe an incompletely published entry.
+ *
+ * @author Tilman Neumann
+ */
+public class IndexedSet_BigIntegerImpl implements IndexedSet<BigInteger> {
+
+	private static final int PAGE_BITS = 12;
+	private static final int PAGE_SIZE = 1<<PAGE_BITS;
+	private static final int PAGE_MASK = PAGE_SIZE-1;
+
+	/** Values >= MIN_LONG_VALUE are stored directly in the long[] pages, smaller entries are side table markers. */
+	private static final long MIN_LONG_VALUE = -(1L<<62);
+
+	/** Cached BigIntegers for the most frequent small values, avoiding object churn in getValue(). */
+	private static final BigInteger[] SMALL_VALUES = new BigInteger[1024];
+
+	static {
+		for (int i=0; i<SMALL_VALUES.length; i++) {
+			SMALL_VALUES[i] = BigInteger.valueOf(i);
+		}
+	}
+
+	private static final VarHandle INT_ARRAY = MethodHandles.arrayElementVarHandle(int[].class);
+
+	/** Used to synchronize the insertion of new values. */
+	private final Object syncObject = new Object();
+
+	/** hash table with entries (hashcode, index+1) at positions (2*slot, 2*slot+1); index+1 == 0 marks an empty slot */
+	private volatile int[] table = new int[2*64];
+	/** values fitting into 63 bits, or side table markers */
+	private long[][] valuePages = new long[16][];
+	/** BigIntegers of the values in valuePages, created on first access */
+	private BigInteger[][] valueObjectPages = new BigInteger[16][];
+	/** values not fitting into 63 bits */
+	private BigInteger[] bigValues = new BigInteger[16];
+	private int bigValueCount = 0;
+	/** off-heap storage of the values not fitting into 63 bits, or null if they are kept in the side table */
+	private volatile ByteBuffer bigValueBuffer = null;
+	private int bigValueBufferSize = 0;
+	private int[][] frequencyPages = new int[16][];
+	/** number of values; the volatile write after each insertion publishes all array entries of the new value */
+	private volatile int size = 0;
+
+	private volatile boolean collectFrequencies = true;
+	private int totalFrequency = 0;
+	private double[] informations;
+	private double entropy = 0D;
+
+	/**
+	 * Adds the given value to the values table, if not already known.
+	 * @param val the value to add
+	 * @return the index of the value in the table, null excluded
+	 * @see de.tilman_neumann.util.IndexedSet#addValue(java.lang.Object)
+	 */
+	public Integer addValue(BigInteger val) {
+		return Integer.valueOf(addValue(val, 1));
+	}
+
+	/**
+	 * Adds the given value with a known frequency to the values table, if not already known.
+	 * This allows to restore a values table including its statistics without re-counting.
+	 * @param val the value to add
+	 * @param frequency the number of occurrences of the value
+	 * @return the index of the value in the table
+	 */
+	public int addValue(BigInteger val, int frequency) {
+		int hash = hash(val);
+		int index = find(val, hash);
+		if (index<0) {
+			synchronized (syncObject) {
+				// another thread may have added the value while we were waiting
+				index = find(val, hash);
+				if (index<0) index = insert(val, hash);
+			}
+		}
+		if (collectFrequencies) {
+			INT_ARRAY.getAndAdd(getFrequencyPage(index), index & PAGE_MASK, frequency);
+		}
+		return index;
+	}
+
+	/**
+	 * @param val
+	 * @param hash spread hashcode of val
+	 * @return the index of val, or -1 if it was not found.
+	 * May return -1 for a value that is just being inserted by another thread; callers must re-check inside the lock.
+	 */
+	private int find(BigInteger val, int hash) {
+		int[] table = this.table;
+		int mask = (table.length>>1) - 1;
+		for (int slot = hash & mask; ; slot = (slot+1) & mask) {
+			int indexPlus1 = table[2*slot+1];
+			if (indexPlus1 == 0) return -1;
+			// entries with index >= size might not be visible yet
+			if (table[2*slot] == hash && indexPlus1 <= size) {
+				int index = indexPlus1-1;
+				long entry = valuePages[index >> PAGE_BITS][index & PAGE_MASK];
+				if (entry >= MIN_LONG_VALUE) {
+					if (val.bitLength() < 63 && val.longValue() == entry) return index;
+				} else {
+					if (val.equals(getBigValue(entry))) return index;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inserts a new value; must be called inside the lock.
+	 * @return the index of the new value
+	 */
+	private int insert(BigInteger val, int hash) {
+		int index = size;
+		int page = index >> PAGE_BITS;
+		if (page == valuePages.length) {
+			valuePages = Arrays.copyOf(valuePages, 2*page);
+			valueObjectPages = Arrays.copyOf(valueObjectPages, 2*page);
+			frequencyPages = Arrays.copyOf(frequencyPages, 2*page);
+		}
+		if (valuePages[page] == null) {
+			valuePages[page] = new long[PAGE_SIZE];
+			valueObjectPages[page] = new BigInteger[PAGE_SIZE];
+			frequencyPages[page] = new int[PAGE_SIZE];
+		}
+		long entry;
+		if (val.bitLength() < 63) {
+			// fits into 63 bits, i.e. MIN_LONG_VALUE <= val < 2^62
+			entry = val.longValue();
+		} else if (bigValueBuffer != null) {
+			entry = Long.MIN_VALUE + appendToBigValueBuffer(val);
+		} else {
+			if (bigValueCount == bigValues.length) {
+				bigValues = Arrays.copyOf(bigValues, 2*bigValueCount);
+			}
+			bigValues[bigValueCount] = val;
+			entry = Long.MIN_VALUE + bigValueCount;
+			bigValueCount++;
+		}
+		valuePages[page][index & PAGE_MASK] = entry;
+
+		// keep load factor <= 1/2
+		int[] table = this.table;
+		if (2*(index+1) > (table.length>>1)) {
+			table = rehash(table);
+		}
+		putSlot(table, hash, index);
+		this.table = table;
+		size = index+1; // volatile write publishes value and slot
+		return index;
+	}
+
+	/**
+	 * Moves the values not fitting into 63 bits into a direct buffer outside of the Java heap,
+	 * and stores all big values added later there, too. This reduces the number of objects the garbage collector
+	 * has to trace for a big values table.
+	 * 
+	 * Must be called before the table is shared with other threads, because the markers of existing values are rewritten.
+	 */
+	public void storeBigValuesOffHeap() {
+		synchronized (syncObject) {
+			if (bigValueBuffer != null) return;
+			bigValueBuffer = ByteBuffer.allocateDirect(1<<16);
+			int n = size;
+			for (int index=0; index<n; index++) {
+				long[] valuePage = valuePages[index >> PAGE_BITS];
+				long entry = valuePage[index & PAGE_MASK];
+				if (entry < MIN_LONG_VALUE) {
+					BigInteger val = bigValues[(int) (entry - Long.MIN_VALUE)];
+					valuePage[index & PAGE_MASK] = Long.MIN_VALUE + appendToBigValueBuffer(val);
+				}
+			}
+			bigValues = null;
+			bigValueCount = 0;
+		}
+	}
+
+	/**
+	 * Appends the magnitude bytes of a big value to the off-heap buffer; must be called inside the lock.
+	 * @return the position of the value in the buffer
+	 */
+	private int appendToBigValueBuffer(BigInteger val) {
+		byte[] magnitude = val.toByteArray();
+		int pos = bigValueBufferSize;
+		int newSize = pos + 4 + magnitude.length;
+		if (newSize < 0) throw new IllegalStateException("off-heap big values exceed 2 GB");
+		ByteBuffer buffer = bigValueBuffer;
+		if (newSize > buffer.capacity()) {
+			// grow by copying; the old buffer stays valid for readers still holding it
+			ByteBuffer newBuffer = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE, Math.max(2L*buffer.capacity(), newSize)));
+			ByteBuffer oldData = buffer.duplicate();
+			oldData.position(0);
+			oldData.limit(pos);
+			newBuffer.put(oldData);
+			buffer = newBuffer;
+		}
+		buffer.putInt(pos, magnitude.length);
+		for (int i=0; i<magnitude.length; i++) {
+			buffer.put(pos + 4 + i, magnitude[i]);
+		}
+		bigValueBuffer = buffer;
+		bigValueBufferSize = newSize;
+		return pos;
+	}
+
+	/**
+	 * @param entry side table marker
+	 * @return the big value referenced by the marker
+	 */
+	private BigInteger getBigValue(long entry) {
+		int pos = (int) (entry - Long.MIN_VALUE);
+		ByteBuffer buffer = bigValueBuffer;
+		if (buffer == null) return bigValues[pos];
+		byte[] magnitude = new byte[buffer.getInt(pos)];
+		ByteBuffer data = buffer.duplicate();
+		data.position(pos + 4);
+		data.get(magnitude);
+		return new BigInteger(magnitude);
+	}
+
+	private static void putSlot(int[] table, int hash, int index) {
+		int mask = (table.length>>1) - 1;
+		int slot = hash & mask;
+		while (table[2*slot+1] != 0) slot = (slot+1) & mask;
+		table[2*slot] = hash;
+		table[2*slot+1] = index+1;
+	}
+
+	private static int[] rehash(int[] table) {
+		int[] newTable = new int[2*table.length];
+		for (int i=0; i<table.length; i+=2) {
+			int indexPlus1 = table[i+1];
+			if (indexPlus1 != 0) putSlot(newTable, table[i], indexPlus1-1);
+		}
+		return newTable;
+	}
+
+	private static int hash(BigInteger val) {
+		int h = val.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int[] getFrequencyPage(int index) {
+		if (index >= size) throw new IndexOutOfBoundsException("class " + this.getClass().getSimpleName() + ": index " + index + " >= size " + size);
+		return frequencyPages[index >> PAGE_BITS];
+	}
+
+	/**
+	 * @param index
+	 * @return the long entry for the value with the given index, i.e. the value itself or a side table marker
+	 */
+	private long getEntry(int index) {
+		if (index<0 || index >= size) throw new NullPointerException("class " + this.getClass().getSimpleName() + ": value for index " + index + " is null!");
+		return valuePages[index >> PAGE_BITS][index & PAGE_MASK];
+	}
+
+	public void finishStatisticCollection() {
+		totalFrequency = getTotalFrequency();
+		this.collectFrequencies = false;
+		// compute entropy per value
+		int n = size;
+		informations = new double[n];
+		for (int i=0; i<n; i++) {
+			int freq = getFrequency(i);
+			double p = ((double)freq)/totalFrequency;
+			double inf = -Math.log(p);
+			informations[i] = inf;
+			if (freq > 0) entropy += p*inf;
+		}
+	}
+
+	/**
+	 * @return number of distinct values
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index
+	 * @return the number of occurrences of the value with the given index
+	 */
+	public int getFrequency(int index) {
+		return (int) INT_ARRAY.getVolatile(getFrequencyPage(index), index & PAGE_MASK);
+	}
+
+	/**
+	 * @return total sum of (values*their frequencies)
+	 */
+	public int getTotalFrequency() {
+		if (!collectFrequencies) return totalFrequency;
+		int sum = 0;
+		int n = size;
+		for (int i=0; i<n; i++) {
+			sum += getFrequency(i);
+		}
+		return sum;
+	}
+
+	/**
+	 * @return average information per value over the complete database.
+	 */
+	public double getEntropy() {
+		return entropy;
+	}
+
+	/**
+	 * Information contained in the value with the given index.
+	 * @param index
+	 * @return
+	 */
+	public double getInformation(int index) {
+		return informations[index];
+	}
+
+	/**
+	 * Adds the values from the given collection to the values table, if not already known.
+	 * @param values the values to add
+	 * @return the indices of the values in the table, null excluded
+	 * @see de.tilman_neumann.util.IndexedSet#addAll(java.util.Collection)
+	 */
+	public int[] addAll(Collection<BigInteger> values) {
+		if (values != null) {
+			int[] indices = new int[values.size()];
+			int i=0;
+			for (BigInteger val : values) {
+				indices[i] = this.addValue(val, 1); // null index excluded!
+				i++;
+			}
+			return indices;
+		}
+		return new int[0];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.util.IndexedSet#getValue(int)
+	 */
+	public BigInteger getValue(int index) {
+		long entry = getEntry(index);
+		if (entry >= MIN_LONG_VALUE) {
+			if (entry>=0 && entry<SMALL_VALUES.length) return SMALL_VALUES[(int) entry];
+			// concurrent creation is harmless because BigIntegers are immutable
+			BigInteger[] valueObjectPage = valueObjectPages[index >> PAGE_BITS];
+			BigInteger value = valueObjectPage[index & PAGE_MASK];
+			if (value == null) {
+				value = BigInteger.valueOf(entry);
+				valueObjectPage[index & PAGE_MASK] = value;
+			}
+			return value;
+		}
+		return getBigValue(entry);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.util.IndexedSet#getValues(java.util.Collection)
+	 */
+	public List<BigInteger> getValues(Collection<Integer> indices) {
+		if (indices == null) {
+			return new ArrayList<BigInteger>(0);
+		}
+		List<BigInteger> ret = new ArrayList<BigInteger>(indices.size());
+		for (Integer index : indices) {
+			ret.add(getValue(index.intValue()));
+		}
+		return ret;
+	}
+
+	/**
+	 * @param indices
+	 * @return the values with the given indices
+	 */
+	public List<BigInteger> getValues(int[] indices) {
+		if (indices == null) {
+			return new ArrayList<BigInteger>(0);
+		}
+		List<BigInteger> ret = new ArrayList<BigInteger>(indices.length);
+		for (int index : indices) {
+			ret.add(getValue(index));
+		}
+		return ret;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.util.IndexedSet#getValueString(int)
+	 */
+	public String getValueString(int index) {
+		return getValue(index).toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.util.IndexedSet#getIndex(java.lang.Object)
+	 */
+	public Integer getIndex(BigInteger value) {
+		int hash = hash(value);
+		int index = find(value, hash);
+		if (index<0) {
+			synchronized (syncObject) {
+				index = find(value, hash);
+			}
+		}
+		return index<0 ? null : Integer.valueOf(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see de.tilman_neumann.util.IndexedSet#getIndices(java.util.Collection)
+	 */
+	public IndexList getIndices(Collection<BigInteger> values) {
+		if (values == null) {
+			return new IndexList(0);
+		}
+		IndexList ret = new IndexList(values.size());
+		for (BigInteger value : values) {
+			ret.add(getIndex(value));
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Immutable table of the positions at which the distinct elements of an int array occur,
+ * stored in compressed sparse row format: The distinct elements in ascending order,
+ * and for each of them a range of ascending positions in a common positions array.
+ *
+ * Positions are stored as shorts, so the int array must have less than 2^15 elements.
+ *
+ * @author Tilman Neumann
+ */
+public class IntPositionTable implements Serializable {
+
+	private static final long serialVersionUID = -6264370810512478357L;
+
+	/** distinct values in ascending order */
+	private final int[] values;
+	/** the positions of values[i] are positions[offsets[i]] ... positions[offsets[i+1]-1] */
+	private final int[] offsets;
+	private final short[] positions;
+
+	/**
+	 * Constructor from unsorted elements with repetitions.
+	 * @param elements
+	 */
+	public IntPositionTable(int[] elements) {
+		int n = elements.length;
+		if (n > Short.MAX_VALUE) throw new IllegalArgumentException("IntPositionTable supports at most " + Short.MAX_VALUE + " elements, but got " + n);
+		// sort (value, position) pairs in one go
+		long[] keys = new long[n];
+		for (int i=0; i<n; i++) {
+			keys[i] = ((long)elements[i] << 16) | i;
+		}
+		Arrays.sort(keys);
+		
+		int[] distinctValues = new int[n];
+		int[] starts = new int[n+1];
+		positions = new short[n];
+		int distinctCount = 0;
+		for (int i=0; i<n; i++) {
+			int value = (int) (keys[i] >> 16);
+			if (i==0 || value!=distinctValues[distinctCount-1]) {
+				distinctValues[distinctCount] = value;
+				starts[distinctCount++] = i;
+			}
+			positions[i] = (short) (keys[i] & 0xFFFF);
+		}
+		starts[distinctCount] = n;
+		values = distinctCount<n ? Arrays.copyOf(distinctValues, distinctCount) : distinctValues;
+		offsets = distinctCount<n ? Arrays.copyOf(starts, distinctCount+1) : starts;
+	}
+
+	/**
+	 * @return number of distinct values
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * @param i value number in [0, size())
+	 * @return the i.th smallest distinct value
+	 */
+	public int getValue(int i) {
+		return values[i];
+	}
+
+	/**
+	 * @param value
+	 * @return the number of the given value in [0, size()), or -1 if the value does not occur
+	 */
+	public int indexOf(int value) {
+		int i = Arrays.binarySearch(values, value);
+		return i>=0 ? i : -1;
+	}
+
+	/**
+	 * @param i value number in [0, size())
+	 * @return the number of positions at which the i.th smallest distinct value occurs
+	 */
+	public int getPositionCount(int i) {
+		return offsets[i+1] - offsets[i];
+	}
+
+	/**
+	 * @param i value number in [0, size())
+	 * @param j in [0, getPositionCount(i))
+	 * @return the j.th smallest position of the i.th smallest distinct value
+	 */
+	public short getPosition(int i, int j) {
+		return positions[offsets[i] + j];
+	}
+}
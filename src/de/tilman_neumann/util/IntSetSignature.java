@@ -0,0 +1,135 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.util;
+
+import java.io.Serializable;
+
+/**
+ * A 256 bit Bloom filter over a set of ints, using two hash functions.
+ *
+ * A signature never rejects an element that has been added, but may accept elements that have not been added.
+ * This allows to prove cheaply that two sets can not have many elements in common.
+ *
+ * @author Tilman Neumann
+ */
+public final class IntSetSignature implements Serializable {
+
+	private static final long serialVersionUID = 4619201737260543958L;
+
+	/** number of long words of a signature */
+	public static final int WORDS = 4;
+
+	private final long bits0, bits1, bits2, bits3;
+
+	/**
+	 * Constructor for the signature of the distinct values of a multiset.
+	 * @param elements
+	 */
+	public IntSetSignature(SortedIntMultiset elements) {
+		long[] bits = new long[WORDS];
+		for (int i=0; i<elements.size(); i++) {
+			long h = hash(elements.getValue(i));
+			int bit1 = (int) (h >>> 56);
+			int bit2 = (int) (h >>> 48) & 0xFF;
+			bits[bit1>>6] |= 1L << bit1;
+			bits[bit2>>6] |= 1L << bit2;
+		}
+		bits0 = bits[0];
+		bits1 = bits[1];
+		bits2 = bits[2];
+		bits3 = bits[3];
+	}
+
+	private static long hash(int element) {
+		return (element + 1L) * 0x9E3779B97F4A7C15L;
+	}
+
+	private long getWord(int bit) {
+		switch (bit>>6) {
+		case 0: return bits0;
+		case 1: return bits1;
+		case 2: return bits2;
+		default: return bits3;
+		}
+	}
+
+	/**
+	 * @param element
+	 * @return false if the element is definitely not contained in the set this signature has been computed from
+	 */
+	public boolean mayContain(int element) {
+		long h = hash(element);
+		int bit1 = (int) (h >>> 56);
+		int bit2 = (int) (h >>> 48) & 0xFF;
+		return (getWord(bit1) & (1L << bit1)) != 0 && (getWord(bit2) & (1L << bit2)) != 0;
+	}
+
+	/**
+	 * Copies the bits of this signature to <code>words[offset], ..., words[offset+WORDS-1]</code>,
+	 * e.g. to store many signatures in one array.
+	 * @param words
+	 * @param offset
+	 */
+	public void copyTo(long[] words, int offset) {
+		words[offset] = bits0;
+		words[offset+1] = bits1;
+		words[offset+2] = bits2;
+		words[offset+3] = bits3;
+	}
+
+	/**
+	 * Checks if the set this signature has been computed from may contain at least <code>minCount</code>
+	 * elements of the given multiset, counted with their multiplicities in the multiset.
+	 * This is an upper bound of the total count of the intersection of both.
+	 *
+	 * @param other
+	 * @param minCount
+	 * @return false if the intersection can not have minCount elements
+	 */
+	public boolean mayShareElements(SortedIntMultiset other, int minCount) {
+		int rest = other.totalCount();
+		if (rest < minCount) return false;
+		for (int i=0; i<other.size(); i++) {
+			if (!mayContain(other.getValue(i))) {
+				rest -= other.getMultiplicity(i);
+				if (rest < minCount) return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Like mayShareElements(SortedIntMultiset, int) for a signature that has been copied to <code>words</code> at <code>offset</code>.
+	 *
+	 * @param words
+	 * @param offset
+	 * @param other
+	 * @param minCount
+	 * @return false if the intersection can not have minCount elements
+	 */
+	public static boolean mayShareElements(long[] words, int offset, SortedIntMultiset other, int minCount) {
+		int rest = other.totalCount();
+		if (rest < minCount) return false;
+		for (int i=0; i<other.size(); i++) {
+			long h = hash(other.getValue(i));
+			int bit1 = (int) (h >>> 56);
+			int bit2 = (int) (h >>> 48) & 0xFF;
+			if ((words[offset + (bit1>>6)] & (1L << bit1)) == 0 || (words[offset + (bit2>>6)] & (1L << bit2)) == 0) {
+				rest -= other.getMultiplicity(i);
+				if (rest < minCount) return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,207 @@
+/*
+ * integer-sequence-search (ISS) is an offline OEIS sequence search engine.
+ * Copyright (C) 2018 Tilman Neumann - tilman.neumann@web.de
+ *
+ * This program is free software; you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program;
+ * if not, see <http://www.gnu.org/licenses/>.
+ */
+package de.tilman_neumann.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Immutable multiset of ints, stored as a sorted array of distinct values plus their multiplicities.
+ *
+ * Compared to SortedMultiset&lt;Integer&gt; this needs much less memory, and the intersection count
+ * is computed by a merge of the sorted arrays that does not allocate anything.
+ *
+ * @author Tilman Neumann
+ */
+public class SortedIntMultiset implements Serializable {
+
+	private static final long serialVersionUID = -3018245472713829041L;
+
+	private static final int[] EMPTY = new int[0];
+
+	/** distinct values in ascending order */
+	private final int[] values;
+	/** multiplicities of the values */
+	private final int[] multiplicities;
+	private final int totalCount;
+
+	/**
+	 * Constructor from unsorted elements with repetitions.
+	 * @param elements
+	 */
+	public SortedIntMultiset(int[] elements) {
+		int n = elements.length;
+		if (n == 0) {
+			values = multiplicities = EMPTY;
+			totalCount = 0;
+			return;
+		}
+		int[] sorted = elements.clone();
+		Arrays.sort(sorted);
+		int[] distinctValues = new int[n];
+		int[] counts = new int[n];
+		int distinctCount = 0;
+		for (int i=0; i<n; i++) {
+			if (i>0 && sorted[i]==sorted[i-1]) {
+				counts[distinctCount-1]++;
+			} else {
+				distinctValues[distinctCount] = sorted[i];
+				counts[distinctCount++] = 1;
+			}
+		}
+		values = distinctCount<n ? Arrays.copyOf(distinctValues, distinctCount) : distinctValues;
+		multiplicities = distinctCount<n ? Arrays.copyOf(counts, distinctCount) : counts;
+		totalCount = n;
+	}
+
+	/**
+	 * @return number of distinct values
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * @return number of elements including repetitions
+	 */
+	public int totalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * @param i position in [0, size())
+	 * @return the i.th smallest distinct value
+	 */
+	public int getValue(int i) {
+		return values[i];
+	}
+
+	/**
+	 * @param i position in [0, size())
+	 * @return the multiplicity of the i.th smallest distinct value
+	 */
+	public int getMultiplicity(int i) {
+		return multiplicities[i];
+	}
+
+	/**
+	 * @param other
+	 * @return the total count of the intersection of this and the other multiset
+	 */
+	public int intersectionTotalCount(SortedIntMultiset other) {
+		final int[] values1 = this.values, values2 = other.values;
+		final int[] mult1 = this.multiplicities, mult2 = other.multiplicities;
+		final int n1 = values1.length, n2 = values2.length;
+		int count = 0;
+		for (int i=0, j=0; i<n1 && j<n2; ) {
+			int v1 = values1[i], v2 = values2[j];
+			if (v1 < v2) {
+				i++;
+			} else if (v1 > v2) {
+				j++;
+			} else {
+				count += Math.min(mult1[i++], mult2[j++]);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Checks if the total count of the intersection of this and the other multiset is at least <code>minCount</code>.
+	 * Exits as soon as the result is clear, i.e. if minCount has been reached or if the elements not visited yet
+	 * can not contribute enough anymore.
+	 *
+	 * @param other
+	 * @param minCount
+	 * @return true if the intersection has at least minCount elements
+	 */
+	public boolean intersectionTotalCountReaches(SortedIntMultiset other, int minCount) {
+		return intersectionTotalCountReaches(values, multiplicities, 0, values.length, totalCount, other, minCount);
+	}
+
+	/**
+	 * Like intersectionTotalCountReaches(SortedIntMultiset, int) for a multiset that is stored at positions [from, to)
+	 * of the given arrays, e.g. in a columnar table of many multisets.
+	 *
+	 * @param values1 distinct values of the first multiset in ascending order, at positions [from, to)
+	 * @param mult1 multiplicities of the values of the first multiset, at positions [from, to)
+	 * @param from
+	 * @param to
+	 * @param totalCount1 number of elements of the first multiset including repetitions
+	 * @param other
+	 * @param minCount
+	 * @return true if the intersection has at least minCount elements
+	 */
+	public static boolean intersectionTotalCountReaches(int[] values1, int[] mult1, int from, int to, int totalCount1, SortedIntMultiset other, int minCount) {
+		if (minCount <= 0) return true;
+		final int[] values2 = other.values;
+		final int[] mult2 = other.multiplicities;
+		final int n2 = values2.length;
+		// missing = number of matches still missing; rest1, rest2 = number of elements not visited yet
+		int missing = minCount;
+		int rest1 = totalCount1, rest2 = other.totalCount;
+		if (rest1 < missing || rest2 < missing) return false;
+		for (int i=from, j=0; i<to && j<n2; ) {
+			int v1 = values1[i], v2 = values2[j];
+			if (v1 < v2) {
+				if ((rest1 -= mult1[i++]) < missing) return false;
+			} else if (v1 > v2) {
+				if ((rest2 -= mult2[j++]) < missing) return false;
+			} else {
+				int m1 = mult1[i++], m2 = mult2[j++];
+				if ((missing -= Math.min(m1, m2)) <= 0) return true;
+				rest1 -= m1;
+				rest2 -= m2;
+				if (rest1 < missing || rest2 < missing) return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param other
+	 * @return the smallest value that occurs exactly once in both this and the other multiset, or null if there is no such value
+	 */
+	public Integer getFirstCommonUniqueValue(SortedIntMultiset other) {
+		final int[] values1 = this.values, values2 = other.values;
+		final int n1 = values1.length, n2 = values2.length;
+		for (int i=0, j=0; i<n1 && j<n2; ) {
+			int v1 = values1[i], v2 = values2[j];
+			if (v1 < v2) {
+				i++;
+			} else if (v1 > v2) {
+				j++;
+			} else {
+				if (this.multiplicities[i]==1 && other.multiplicities[j]==1) return Integer.valueOf(v1);
+				i++;
+				j++;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return this as a String "value^multiplicity, ..."
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<values.length; i++) {
+			if (i>0) sb.append(", ");
+			sb.append(values[i]);
+			if (multiplicities[i]>1) sb.append("^").append(multiplicities[i]);
+		}
+		return sb.toString();
+	}
+}